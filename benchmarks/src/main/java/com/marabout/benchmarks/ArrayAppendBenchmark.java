@@ -0,0 +1,72 @@
+package com.marabout.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.marabout.lang.ArrayBuilder;
+import com.marabout.lang.ArrayUtils;
+import com.marabout.lang.IntArrayBuilder;
+
+/**
+ * Building an array one element at a time: repeated
+ * {@link ArrayUtils#append(Object[], Object)} against the array builders. The
+ * sizes are smaller than in {@link ArrayUtilsBenchmark}, because appending in a
+ * loop is quadratic.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayAppendBenchmark {
+
+    @Param({ "16", "256", "4096" })
+    public int size;
+
+    private final IntArrayBuilder reused = new IntArrayBuilder();
+
+    @Benchmark
+    public Integer[] appendLoop() {
+        Integer[] array = new Integer[0];
+        for (int i = 0; i < size; i++)
+            array = ArrayUtils.append(array, i);
+        return array;
+    }
+
+    @Benchmark
+    public Integer[] arrayBuilder() {
+        ArrayBuilder<Integer> builder = new ArrayBuilder<Integer>(Integer.class);
+        for (int i = 0; i < size; i++)
+            builder.add(i);
+        return builder.build();
+    }
+
+    @Benchmark
+    public int[] appendIntsLoop() {
+        int[] array = new int[0];
+        for (int i = 0; i < size; i++)
+            array = ArrayUtils.append(array, i);
+        return array;
+    }
+
+    @Benchmark
+    public int[] intArrayBuilderReused() {
+        reused.clear();
+        for (int i = 0; i < size; i++)
+            reused.add(i);
+        return reused.build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.marabout.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.marabout.lang.ArrayUtils;
+import com.marabout.lang.ArrayView;
+import com.marabout.lang.BulkArrayUtils;
+import com.marabout.lang.IntArrayView;
+
+/**
+ * Copying operations of {@link ArrayUtils}, and their zero-copy and bulk
+ * counterparts, at several array sizes.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrayUtilsBenchmark {
+
+    @Param({ "16", "1024", "65536" })
+    public int size;
+
+    private Integer[] boxed;
+    private int[] ints;
+    private String[][] nested;
+    private int[][] nestedInts;
+
+    @Setup
+    public void setUp() {
+        boxed = new Integer[size];
+        ints = new int[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = i;
+            ints[i] = i;
+        }
+        nested = new String[size / 8][];
+        nestedInts = new int[size / 8][];
+        for (int i = 0; i < nested.length; i++) {
+            nested[i] = new String[]{ "a", "b", "c", "d", "e", "f", "g", "h" };
+            nestedInts[i] = new int[]{ 1, 2, 3, 4, 5, 6, 7, 8 };
+        }
+    }
+
+    @Benchmark
+    public Integer[] concatBoxed() {
+        return ArrayUtils.concat(boxed, boxed);
+    }
+
+    @Benchmark
+    public int[] concatInts() {
+        return ArrayUtils.concat(ints, ints);
+    }
+
+    @Benchmark
+    public IntArrayView concatView() {
+        return IntArrayView.concat(IntArrayView.of(ints), IntArrayView.of(ints));
+    }
+
+    @Benchmark
+    public Integer[] restBoxed() {
+        return ArrayUtils.rest(boxed);
+    }
+
+    @Benchmark
+    public int[] restInts() {
+        return ArrayUtils.rest(ints);
+    }
+
+    @Benchmark
+    public ArrayView<Integer> restView() {
+        return ArrayView.of(boxed).rest();
+    }
+
+    @Benchmark
+    public Object[] flatten() {
+        return ArrayUtils.flatten(nested);
+    }
+
+    @Benchmark
+    public int[] flattenInts() {
+        return ArrayUtils.flattenInts(nestedInts);
+    }
+
+    @Benchmark
+    public long sumLoop() {
+        long sum = 0;
+        for (int value : ints)
+            sum += value;
+        return sum;
+    }
+
+    @Benchmark
+    public long sumBulk() {
+        return BulkArrayUtils.sum(ints);
+    }
+}
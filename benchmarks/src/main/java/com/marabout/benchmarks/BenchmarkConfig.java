@@ -0,0 +1,13 @@
+package com.marabout.benchmarks;
+
+/**
+ * The class whose properties, <code>BenchmarkConfig.properties</code>, are read
+ * by {@link PropertyLookupBenchmark}.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class BenchmarkConfig {
+
+    private BenchmarkConfig() {
+    }
+}
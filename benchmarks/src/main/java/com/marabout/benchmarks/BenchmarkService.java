@@ -0,0 +1,15 @@
+package com.marabout.benchmarks;
+
+/**
+ * The service interface discovered by {@link ServiceDiscoveryBenchmark}.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public interface BenchmarkService {
+
+    /**
+     * A provider of {@link BenchmarkService}.
+     */
+    class Provider implements BenchmarkService {
+    }
+}
@@ -0,0 +1,142 @@
+package com.marabout.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.marabout.utils.LongLongHashMap;
+import com.marabout.utils.LongLongProcedure;
+import com.marabout.utils.OffHeapLongLongHashMap;
+
+/**
+ * <code>long</code> to <code>long</code> lookups, inserts and iterations:
+ * <code>HashMap&lt;Long, Long&gt;</code> against {@link LongLongHashMap} and
+ * {@link OffHeapLongLongHashMap}. The lookups are done for random keys, half of
+ * them missing. Run with <code>-prof gc</code> to compare the allocations.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PrimitiveMapBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({ "1000", "1000000" })
+    public int size;
+
+    private long[] keys;
+    private long[] lookups;
+    private Map<Long, Long> hashMap;
+    private LongLongHashMap heapMap;
+    private OffHeapLongLongHashMap offHeapMap;
+    private final Sum sum = new Sum();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new long[size];
+        hashMap = new HashMap<Long, Long>(size * 2);
+        heapMap = new LongLongHashMap(size);
+        offHeapMap = new OffHeapLongLongHashMap(size);
+        for (int i = 0; i < size; i++) {
+            keys[i] = random.nextLong();
+            hashMap.put(keys[i], (long) i);
+            heapMap.put(keys[i], i);
+            offHeapMap.put(keys[i], i);
+        }
+        lookups = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+            lookups[i] = random.nextBoolean() ? keys[random.nextInt(size)] : random.nextLong();
+    }
+
+    @Benchmark
+    public long getHashMap() {
+        long total = 0;
+        for (long key : lookups) {
+            Long value = hashMap.get(key);
+            if (value != null)
+                total += value;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long getHeap() {
+        long total = 0;
+        for (long key : lookups)
+            total += heapMap.get(key, 0);
+        return total;
+    }
+
+    @Benchmark
+    public long getOffHeap() {
+        long total = 0;
+        for (long key : lookups)
+            total += offHeapMap.get(key, 0);
+        return total;
+    }
+
+    @Benchmark
+    public Map<Long, Long> putHashMap() {
+        Map<Long, Long> map = new HashMap<Long, Long>();
+        for (int i = 0; i < LOOKUPS; i++)
+            map.put(keys[i % size], (long) i);
+        return map;
+    }
+
+    @Benchmark
+    public LongLongHashMap putHeap() {
+        LongLongHashMap map = new LongLongHashMap();
+        for (int i = 0; i < LOOKUPS; i++)
+            map.put(keys[i % size], i);
+        return map;
+    }
+
+    @Benchmark
+    public long iterateHashMap() {
+        long total = 0;
+        for (Map.Entry<Long, Long> entry : hashMap.entrySet())
+            total += entry.getKey() ^ entry.getValue();
+        return total;
+    }
+
+    @Benchmark
+    public long iterateHeap() {
+        sum.total = 0;
+        heapMap.forEach(sum);
+        return sum.total;
+    }
+
+    @Benchmark
+    public long iterateOffHeap() {
+        sum.total = 0;
+        offHeapMap.forEach(sum);
+        return sum.total;
+    }
+
+    private static final class Sum implements LongLongProcedure {
+        long total;
+
+        public void apply(long key, long value) {
+            total += key ^ value;
+        }
+    }
+}
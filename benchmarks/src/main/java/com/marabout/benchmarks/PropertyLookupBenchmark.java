@@ -0,0 +1,73 @@
+package com.marabout.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.marabout.lang.ClassPropertiesManager;
+import com.marabout.lang.PropertyHandle;
+import com.marabout.lang.PropertySchema;
+import com.marabout.lang.TypedProperties;
+
+/**
+ * Property lookups through {@link ClassPropertiesManager}, by name, through a
+ * schema and through a handle. The nested classes run the same benchmarks with
+ * 1, 4 and as many threads as processors.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class PropertyLookupBenchmark {
+
+    private static final PropertySchema SCHEMA = new PropertySchema();
+    private static final PropertySchema.IntKey POOL_SIZE = SCHEMA.intKey("pool.size", 0);
+    private static final PropertyHandle<Integer> POOL_SIZE_HANDLE =
+        ClassPropertiesManager.handle(BenchmarkConfig.class, "pool.size", int.class);
+
+    @Benchmark
+    public String getString() {
+        return ClassPropertiesManager.getString("name", BenchmarkConfig.class);
+    }
+
+    @Benchmark
+    public int getInt() {
+        return ClassPropertiesManager.getInt("pool.size", BenchmarkConfig.class);
+    }
+
+    @Benchmark
+    public int typed() {
+        TypedProperties props = ClassPropertiesManager.getTypedProperties(BenchmarkConfig.class, SCHEMA);
+        return props.get(POOL_SIZE);
+    }
+
+    @Benchmark
+    public int handle() {
+        return POOL_SIZE_HANDLE.getInt();
+    }
+
+    @Threads(1)
+    public static class OneThread extends PropertyLookupBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends PropertyLookupBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MaxThreads extends PropertyLookupBenchmark {
+    }
+}
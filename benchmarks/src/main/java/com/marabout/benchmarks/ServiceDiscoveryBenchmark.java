@@ -0,0 +1,57 @@
+package com.marabout.benchmarks;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.marabout.utils.ServiceProviderManager;
+
+/**
+ * Cost of a {@link ServiceProviderManager} lookup: a warm one, answered by the
+ * provider cache, and a cold one, which discovers and resolves the providers
+ * again, through the service index when the classpath has one.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceDiscoveryBenchmark {
+
+    private final ServiceProviderManager manager = new ServiceProviderManager();
+
+    /**
+     * Empties the provider cache before each cold lookup.
+     */
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void clear() {
+            ServiceProviderManager.clearCache();
+        }
+    }
+
+    @Benchmark
+    public Collection<Class<? extends BenchmarkService>> findServiceProviders() {
+        return manager.findServiceProviders(BenchmarkService.class);
+    }
+
+    @Benchmark
+    public Collection<Class<? extends BenchmarkService>> findServiceProvidersCold(ColdCache cold) {
+        return manager.findServiceProviders(BenchmarkService.class);
+    }
+}
@@ -0,0 +1,61 @@
+package com.marabout.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.marabout.lang.StringUtils;
+
+/**
+ * Throughput of the {@link StringUtils} renderers at several collection sizes.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int size;
+
+    private Map<String, Integer> map;
+    private List<String> collection;
+
+    @Setup
+    public void setUp() {
+        map = new HashMap<String, Integer>();
+        collection = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            map.put("key" + i, i);
+            collection.add("element" + i);
+        }
+    }
+
+    @Benchmark
+    public String mapToString() {
+        return StringUtils.mapToString(map);
+    }
+
+    @Benchmark
+    public String collectionToString() {
+        return StringUtils.collectionToString(collection);
+    }
+}
@@ -0,0 +1,152 @@
+package com.marabout.lang;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * A growable array, to build arrays of unknown size in amortized constant time
+ * per element, instead of calling {@link ArrayUtils#append(Object[], Object)}
+ * in a loop.
+ * <p/>
+ * The internal buffer grows by half its size when it is full, and can be
+ * pre-sized. {@link #build()} returns a right-sized copy, so the builder can be
+ * {@link #clear() cleared} and reused in hot loops without allocating a new
+ * buffer each time.
+ * <p/>
+ * <code>int[]</code>, <code>long[]</code>, <code>double[]</code> and
+ * <code>byte[]</code> are built without boxing by {@link IntArrayBuilder},
+ * {@link LongArrayBuilder}, {@link DoubleArrayBuilder} and {@link ByteArrayBuilder}.
+ * <p/>
+ * Builders are not thread-safe.
+ *
+ * @param <T> the component type of the array.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@SuppressWarnings("unchecked")
+public final class ArrayBuilder<T> {
+
+    static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private T[] elements;
+    private int size;
+
+    /**
+     * Creates a builder with a default initial capacity.
+     *
+     * @param componentType the component type of the built arrays.
+     */
+    public ArrayBuilder(Class<T> componentType) {
+        this(componentType, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a builder pre-sized for <i>initialCapacity</i> elements.
+     *
+     * @param componentType   the component type of the built arrays.
+     * @param initialCapacity the initial capacity.
+     */
+    public ArrayBuilder(Class<T> componentType, int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        elements = (T[]) Array.newInstance(componentType, initialCapacity);
+    }
+
+    /**
+     * Appends an element.
+     *
+     * @param element the element.
+     * @return this builder.
+     */
+    public ArrayBuilder<T> add(T element) {
+        if (size == elements.length)
+            grow(size + 1);
+        elements[size++] = element;
+        return this;
+    }
+
+    /**
+     * Appends all the elements of an array.
+     *
+     * @param array the array.
+     * @return this builder.
+     */
+    public ArrayBuilder<T> addAll(T[] array) {
+        return addAll(array, 0, array.length);
+    }
+
+    /**
+     * Appends <i>length</i> elements of an array, starting at <i>offset</i>.
+     *
+     * @param array  the array.
+     * @param offset the index of the first element to append.
+     * @param length the number of elements to append.
+     * @return this builder.
+     */
+    public ArrayBuilder<T> addAll(T[] array, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(array, offset, elements, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Makes sure that <i>capacity</i> elements fit without growing again.
+     *
+     * @param capacity the minimum capacity.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length)
+            grow(capacity);
+    }
+
+    /**
+     * @param index the index of an element.
+     * @return the element.
+     */
+    public T get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return elements[index];
+    }
+
+    /**
+     * @return the number of elements added so far.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets the elements added so far, but keeps the allocated capacity, so
+     * that the builder can be reused without allocating.
+     */
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return a new array holding exactly the elements added so far.
+     */
+    public T[] build() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    private void grow(int minCapacity) {
+        elements = Arrays.copyOf(elements, newCapacity(elements.length, minCapacity));
+    }
+
+    /**
+     * Returns the capacity to grow to, at least one and a half times the current
+     * one.
+     */
+    static int newCapacity(int capacity, int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_CAPACITY)
+            throw new OutOfMemoryError("Array too large: " + minCapacity);
+        int newCapacity = capacity + (capacity >> 1) + 1;
+        if (newCapacity < 0 || newCapacity > MAX_CAPACITY)
+            newCapacity = MAX_CAPACITY;
+        return Math.max(newCapacity, minCapacity);
+    }
+}
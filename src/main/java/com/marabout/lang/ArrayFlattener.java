@@ -0,0 +1,154 @@
+package com.marabout.lang;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks nested arrays depth-first, and returns their leaves one at a time.
+ * <p/>
+ * The walk uses an explicit stack instead of recursion, so deeply nested
+ * arrays cannot overflow the thread stack. Arrays nested deeper than the
+ * maximum depth are returned as leaves. Primitive arrays are opened like
+ * object arrays, their elements being boxed on the fly.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see ArrayUtils#flatten(Object, int)
+ */
+final class ArrayFlattener implements Iterator<Object> {
+
+    private final int maxDepth;
+    private Object[] arrays = new Object[8];
+    private int[] positions = new int[8];
+    private int top = -1;
+    private Object next;
+    private boolean hasNext;
+
+    ArrayFlattener(Object input, int maxDepth) {
+        this.maxDepth = maxDepth;
+        if (maxDepth > 0 && isArray(input)) {
+            push(input);
+            advance();
+        } else {
+            next = input;
+            hasNext = true;
+        }
+    }
+
+    /**
+     * Counts the leaves of the input without boxing any element.
+     */
+    static int count(Object input, int maxDepth) {
+        if (maxDepth <= 0 || !isArray(input))
+            return 1;
+        Object[] arrays = new Object[8];
+        int[] positions = new int[8];
+        int top = 0;
+        arrays[0] = input;
+        int count = 0;
+        while (top >= 0) {
+            if (!(arrays[top] instanceof Object[])) {
+                // Primitive arrays only hold leaves.
+                count += Array.getLength(arrays[top]);
+                arrays[top--] = null;
+                continue;
+            }
+            Object[] array = (Object[]) arrays[top];
+            int position = positions[top];
+            if (position == array.length) {
+                arrays[top--] = null;
+                continue;
+            }
+            positions[top] = position + 1;
+            Object element = array[position];
+            if (top + 2 <= maxDepth && isArray(element)) {
+                if (++top == arrays.length) {
+                    arrays = copyOf(arrays, top * 2);
+                    positions = copyOf(positions, top * 2);
+                }
+                arrays[top] = element;
+                positions[top] = 0;
+            } else {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public Object next() {
+        if (!hasNext)
+            throw new NoSuchElementException();
+        Object result = next;
+        next = null;
+        hasNext = false;
+        advance();
+        return result;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void advance() {
+        while (top >= 0) {
+            Object array = arrays[top];
+            int position = positions[top];
+            Object element;
+            if (array instanceof Object[]) {
+                Object[] objects = (Object[]) array;
+                if (position == objects.length) {
+                    pop();
+                    continue;
+                }
+                element = objects[position];
+            } else {
+                if (position == Array.getLength(array)) {
+                    pop();
+                    continue;
+                }
+                element = Array.get(array, position);
+            }
+            positions[top] = position + 1;
+            if (top + 2 <= maxDepth && isArray(element)) {
+                push(element);
+            } else {
+                next = element;
+                hasNext = true;
+                return;
+            }
+        }
+    }
+
+    private void push(Object array) {
+        if (++top == arrays.length) {
+            arrays = copyOf(arrays, top * 2);
+            positions = copyOf(positions, top * 2);
+        }
+        arrays[top] = array;
+        positions[top] = 0;
+    }
+
+    private void pop() {
+        arrays[top--] = null;
+    }
+
+    private static boolean isArray(Object obj) {
+        return obj != null && obj.getClass().isArray();
+    }
+
+    private static Object[] copyOf(Object[] array, int length) {
+        Object[] copy = new Object[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private static int[] copyOf(int[] array, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+}
@@ -1,9 +1,19 @@
 package com.marabout.lang;
 
 import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A collection of utilities to ease the manipulation of Java arrays.
+ * <p/>
+ * The operations also come in <code>int[]</code>, <code>long[]</code>,
+ * <code>double[]</code> and <code>byte[]</code> flavours, which neither use
+ * reflection nor box the elements.
  *
  * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
  */
@@ -32,20 +42,58 @@ public final class ArrayUtils {
     /**
      * Takes an array of many dimensions, and returns a 'flatten' array of dimension 1.
      * If the input is a single object (not an array), then it returns an array
-     * with this object as single element.
+     * with this object as single element. Primitive arrays are flattened too, their
+     * elements being boxed.
      *
      * @param input an input.
      * @return The flatten array.
      */
     public static Object[] flatten(Object input) {
-        if (input instanceof Object[]) {
-            Object[] result = new Object[]{ };
-            for (Object o : (Object[]) input) {
-                result = concat(result, flatten(o));
-            }
-            return result;
-        }
-        return new Object[]{ input };
+        return flatten(input, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #flatten(Object)}, but only opens the first <i>maxDepth</i>
+     * levels of arrays: arrays nested deeper are kept as elements of the result.
+     * <p/>
+     * The nested arrays are walked twice, once to size the result and once to
+     * fill it, so the cost is linear in the number of elements.
+     *
+     * @param input    an input.
+     * @param maxDepth the number of array levels to open, <code>1</code> opening
+     *                 the input array only.
+     * @return The flatten array.
+     */
+    public static Object[] flatten(Object input, int maxDepth) {
+        Object[] result = new Object[ArrayFlattener.count(input, maxDepth)];
+        ArrayFlattener flattener = new ArrayFlattener(input, maxDepth);
+        for (int i = 0; i < result.length; i++)
+            result[i] = flattener.next();
+        return result;
+    }
+
+    /**
+     * Returns a lazy iterator over the elements of the flatten input, see
+     * {@link #flatten(Object)}. Nothing is copied: the nested arrays are walked as
+     * the iterator advances.
+     *
+     * @param input an input.
+     * @return the iterator.
+     */
+    public static Iterator<Object> flattenIterator(Object input) {
+        return new ArrayFlattener(input, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a lazy sequential stream over the elements of the flatten input,
+     * see {@link #flattenIterator(Object)}.
+     *
+     * @param input an input.
+     * @return the stream.
+     */
+    public static Stream<Object> flattenStream(Object input) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(flattenIterator(input),
+            Spliterator.ORDERED), false);
     }
 
     /**
@@ -99,18 +147,388 @@ public final class ArrayUtils {
     }
 
     /**
-     * Appends element at the end of array, and returns a new array.
+     * Appends element at the end of array, and returns a new array of the same
+     * component type. Appending in a loop copies the array each time: use an
+     * {@link ArrayBuilder} instead.
      *
      * @param array   the array.
      * @param element the element.
      * @return the new array.
      */
     public static <T> T[] append(T[] array, T element) {
-        T[] cons = (T[]) Array.newInstance(element.getClass(), array.length + 1);
+        T[] cons = (T[]) Array.newInstance(array.getClass().getComponentType(), array.length + 1);
+        System.arraycopy(array, 0, cons, 0, array.length);
+        cons[array.length] = element;
+        return cons;
+    }
+
+    /**
+     * Returns the first element of the specified array.
+     *
+     * @param elements the array.
+     * @return the first element.
+     * @throws NoSuchElementException if the array is <code>null</code> or empty.
+     */
+    public static int first(int[] elements) {
+        if (elements == null || elements.length == 0)
+            throw new NoSuchElementException("Empty array");
+        return elements[0];
+    }
+
+    /**
+     * Returns the array specified minus the first element. The rest of an empty
+     * array is an empty array.
+     *
+     * @param elements the array.
+     * @return the rest of the array.
+     */
+    public static int[] rest(int[] elements) {
+        if (elements.length == 0)
+            return elements;
+        int[] newArray = new int[elements.length - 1];
+        System.arraycopy(elements, 1, newArray, 0, elements.length - 1);
+        return newArray;
+    }
+
+    /**
+     * Returns a new array which is the concatenation of the specified
+     * arrays.
+     *
+     * @param arrays the arrays to concatenate.
+     * @return concatenated arrays as a new array.
+     */
+    public static int[] concat(int[]... arrays) {
+        int size = 0;
+        for (int[] array : arrays)
+            size += array.length;
+        int[] concat = new int[size];
+        int position = 0;
+        for (int[] array : arrays) {
+            System.arraycopy(array, 0, concat, position, array.length);
+            position += array.length;
+        }
+        return concat;
+    }
+
+    /**
+     * Appends element at the end of array, and returns a new array.
+     *
+     * @param array   the array.
+     * @param element the element.
+     * @return the new array.
+     */
+    public static int[] append(int[] array, int element) {
+        int[] cons = new int[array.length + 1];
         System.arraycopy(array, 0, cons, 0, array.length);
         cons[array.length] = element;
         return cons;
     }
 
+    /**
+     * Flattens an array of arrays into a single array. Unlike
+     * {@link #flatten(Object)}, the elements are not boxed.
+     *
+     * @param arrays the arrays.
+     * @return the flatten array.
+     */
+    public static int[] flattenInts(int[][] arrays) {
+        return concat(arrays);
+    }
+
+    /**
+     * Returns the first element of the specified array.
+     *
+     * @param elements the array.
+     * @return the first element.
+     * @throws NoSuchElementException if the array is <code>null</code> or empty.
+     */
+    public static long first(long[] elements) {
+        if (elements == null || elements.length == 0)
+            throw new NoSuchElementException("Empty array");
+        return elements[0];
+    }
+
+    /**
+     * Returns the array specified minus the first element. The rest of an empty
+     * array is an empty array.
+     *
+     * @param elements the array.
+     * @return the rest of the array.
+     */
+    public static long[] rest(long[] elements) {
+        if (elements.length == 0)
+            return elements;
+        long[] newArray = new long[elements.length - 1];
+        System.arraycopy(elements, 1, newArray, 0, elements.length - 1);
+        return newArray;
+    }
+
+    /**
+     * Returns a new array which is the concatenation of the specified
+     * arrays.
+     *
+     * @param arrays the arrays to concatenate.
+     * @return concatenated arrays as a new array.
+     */
+    public static long[] concat(long[]... arrays) {
+        int size = 0;
+        for (long[] array : arrays)
+            size += array.length;
+        long[] concat = new long[size];
+        int position = 0;
+        for (long[] array : arrays) {
+            System.arraycopy(array, 0, concat, position, array.length);
+            position += array.length;
+        }
+        return concat;
+    }
+
+    /**
+     * Appends element at the end of array, and returns a new array.
+     *
+     * @param array   the array.
+     * @param element the element.
+     * @return the new array.
+     */
+    public static long[] append(long[] array, long element) {
+        long[] cons = new long[array.length + 1];
+        System.arraycopy(array, 0, cons, 0, array.length);
+        cons[array.length] = element;
+        return cons;
+    }
+
+    /**
+     * Flattens an array of arrays into a single array. Unlike
+     * {@link #flatten(Object)}, the elements are not boxed.
+     *
+     * @param arrays the arrays.
+     * @return the flatten array.
+     */
+    public static long[] flattenLongs(long[][] arrays) {
+        return concat(arrays);
+    }
+
+    /**
+     * Returns the first element of the specified array.
+     *
+     * @param elements the array.
+     * @return the first element.
+     * @throws NoSuchElementException if the array is <code>null</code> or empty.
+     */
+    public static double first(double[] elements) {
+        if (elements == null || elements.length == 0)
+            throw new NoSuchElementException("Empty array");
+        return elements[0];
+    }
 
+    /**
+     * Returns the array specified minus the first element. The rest of an empty
+     * array is an empty array.
+     *
+     * @param elements the array.
+     * @return the rest of the array.
+     */
+    public static double[] rest(double[] elements) {
+        if (elements.length == 0)
+            return elements;
+        double[] newArray = new double[elements.length - 1];
+        System.arraycopy(elements, 1, newArray, 0, elements.length - 1);
+        return newArray;
+    }
+
+    /**
+     * Returns a new array which is the concatenation of the specified
+     * arrays.
+     *
+     * @param arrays the arrays to concatenate.
+     * @return concatenated arrays as a new array.
+     */
+    public static double[] concat(double[]... arrays) {
+        int size = 0;
+        for (double[] array : arrays)
+            size += array.length;
+        double[] concat = new double[size];
+        int position = 0;
+        for (double[] array : arrays) {
+            System.arraycopy(array, 0, concat, position, array.length);
+            position += array.length;
+        }
+        return concat;
+    }
+
+    /**
+     * Appends element at the end of array, and returns a new array.
+     *
+     * @param array   the array.
+     * @param element the element.
+     * @return the new array.
+     */
+    public static double[] append(double[] array, double element) {
+        double[] cons = new double[array.length + 1];
+        System.arraycopy(array, 0, cons, 0, array.length);
+        cons[array.length] = element;
+        return cons;
+    }
+
+    /**
+     * Flattens an array of arrays into a single array. Unlike
+     * {@link #flatten(Object)}, the elements are not boxed.
+     *
+     * @param arrays the arrays.
+     * @return the flatten array.
+     */
+    public static double[] flattenDoubles(double[][] arrays) {
+        return concat(arrays);
+    }
+
+    /**
+     * Returns the first element of the specified array.
+     *
+     * @param elements the array.
+     * @return the first element.
+     * @throws NoSuchElementException if the array is <code>null</code> or empty.
+     */
+    public static byte first(byte[] elements) {
+        if (elements == null || elements.length == 0)
+            throw new NoSuchElementException("Empty array");
+        return elements[0];
+    }
+
+    /**
+     * Returns the array specified minus the first element. The rest of an empty
+     * array is an empty array.
+     *
+     * @param elements the array.
+     * @return the rest of the array.
+     */
+    public static byte[] rest(byte[] elements) {
+        if (elements.length == 0)
+            return elements;
+        byte[] newArray = new byte[elements.length - 1];
+        System.arraycopy(elements, 1, newArray, 0, elements.length - 1);
+        return newArray;
+    }
+
+    /**
+     * Returns a new array which is the concatenation of the specified
+     * arrays.
+     *
+     * @param arrays the arrays to concatenate.
+     * @return concatenated arrays as a new array.
+     */
+    public static byte[] concat(byte[]... arrays) {
+        int size = 0;
+        for (byte[] array : arrays)
+            size += array.length;
+        byte[] concat = new byte[size];
+        int position = 0;
+        for (byte[] array : arrays) {
+            System.arraycopy(array, 0, concat, position, array.length);
+            position += array.length;
+        }
+        return concat;
+    }
+
+    /**
+     * Appends element at the end of array, and returns a new array.
+     *
+     * @param array   the array.
+     * @param element the element.
+     * @return the new array.
+     */
+    public static byte[] append(byte[] array, byte element) {
+        byte[] cons = new byte[array.length + 1];
+        System.arraycopy(array, 0, cons, 0, array.length);
+        cons[array.length] = element;
+        return cons;
+    }
+
+    /**
+     * Flattens an array of arrays into a single array. Unlike
+     * {@link #flatten(Object)}, the elements are not boxed.
+     *
+     * @param arrays the arrays.
+     * @return the flatten array.
+     */
+    public static byte[] flattenBytes(byte[][] arrays) {
+        return concat(arrays);
+    }
+
+    /**
+     * Widens an array of byte into an array of int.
+     *
+     * @param array the array.
+     * @return the widened array.
+     */
+    public static int[] toIntArray(byte[] array) {
+        int[] result = new int[array.length];
+        for (int i = 0; i < array.length; i++)
+            result[i] = array[i];
+        return result;
+    }
+
+    /**
+     * Widens an array of byte into an array of long.
+     *
+     * @param array the array.
+     * @return the widened array.
+     */
+    public static long[] toLongArray(byte[] array) {
+        long[] result = new long[array.length];
+        for (int i = 0; i < array.length; i++)
+            result[i] = array[i];
+        return result;
+    }
+
+    /**
+     * Widens an array of int into an array of long.
+     *
+     * @param array the array.
+     * @return the widened array.
+     */
+    public static long[] toLongArray(int[] array) {
+        long[] result = new long[array.length];
+        for (int i = 0; i < array.length; i++)
+            result[i] = array[i];
+        return result;
+    }
+
+    /**
+     * Widens an array of byte into an array of double.
+     *
+     * @param array the array.
+     * @return the widened array.
+     */
+    public static double[] toDoubleArray(byte[] array) {
+        double[] result = new double[array.length];
+        for (int i = 0; i < array.length; i++)
+            result[i] = array[i];
+        return result;
+    }
+
+    /**
+     * Widens an array of int into an array of double.
+     *
+     * @param array the array.
+     * @return the widened array.
+     */
+    public static double[] toDoubleArray(int[] array) {
+        double[] result = new double[array.length];
+        for (int i = 0; i < array.length; i++)
+            result[i] = array[i];
+        return result;
+    }
+
+    /**
+     * Widens an array of long into an array of double.
+     *
+     * @param array the array.
+     * @return the widened array.
+     */
+    public static double[] toDoubleArray(long[] array) {
+        double[] result = new double[array.length];
+        for (int i = 0; i < array.length; i++)
+            result[i] = array[i];
+        return result;
+    }
 }
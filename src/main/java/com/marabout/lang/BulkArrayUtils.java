@@ -0,0 +1,520 @@
+package com.marabout.lang;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Bulk operations on <code>int[]</code>, <code>long[]</code> and
+ * <code>double[]</code>: fill, map, sum, min, max and index-of.
+ * <p/>
+ * Arrays shorter than the {@link #getParallelThreshold() parallel threshold} are
+ * processed by the calling thread. Longer arrays are split into ranges processed
+ * in parallel by the common fork/join pool. Either way, each range is processed
+ * by a plain counted loop over the array, which the JIT compiler can unroll and
+ * vectorize.
+ * <p/>
+ * The threshold defaults to 65536 elements, and can be changed with the
+ * <code>com.marabout.lang.BulkArrayUtils.parallelThreshold</code> system property
+ * or {@link #setParallelThreshold(int)}. Note that parallel double sums may differ
+ * from sequential ones in the last bits, because the additions are not done in
+ * the same order.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class BulkArrayUtils {
+
+    private static volatile int parallelThreshold =
+        Integer.getInteger(BulkArrayUtils.class.getName() + ".parallelThreshold", 1 << 16);
+
+    // You shall not instantiate me!
+    private BulkArrayUtils() {
+    }
+
+    /**
+     * @return the length from which arrays are processed in parallel.
+     */
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the length from which arrays are processed in parallel.
+     *
+     * @param threshold the threshold, at least 1.
+     */
+    public static void setParallelThreshold(int threshold) {
+        if (threshold < 1)
+            throw new IllegalArgumentException("Invalid threshold: " + threshold);
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Sets all the elements of the array to <i>value</i>.
+     *
+     * @param array the array.
+     * @param value the value.
+     */
+    public static void fill(final int[] array, final int value) {
+        run(new Kernel<Void>() {
+            Void compute(int from, int to) {
+                for (int i = from; i < to; i++)
+                    array[i] = value;
+                return null;
+            }
+        }, array.length);
+    }
+
+    /**
+     * Replaces each element of the array by the result of <i>operator</i>.
+     *
+     * @param array    the array.
+     * @param operator a side-effect free operator.
+     */
+    public static void map(final int[] array, final IntUnaryOperator operator) {
+        mapTo(array, array, operator);
+    }
+
+    /**
+     * Stores the result of <i>operator</i> for each element of <i>source</i> at
+     * the same index of <i>dest</i>.
+     *
+     * @param source   the source array.
+     * @param dest     the destination array, at least as long as the source.
+     * @param operator a side-effect free operator.
+     */
+    public static void mapTo(final int[] source, final int[] dest, final IntUnaryOperator operator) {
+        if (dest.length < source.length)
+            throw new IllegalArgumentException("Destination too short: " + dest.length + " < " + source.length);
+        run(new Kernel<Void>() {
+            Void compute(int from, int to) {
+                for (int i = from; i < to; i++)
+                    dest[i] = operator.applyAsInt(source[i]);
+                return null;
+            }
+        }, source.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the sum of the elements.
+     */
+    public static long sum(final int[] array) {
+        Kernel<Long> kernel = new Kernel<Long>() {
+            Long compute(int from, int to) {
+                long sum = 0;
+                for (int i = from; i < to; i++)
+                    sum += array[i];
+                return sum;
+            }
+
+            Long combine(Long left, Long right) {
+                return left + right;
+            }
+        };
+        return array.length == 0 ? 0 : run(kernel, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the smallest element.
+     * @throws NoSuchElementException if the array is empty.
+     */
+    public static int min(final int[] array) {
+        checkNotEmpty(array.length);
+        return run(new Kernel<Integer>() {
+            Integer compute(int from, int to) {
+                int min = array[from];
+                for (int i = from + 1; i < to; i++)
+                    min = Math.min(min, array[i]);
+                return min;
+            }
+
+            Integer combine(Integer left, Integer right) {
+                return Math.min(left, right);
+            }
+        }, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the largest element.
+     * @throws NoSuchElementException if the array is empty.
+     */
+    public static int max(final int[] array) {
+        checkNotEmpty(array.length);
+        return run(new Kernel<Integer>() {
+            Integer compute(int from, int to) {
+                int max = array[from];
+                for (int i = from + 1; i < to; i++)
+                    max = Math.max(max, array[i]);
+                return max;
+            }
+
+            Integer combine(Integer left, Integer right) {
+                return Math.max(left, right);
+            }
+        }, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @param value the value to look for.
+     * @return the index of the first element equal to <i>value</i>, or
+     *         <code>-1</code> if there is none.
+     */
+    public static int indexOf(final int[] array, final int value) {
+        return run(new IndexKernel() {
+            int indexOf(int from, int to) {
+                for (int i = from; i < to; i++)
+                    if (array[i] == value)
+                        return i;
+                return -1;
+            }
+        }, array.length);
+    }
+
+    /**
+     * Sets all the elements of the array to <i>value</i>.
+     *
+     * @param array the array.
+     * @param value the value.
+     */
+    public static void fill(final long[] array, final long value) {
+        run(new Kernel<Void>() {
+            Void compute(int from, int to) {
+                for (int i = from; i < to; i++)
+                    array[i] = value;
+                return null;
+            }
+        }, array.length);
+    }
+
+    /**
+     * Replaces each element of the array by the result of <i>operator</i>.
+     *
+     * @param array    the array.
+     * @param operator a side-effect free operator.
+     */
+    public static void map(final long[] array, final LongUnaryOperator operator) {
+        mapTo(array, array, operator);
+    }
+
+    /**
+     * Stores the result of <i>operator</i> for each element of <i>source</i> at
+     * the same index of <i>dest</i>.
+     *
+     * @param source   the source array.
+     * @param dest     the destination array, at least as long as the source.
+     * @param operator a side-effect free operator.
+     */
+    public static void mapTo(final long[] source, final long[] dest, final LongUnaryOperator operator) {
+        if (dest.length < source.length)
+            throw new IllegalArgumentException("Destination too short: " + dest.length + " < " + source.length);
+        run(new Kernel<Void>() {
+            Void compute(int from, int to) {
+                for (int i = from; i < to; i++)
+                    dest[i] = operator.applyAsLong(source[i]);
+                return null;
+            }
+        }, source.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the sum of the elements.
+     */
+    public static long sum(final long[] array) {
+        Kernel<Long> kernel = new Kernel<Long>() {
+            Long compute(int from, int to) {
+                long sum = 0;
+                for (int i = from; i < to; i++)
+                    sum += array[i];
+                return sum;
+            }
+
+            Long combine(Long left, Long right) {
+                return left + right;
+            }
+        };
+        return array.length == 0 ? 0 : run(kernel, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the smallest element.
+     * @throws NoSuchElementException if the array is empty.
+     */
+    public static long min(final long[] array) {
+        checkNotEmpty(array.length);
+        return run(new Kernel<Long>() {
+            Long compute(int from, int to) {
+                long min = array[from];
+                for (int i = from + 1; i < to; i++)
+                    min = Math.min(min, array[i]);
+                return min;
+            }
+
+            Long combine(Long left, Long right) {
+                return Math.min(left, right);
+            }
+        }, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the largest element.
+     * @throws NoSuchElementException if the array is empty.
+     */
+    public static long max(final long[] array) {
+        checkNotEmpty(array.length);
+        return run(new Kernel<Long>() {
+            Long compute(int from, int to) {
+                long max = array[from];
+                for (int i = from + 1; i < to; i++)
+                    max = Math.max(max, array[i]);
+                return max;
+            }
+
+            Long combine(Long left, Long right) {
+                return Math.max(left, right);
+            }
+        }, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @param value the value to look for.
+     * @return the index of the first element equal to <i>value</i>, or
+     *         <code>-1</code> if there is none.
+     */
+    public static int indexOf(final long[] array, final long value) {
+        return run(new IndexKernel() {
+            int indexOf(int from, int to) {
+                for (int i = from; i < to; i++)
+                    if (array[i] == value)
+                        return i;
+                return -1;
+            }
+        }, array.length);
+    }
+
+    /**
+     * Sets all the elements of the array to <i>value</i>.
+     *
+     * @param array the array.
+     * @param value the value.
+     */
+    public static void fill(final double[] array, final double value) {
+        run(new Kernel<Void>() {
+            Void compute(int from, int to) {
+                for (int i = from; i < to; i++)
+                    array[i] = value;
+                return null;
+            }
+        }, array.length);
+    }
+
+    /**
+     * Replaces each element of the array by the result of <i>operator</i>.
+     *
+     * @param array    the array.
+     * @param operator a side-effect free operator.
+     */
+    public static void map(final double[] array, final DoubleUnaryOperator operator) {
+        mapTo(array, array, operator);
+    }
+
+    /**
+     * Stores the result of <i>operator</i> for each element of <i>source</i> at
+     * the same index of <i>dest</i>.
+     *
+     * @param source   the source array.
+     * @param dest     the destination array, at least as long as the source.
+     * @param operator a side-effect free operator.
+     */
+    public static void mapTo(final double[] source, final double[] dest, final DoubleUnaryOperator operator) {
+        if (dest.length < source.length)
+            throw new IllegalArgumentException("Destination too short: " + dest.length + " < " + source.length);
+        run(new Kernel<Void>() {
+            Void compute(int from, int to) {
+                for (int i = from; i < to; i++)
+                    dest[i] = operator.applyAsDouble(source[i]);
+                return null;
+            }
+        }, source.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the sum of the elements.
+     */
+    public static double sum(final double[] array) {
+        Kernel<Double> kernel = new Kernel<Double>() {
+            Double compute(int from, int to) {
+                double sum = 0;
+                for (int i = from; i < to; i++)
+                    sum += array[i];
+                return sum;
+            }
+
+            Double combine(Double left, Double right) {
+                return left + right;
+            }
+        };
+        return array.length == 0 ? 0 : run(kernel, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the smallest element.
+     * @throws NoSuchElementException if the array is empty.
+     */
+    public static double min(final double[] array) {
+        checkNotEmpty(array.length);
+        return run(new Kernel<Double>() {
+            Double compute(int from, int to) {
+                double min = array[from];
+                for (int i = from + 1; i < to; i++)
+                    min = Math.min(min, array[i]);
+                return min;
+            }
+
+            Double combine(Double left, Double right) {
+                return Math.min(left, right);
+            }
+        }, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @return the largest element.
+     * @throws NoSuchElementException if the array is empty.
+     */
+    public static double max(final double[] array) {
+        checkNotEmpty(array.length);
+        return run(new Kernel<Double>() {
+            Double compute(int from, int to) {
+                double max = array[from];
+                for (int i = from + 1; i < to; i++)
+                    max = Math.max(max, array[i]);
+                return max;
+            }
+
+            Double combine(Double left, Double right) {
+                return Math.max(left, right);
+            }
+        }, array.length);
+    }
+
+    /**
+     * @param array the array.
+     * @param value the value to look for.
+     * @return the index of the first element equal to <i>value</i>, or
+     *         <code>-1</code> if there is none.
+     */
+    public static int indexOf(final double[] array, final double value) {
+        return run(new IndexKernel() {
+            int indexOf(int from, int to) {
+                for (int i = from; i < to; i++)
+                    if (array[i] == value)
+                        return i;
+                return -1;
+            }
+        }, array.length);
+    }
+
+    private static void checkNotEmpty(int length) {
+        if (length == 0)
+            throw new NoSuchElementException("Empty array");
+    }
+
+    private static <R> R run(Kernel<R> kernel, int length) {
+        int threshold = parallelThreshold;
+        if (length < threshold)
+            return kernel.compute(0, length);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        // A few ranges per worker, to balance the load, but never tiny ones.
+        int grain = Math.max(length / (pool.getParallelism() * 4), Math.min(threshold, 4096));
+        return pool.invoke(new KernelTask<R>(kernel, 0, length, grain));
+    }
+
+    /**
+     * The sequential loop of an operation over a range of the array, and how to
+     * combine the results of two adjacent ranges, left first.
+     */
+    private abstract static class Kernel<R> {
+        abstract R compute(int from, int to);
+
+        R combine(R left, R right) {
+            return null;
+        }
+    }
+
+    /**
+     * Looks for the first match. The ranges are searched by blocks, and a range
+     * stops as soon as a match was found before the block it is about to search.
+     */
+    private abstract static class IndexKernel extends Kernel<Integer> {
+        private static final int BLOCK = 4096;
+
+        // The lowest index found so far, by any range.
+        private final AtomicInteger found = new AtomicInteger(Integer.MAX_VALUE);
+
+        Integer compute(int from, int to) {
+            for (int start = from; start < to; start += BLOCK) {
+                if (found.get() < start)
+                    return -1;
+                int index = indexOf(start, start + Math.min(BLOCK, to - start));
+                if (index >= 0) {
+                    int lowest;
+                    while (index < (lowest = found.get()) && !found.compareAndSet(lowest, index))
+                        ;
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return the index of the first match in the range, or -1.
+         */
+        abstract int indexOf(int from, int to);
+
+        Integer combine(Integer left, Integer right) {
+            return left >= 0 ? left : right;
+        }
+    }
+
+    private static final class KernelTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Kernel<R> kernel;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        KernelTask(Kernel<R> kernel, int from, int to, int grain) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= grain)
+                return kernel.compute(from, to);
+            int middle = (from + to) >>> 1;
+            KernelTask<R> left = new KernelTask<R>(kernel, from, middle, grain);
+            KernelTask<R> right = new KernelTask<R>(kernel, middle, to, grain);
+            right.fork();
+            R leftResult = left.compute();
+            return kernel.combine(leftResult, right.join());
+        }
+    }
+}
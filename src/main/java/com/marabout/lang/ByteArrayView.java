@@ -0,0 +1,238 @@
+package com.marabout.lang;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable, zero-copy view over one or more <code>byte[]</code> segments.
+ * <p/>
+ * See {@link ArrayView} for the sharing rules.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class ByteArrayView {
+
+    // The segments: elements [froms[i], froms[i] + ends[i] - ends[i - 1]) of arrays[i].
+    private final byte[][] arrays;
+    private final int[] froms;
+    // Cumulative end of each segment in the concatenation of all the segments.
+    private final int[] ends;
+    // The window of this view in the concatenation of all the segments.
+    private final int offset;
+    private final int size;
+
+    private ByteArrayView(byte[][] arrays, int[] froms, int[] ends, int offset, int size) {
+        this.arrays = arrays;
+        this.froms = froms;
+        this.ends = ends;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Returns a view over a whole array.
+     *
+     * @param array the array.
+     * @return the view.
+     */
+    public static ByteArrayView of(byte[] array) {
+        return of(array, 0, array.length);
+    }
+
+    /**
+     * Returns a view over the elements <i>from</i> (inclusive) to <i>to</i>
+     * (exclusive) of an array.
+     *
+     * @param array the array.
+     * @param from  the index of the first element.
+     * @param to    the index after the last element.
+     * @return the view.
+     */
+    public static ByteArrayView of(byte[] array, int from, int to) {
+        ArrayView.checkRange(from, to, array.length);
+        return new ByteArrayView(new byte[][]{ array }, new int[]{ from }, new int[]{ to - from }, 0, to - from);
+    }
+
+    /**
+     * Returns a view over the concatenation of the specified views, without
+     * copying their elements.
+     *
+     * @param views the views.
+     * @return the concatenated view.
+     */
+    public static ByteArrayView concat(ByteArrayView... views) {
+        int segments = 0;
+        int size = 0;
+        for (ByteArrayView view : views) {
+            segments += view.ends.length;
+            size += view.size;
+        }
+        byte[][] arrays = new byte[segments][];
+        int[] froms = new int[segments];
+        int[] ends = new int[segments];
+        int count = 0;
+        int end = 0;
+        for (ByteArrayView view : views) {
+            int viewEnd = view.offset + view.size;
+            for (int i = 0; i < view.ends.length; i++) {
+                int start = i == 0 ? 0 : view.ends[i - 1];
+                int from = Math.max(start, view.offset);
+                int to = Math.min(view.ends[i], viewEnd);
+                if (from >= to)
+                    continue;
+                arrays[count] = view.arrays[i];
+                froms[count] = view.froms[i] + from - start;
+                end += to - from;
+                ends[count++] = end;
+            }
+        }
+        if (count < segments) {
+            arrays = Arrays.copyOf(arrays, count);
+            froms = Arrays.copyOf(froms, count);
+            ends = Arrays.copyOf(ends, count);
+        }
+        return new ByteArrayView(arrays, froms, ends, 0, size);
+    }
+
+    /**
+     * @return the number of elements of the view.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return <code>true</code> if the view has no element.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index the index of an element.
+     * @return the element.
+     */
+    public byte get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        int position = offset + index;
+        if (ends.length == 1)
+            return arrays[0][froms[0] + position];
+        int segment = segmentOf(position);
+        int start = segment == 0 ? 0 : ends[segment - 1];
+        return arrays[segment][froms[segment] + position - start];
+    }
+
+    /**
+     * Returns the first element of the view.
+     *
+     * @return the first element.
+     * @throws NoSuchElementException if the view is empty.
+     */
+    public byte first() {
+        if (size == 0)
+            throw new NoSuchElementException("Empty view");
+        return get(0);
+    }
+
+    /**
+     * Returns the view minus its first element, without copying. The rest of an
+     * empty view is an empty view.
+     *
+     * @return the rest of the view.
+     */
+    public ByteArrayView rest() {
+        return size == 0 ? this : slice(1, size);
+    }
+
+    /**
+     * Returns the elements <i>from</i> (inclusive) to <i>to</i> (exclusive) of
+     * the view, without copying.
+     *
+     * @param from the index of the first element.
+     * @param to   the index after the last element.
+     * @return the slice.
+     */
+    public ByteArrayView slice(int from, int to) {
+        ArrayView.checkRange(from, to, size);
+        return new ByteArrayView(arrays, froms, ends, offset + from, to - from);
+    }
+
+    /**
+     * Copies the elements of the view into an array.
+     *
+     * @param dest    the destination array.
+     * @param destPos the index of the first element in the destination array.
+     */
+    public void copyTo(byte[] dest, int destPos) {
+        int viewEnd = offset + size;
+        for (int i = 0; i < ends.length; i++) {
+            int start = i == 0 ? 0 : ends[i - 1];
+            int from = Math.max(start, offset);
+            int to = Math.min(ends[i], viewEnd);
+            if (from >= to)
+                continue;
+            System.arraycopy(arrays[i], froms[i] + from - start, dest, destPos, to - from);
+            destPos += to - from;
+        }
+    }
+
+    /**
+     * @return a new array holding the elements of the view.
+     */
+    public byte[] toArray() {
+        byte[] result = new byte[size];
+        copyTo(result, 0);
+        return result;
+    }
+
+    /**
+     * @return an iterator over the elements of the view, widened to int.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index;
+            private int segment;
+
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            public int nextInt() {
+                if (index >= size)
+                    throw new NoSuchElementException();
+                int position = offset + index++;
+                while (ends[segment] <= position)
+                    segment++;
+                int start = segment == 0 ? 0 : ends[segment - 1];
+                return arrays[segment][froms[segment] + position - start];
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sbuilder = new StringBuilder();
+        sbuilder.append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                sbuilder.append(", ");
+            sbuilder.append(get(i));
+        }
+        return sbuilder.append(']').toString();
+    }
+
+    private int segmentOf(int position) {
+        int low = 0;
+        int high = ends.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] <= position)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,216 @@
+package com.marabout.lang;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A clock that reads the system clock periodically instead of on each call.
+ * <p/>
+ * A daemon thread ticks at a fixed resolution, and publishes the current time
+ * with the current second already formatted as <code>yyyy-MM-dd HH:mm:ss</code>.
+ * Reading the time is a single volatile read, and
+ * {@link #appendTimestamp(StringBuilder)} only appends the pre-rendered second
+ * and the milliseconds. The price is that the time lags behind the system clock
+ * by up to the resolution.
+ * <p/>
+ * The clock can be used wherever a {@link Clock} is expected, and in particular
+ * by {@link DateUtils#setClock(Clock)}. It must be {@link #stop() stopped} when
+ * no longer used. The clocks returned by {@link #withZone(ZoneId)} share its
+ * ticker thread, and are stopped with it.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class CachedClock extends Clock {
+
+    private final Ticker ticker;
+    private final ZoneId zone;
+    // The last tick seen in the zone of this clock, when it is not the zone of the ticker.
+    private volatile Tick zoneTick;
+
+    /**
+     * Creates and starts a clock in the default time-zone.
+     *
+     * @param resolution the tick period, at least one millisecond.
+     * @param unit       the unit of the resolution.
+     */
+    public CachedClock(long resolution, TimeUnit unit) {
+        this(resolution, unit, ZoneId.systemDefault());
+    }
+
+    /**
+     * Creates and starts a clock.
+     *
+     * @param resolution the tick period, at least one millisecond.
+     * @param unit       the unit of the resolution.
+     * @param zone       the time-zone of the clock.
+     */
+    public CachedClock(long resolution, TimeUnit unit, ZoneId zone) {
+        this(startTicker(resolution, unit, zone), zone);
+    }
+
+    private CachedClock(Ticker ticker, ZoneId zone) {
+        this.ticker = ticker;
+        this.zone = zone;
+    }
+
+    /**
+     * Stops the ticker thread, shared with the clocks in other time-zones
+     * returned by {@link #withZone(ZoneId)}. The clocks are then frozen at
+     * their last tick.
+     */
+    public void stop() {
+        ticker.stop();
+    }
+
+    /**
+     * @return the resolution of the clock, in milliseconds.
+     */
+    public long getResolutionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.resolutionNanos);
+    }
+
+    @Override
+    public long millis() {
+        return ticker.tick.millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(ticker.tick.millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Returns a clock in another time-zone, sharing the ticker of this clock.
+     * Its seconds are formatted when first read rather than by the ticker.
+     */
+    @Override
+    public CachedClock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new CachedClock(ticker, zone);
+    }
+
+    /**
+     * @return the current second, formatted as <code>yyyy-MM-dd HH:mm:ss</code>.
+     */
+    public String currentSecond() {
+        return currentTick().second;
+    }
+
+    /**
+     * Appends the current time, formatted as <code>yyyy-MM-dd HH:mm:ss.SSS</code>.
+     *
+     * @param sbuilder the builder to append to.
+     * @return the builder.
+     */
+    public StringBuilder appendTimestamp(StringBuilder sbuilder) {
+        Tick current = currentTick();
+        int millis = (int) Math.floorMod(current.millis, 1000L);
+        sbuilder.append(current.second).append('.');
+        if (millis < 100)
+            sbuilder.append('0');
+        if (millis < 10)
+            sbuilder.append('0');
+        return sbuilder.append(millis);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CachedClock))
+            return false;
+        CachedClock other = (CachedClock) obj;
+        return ticker == other.ticker && zone.equals(other.zone);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(ticker) ^ zone.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedClock[" + zone + ", " + getResolutionMillis() + " ms]";
+    }
+
+    private static Ticker startTicker(long resolution, TimeUnit unit, ZoneId zone) {
+        if (unit.toMillis(resolution) < 1)
+            throw new IllegalArgumentException("Resolution under one millisecond: " + resolution + " " + unit);
+        return new Ticker(unit.toNanos(resolution), zone);
+    }
+
+    private Tick currentTick() {
+        Tick current = ticker.tick;
+        if (zone.equals(ticker.zone))
+            return current;
+        Tick local = zoneTick;
+        if (local == null || local.millis != current.millis) {
+            local = new Tick(current.millis, local, zone);
+            zoneTick = local;
+        }
+        return local;
+    }
+
+    /**
+     * The thread reading the system clock, and its last tick.
+     */
+    private static final class Ticker implements Runnable {
+        final long resolutionNanos;
+        final ZoneId zone;
+        private final Thread thread;
+        volatile Tick tick;
+        private volatile boolean running = true;
+
+        Ticker(long resolutionNanos, ZoneId zone) {
+            this.resolutionNanos = resolutionNanos;
+            this.zone = zone;
+            this.tick = new Tick(System.currentTimeMillis(), null, zone);
+            this.thread = new Thread(this, "cached-clock-ticker");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public void run() {
+            while (running) {
+                LockSupport.parkNanos(this, resolutionNanos);
+                tick = new Tick(System.currentTimeMillis(), tick, zone);
+            }
+        }
+
+        void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The time at a tick, with its second formatted once per second.
+     */
+    private static final class Tick {
+        final long millis;
+        final long epochSecond;
+        final String second;
+
+        Tick(long millis, Tick previous, ZoneId zone) {
+            this.millis = millis;
+            this.epochSecond = Math.floorDiv(millis, 1000L);
+            if (previous != null && previous.epochSecond == epochSecond) {
+                this.second = previous.second;
+            } else {
+                StringBuilder sbuilder = DateUtils.appendTimestamp(new StringBuilder(DateUtils.TIMESTAMP_LENGTH),
+                    epochSecond * 1000, zone);
+                this.second = sbuilder.substring(0, DateUtils.TIMESTAMP_LENGTH - 4);
+            }
+        }
+    }
+}
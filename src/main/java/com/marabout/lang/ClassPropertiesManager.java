@@ -2,12 +2,33 @@ package com.marabout.lang;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.marabout.lang.metrics.Counter;
+import com.marabout.lang.metrics.MetricsRegistry;
+import com.marabout.lang.metrics.Timer;
+import com.marabout.utils.CacheLoader;
+import com.marabout.utils.ConcurrentCache;
+
 /**
  * Properties management class.
  * <p/>
@@ -29,19 +50,80 @@ import java.util.logging.Logger;
  * <code>
  * String value = getString("my_property", this);
  * </code>
+ * <p/>
+ * The properties are loaded once and shared by all the threads. When the
+ * {@link #enableReload() reload mode} is enabled, the properties files found on
+ * the filesystem are watched, and a modified file replaces the cached properties
+ * of its class as a whole; the registered {@link PropertiesChangeListener}s are
+ * then notified.
+ * <p/>
+ * The properties of a class are resolved from several files, each one
+ * overriding the next ones:
+ * <ol>
+ * <li>the file of the class itself,</li>
+ * <li>the files of its superclasses, nearest first,</li>
+ * <li>the files of the interfaces it implements,</li>
+ * <li>the <code>package.properties</code> file of its package,</li>
+ * </ol>
+ * and can finally be overridden by the system property
+ * <code>com.foo.Bar.</code><i>name</i>, or by the environment variable
+ * <code>COM_FOO_BAR_</code><i>NAME</i> (non alphanumeric characters replaced
+ * by <code>_</code>). The parsed files are merged once per class into a single
+ * table, so reads never walk the hierarchy; the compiled files are looked up in
+ * place, as separate layers, so that they stay off the heap. The parsed files
+ * are kept in a bounded {@link ConcurrentCache}, so that the files shared by
+ * many classes, such as <code>package.properties</code>, are only parsed once;
+ * reloads parse them again.
+ * <p/>
+ * Large properties files can be compiled at build time by the
+ * {@link PropertiesCompiler}: when a <code>Bar.properties.bin</code> file is found
+ * next to <code>Bar.properties</code>, and is not older, it is memory-mapped
+ * instead of parsing the text file.
+ * <p/>
+ * The cache hits and misses, and the load time of the files, are recorded in the
+ * default {@link MetricsRegistry} as <code>ClassPropertiesManager.cache.hits</code>,
+ * <code>ClassPropertiesManager.cache.misses</code> and
+ * <code>ClassPropertiesManager.load</code>.
  *
  * @author <a href="mailto:gmarabout@gmail.com">Grgoire Marabout</a>
  */
 public class ClassPropertiesManager {
     private static final ClassPropertiesManager INSTANCE = new ClassPropertiesManager();
-    private static final Properties emptyProperties = new Properties() {
+    private static final Map<String, String> emptyProperties = Collections.emptyMap();
+    private static final int MAX_PARSED_FILES = 1024;
+
+    /**
+     * Process-wide cache of the loaded properties, one entry per class.
+     * <p/>
+     * <code>ClassValue</code> stores the entry on the class itself, so reads do not
+     * take any lock, and the entry goes away with the class when its classloader
+     * is unloaded.
+     */
+    private final ClassValue<PropertiesEntry> propertiesEntries = new ClassValue<PropertiesEntry>() {
         @Override
-        public Object setProperty(String key, String value) {
-            throw new UnsupportedOperationException("Immutable properties");
+        protected PropertiesEntry computeValue(Class<?> type) {
+            return new PropertiesEntry();
         }
     };
-    private ThreadLocal<Map<Class, Properties>> threadLocalPropertiesMap;
+    /**
+     * All the loaded entries, so that the watcher can pick them up when the reload
+     * mode is enabled after they were loaded. Never used on the read path.
+     */
+    private final Set<PropertiesEntry> loadedEntries =
+        Collections.newSetFromMap(new WeakHashMap<PropertiesEntry, Boolean>());
+    /**
+     * The parsed properties files, by classloader and URL, shared by all the
+     * classes resolved from them. A new classloader, after a redeployment for
+     * instance, parses the files again even if their URLs did not change.
+     */
+    private final ConcurrentCache<ParsedFileKey, Map<String, String>> parsedFiles =
+        ConcurrentCache.<ParsedFileKey, Map<String, String>>newBuilder().maximumSize(MAX_PARSED_FILES).build();
+    private final List<PropertiesChangeListener> listeners = new CopyOnWriteArrayList<PropertiesChangeListener>();
+    private PropertiesWatcher watcher;
     private Logger logger = Logger.getLogger(ClassPropertiesManager.class.getName());
+    private final Counter cacheHits = MetricsRegistry.getDefault().counter("ClassPropertiesManager.cache.hits");
+    private final Counter cacheMisses = MetricsRegistry.getDefault().counter("ClassPropertiesManager.cache.misses");
+    private final Timer loadTimer = MetricsRegistry.getDefault().timer("ClassPropertiesManager.load");
 
     /**
      * This class cannot be instantiated directly.
@@ -49,51 +131,460 @@ public class ClassPropertiesManager {
     private ClassPropertiesManager() {
     }
 
-    private Map<Class, Properties> getPropertiesMap() {
-        if (threadLocalPropertiesMap == null) {
-            threadLocalPropertiesMap = new ThreadLocal<Map<Class, Properties>>();
-            threadLocalPropertiesMap.set(new HashMap<Class, Properties>());
+    private PropertiesSnapshot getSnapshot(Class cls) {
+        PropertiesEntry entry = propertiesEntries.get(cls);
+        PropertiesSnapshot snapshot = entry.snapshot;
+        if (snapshot == null) {
+            // Only the first readers of a class ever get here: the file is loaded
+            // once, while the other threads wait on the entry.
+            synchronized (entry) {
+                if (entry.snapshot == null) {
+                    cacheMisses.increment();
+                    load(cls, entry);
+                } else {
+                    cacheHits.increment();
+                }
+                snapshot = entry.snapshot;
+            }
+        } else {
+            cacheHits.increment();
         }
-        return threadLocalPropertiesMap.get();
+        return snapshot;
     }
 
-    private Properties getProperties(Object obj) {
-        Properties props;
-        Class cls = (obj instanceof Class) ? (Class) obj : obj.getClass();
-        Map<Class, Properties> propertiesMap = getPropertiesMap();
-        if (!propertiesMap.keySet().contains(cls)) {
-            props = loadProperties(cls);
-            propertiesMap.put(cls, props);
-        } else {
-            props = propertiesMap.get(cls);
+    private Map<String, String> getProperties(Object obj) {
+        return getSnapshot(classOf(obj)).values;
+    }
+
+    private TypedProperties getTypedProperties(Class cls, PropertySchema schema) {
+        PropertiesSnapshot snapshot = getSnapshot(cls);
+        TypedProperties typed = snapshot.typedProperties.get(schema);
+        if (typed == null) {
+            PropertyFormatException failure = snapshot.typedFailures.get(schema);
+            if (failure != null)
+                // The values did not change since they failed to parse: report them again.
+                throw new PropertyFormatException(failure.getSource(), failure.getErrors());
+            try {
+                typed = TypedProperties.parse(schema, snapshot.values, cls.getSimpleName() + ".properties");
+            } catch (PropertyFormatException e) {
+                snapshot.typedFailures.putIfAbsent(schema, e);
+                throw e;
+            }
+            TypedProperties existing = snapshot.typedProperties.putIfAbsent(schema, typed);
+            if (existing != null)
+                typed = existing;
+        }
+        return typed;
+    }
+
+    private <T> PropertyHandle<T> createHandle(Class cls, String propertyName, Class<T> type, T defaultValue) {
+        PropertyHandle<T> handle = new PropertyHandle<T>(propertyName, type, defaultValue);
+        getSnapshot(cls);
+        PropertiesEntry entry = propertiesEntries.get(cls);
+        // Under the entry lock, so that a concurrent reload cannot miss the handle.
+        synchronized (entry) {
+            handle.set(convert(handle, entry.snapshot.values, entry.fileName));
+            entry.handles.add(new WeakReference<PropertyHandle<?>>(handle));
         }
-        return props;
+        return handle;
     }
 
-    private Properties loadProperties(Class cls) {
-        String propertiesFileName = cls.getSimpleName() + ".properties";
-        logger.info("Loading: " + propertiesFileName);
-        InputStream istream = null;
+    /**
+     * Sets a value converted by {@link #convert(PropertyHandle, Map, String)} for the same handle.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void publish(PropertyHandle<T> handle, Object value) {
+        handle.set((T) value);
+    }
+
+    private static <T> T convert(PropertyHandle<T> handle, Map<String, String> values, String fileName) {
+        String raw = values.get(handle.getName());
         try {
-            istream = cls.getResourceAsStream(propertiesFileName);
+            return handle.convert(raw);
+        } catch (IllegalArgumentException e) {
+            throw new PropertyFormatException(fileName,
+                Collections.singletonList(handle.getName() + "=" + raw + " (" + e.getMessage() + ")"));
+        }
+    }
 
-            if (istream == null)
-                return emptyProperties;
-            Properties props = new Properties();
+    private static Class classOf(Object obj) {
+        return (obj instanceof Class) ? (Class) obj : obj.getClass();
+    }
+
+    private void load(Class cls, PropertiesEntry entry) {
+        entry.fileName = cls.getSimpleName() + ".properties";
+        entry.type = new WeakReference<Class>(cls);
+        entry.sources = findSources(cls);
+        logger.info("Loading: " + entry.fileName);
+        entry.snapshot = loadSnapshot(entry);
+        synchronized (this) {
+            loadedEntries.add(entry);
+            if (watcher != null)
+                watcher.watch(entry);
+        }
+    }
+
+    /**
+     * Returns the properties files of a class, in the order they are merged: the
+     * files found last override the ones found first.
+     */
+    private static List<PropertiesSource> findSources(Class cls) {
+        Set<Class> types = new LinkedHashSet<Class>();
+        for (Class type = cls; type != null && type != Object.class; type = type.getSuperclass())
+            types.add(type);
+        List<Class> interfaces = new ArrayList<Class>();
+        for (Class type : types)
+            interfaces.addAll(Arrays.asList(type.getInterfaces()));
+        for (int i = 0; i < interfaces.size(); i++) {
+            if (types.add(interfaces.get(i)))
+                interfaces.addAll(Arrays.asList(interfaces.get(i).getInterfaces()));
+        }
+        List<PropertiesSource> sources = new ArrayList<PropertiesSource>();
+        addSource(sources, cls, "package.properties");
+        List<Class> ordered = new ArrayList<Class>(types);
+        for (int i = ordered.size() - 1; i >= 0; i--)
+            addSource(sources, ordered.get(i), ordered.get(i).getSimpleName() + ".properties");
+        return Collections.unmodifiableList(sources);
+    }
+
+    private static void addSource(List<PropertiesSource> sources, Class type, String fileName) {
+        URL text = type.getResource(fileName);
+        URL compiled = type.getResource(fileName + CompiledProperties.SUFFIX);
+        if (text != null || compiled != null)
+            sources.add(new PropertiesSource(type.getClassLoader(), text, compiled));
+    }
+
+    private PropertiesSnapshot loadSnapshot(PropertiesEntry entry) {
+        // The layers, each one overriding the previous ones.
+        List<Map<String, String>> layers = new ArrayList<Map<String, String>>();
+        Map<String, String> merged = null;
+        for (PropertiesSource source : entry.sources) {
+            Map<String, String> layer;
             try {
-                props.load(istream);
+                layer = loadLayer(source);
             } catch (IOException ioe) {
                 logger.log(Level.WARNING, ioe.getMessage());
-                props = emptyProperties;
+                continue;
+            }
+            merged = addLayer(layers, merged, layer);
+        }
+        Class cls = entry.type.get();
+        if (cls != null)
+            merged = addLayer(layers, merged, findOverrides(cls.getName(), layers));
+        if (layers.isEmpty())
+            return new PropertiesSnapshot(emptyProperties);
+        if (layers.size() == 1)
+            return new PropertiesSnapshot(layers.get(0) == merged ? Collections.unmodifiableMap(merged) : layers.get(0));
+        Collections.reverse(layers);
+        return new PropertiesSnapshot(new LayeredProperties(layers));
+    }
+
+    /**
+     * Adds a layer on top of the others. A single file is used as is, and the
+     * compiled files are kept as separate layers, so that they stay off the
+     * heap; the parsed files following each other are merged into a copy.
+     *
+     * @param merged the last layer if it is a copy made here, or <code>null</code>.
+     * @return the last layer if it is a copy made here, or <code>null</code>.
+     */
+    private static Map<String, String> addLayer(List<Map<String, String>> layers, Map<String, String> merged,
+            Map<String, String> layer) {
+        if (layer.isEmpty())
+            return merged;
+        Map<String, String> last = layers.isEmpty() ? null : layers.get(layers.size() - 1);
+        if (layer instanceof CompiledProperties || last == null || last instanceof CompiledProperties) {
+            layers.add(layer);
+            return null;
+        }
+        if (merged == null) {
+            merged = new HashMap<String, String>(last);
+            layers.set(layers.size() - 1, merged);
+        }
+        merged.putAll(layer);
+        return merged;
+    }
+
+    private Map<String, String> loadLayer(PropertiesSource source) throws IOException {
+        final boolean compiled = source.compiled != null && CompiledProperties.isUpToDate(source.compiled, source.text);
+        final URL url = compiled ? source.compiled : source.text;
+        try {
+            return parsedFiles.get(compiled ? source.compiledKey : source.textKey,
+                    new CacheLoader<ParsedFileKey, Map<String, String>>() {
+                public Map<String, String> load(ParsedFileKey key) throws IOException {
+                    return compiled ? loadCompiledProperties(url) : loadProperties(url);
+                }
+            });
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the properties of a class overridden by system properties or
+     * environment variables.
+     */
+    private static Map<String, String> findOverrides(String className, List<Map<String, String>> layers) {
+        Map<String, String> overrides = new HashMap<String, String>();
+        String prefix = className + ".";
+        Properties system = System.getProperties();
+        for (String name : system.stringPropertyNames()) {
+            if (name.startsWith(prefix))
+                overrides.put(name.substring(prefix.length()), system.getProperty(name));
+        }
+        String envPrefix = toEnvironmentName(prefix);
+        for (Map.Entry<String, String> variable : System.getenv().entrySet()) {
+            String variableName = variable.getKey();
+            if (!variableName.startsWith(envPrefix) || variableName.length() == envPrefix.length())
+                continue;
+            for (String name : findOverriddenNames(variableName.substring(envPrefix.length()), layers)) {
+                if (!overrides.containsKey(name))
+                    overrides.put(name, variable.getValue());
             }
-            return props;
+        }
+        return Collections.unmodifiableMap(overrides);
+    }
+
+    /**
+     * Returns the names of the properties overridden by an environment variable.
+     * The keys of the parsed files are matched one by one, but the keys of the
+     * compiled files are not decoded: the usual spellings of the name, such as
+     * <code>max.size</code>, <code>max_size</code> or <code>max-size</code> for
+     * <code>MAX_SIZE</code>, are looked up instead.
+     *
+     * @param suffix the name of the variable, without the prefix of the class.
+     */
+    private static Set<String> findOverriddenNames(String suffix, List<Map<String, String>> layers) {
+        Set<String> names = new LinkedHashSet<String>();
+        String lowerCase = suffix.toLowerCase(Locale.ROOT);
+        String[] candidates = { lowerCase.replace('_', '.'), lowerCase, lowerCase.replace('_', '-'), suffix };
+        for (Map<String, String> layer : layers) {
+            if (layer instanceof CompiledProperties) {
+                for (String candidate : candidates) {
+                    if (layer.containsKey(candidate))
+                        names.add(candidate);
+                }
+            } else {
+                for (String name : layer.keySet()) {
+                    if (toEnvironmentName(name).equals(suffix))
+                        names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String toEnvironmentName(String name) {
+        StringBuilder sbuilder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sbuilder.append(c < 128 && Character.isLetterOrDigit(c) ? Character.toUpperCase(c) : '_');
+        }
+        return sbuilder.toString();
+    }
+
+    private Map<String, String> loadProperties(URL url) throws IOException {
+        long start = loadTimer.start();
+        InputStream istream = url.openStream();
+        try {
+            Properties props = new Properties();
+            props.load(istream);
+            Map<String, String> values = new HashMap<String, String>(props.size() * 4 / 3 + 1);
+            for (String name : props.stringPropertyNames())
+                values.put(name, props.getProperty(name));
+            logger.log(Level.FINE, "Loaded {0}: {1}", new Object[]{ url, StringUtils.lazyMapToString(values) });
+            return Collections.unmodifiableMap(values);
+        } finally {
+            try {
+                istream.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e.getMessage(), e);
+            }
+            loadTimer.stop(start);
+        }
+    }
+
+    private Map<String, String> loadCompiledProperties(URL url) throws IOException {
+        long start = loadTimer.start();
+        try {
+            Map<String, String> values = CompiledProperties.open(url);
+            logger.log(Level.FINE, "Opened {0}: {1} entries", new Object[]{ url, values.size() });
+            return values;
         } finally {
-            if (istream != null)
+            loadTimer.stop(start);
+        }
+    }
+
+    /**
+     * Reloads the properties of the entry, and publishes them if they changed.
+     * The previous properties are kept if the new ones do not match the schemas
+     * already in use.
+     *
+     * @return <code>true</code> if the properties changed.
+     */
+    boolean reload(PropertiesEntry entry) {
+        PropertiesSnapshot oldSnapshot;
+        PropertiesSnapshot newSnapshot;
+        synchronized (entry) {
+            oldSnapshot = entry.snapshot;
+            if (oldSnapshot == null)
+                return false;
+            logger.info("Reloading: " + entry.fileName);
+            for (PropertiesSource source : entry.sources) {
+                if (source.textKey != null)
+                    parsedFiles.invalidate(source.textKey);
+                if (source.compiledKey != null)
+                    parsedFiles.invalidate(source.compiledKey);
+            }
+            newSnapshot = loadSnapshot(entry);
+            if (newSnapshot.values.equals(oldSnapshot.values))
+                return false;
+            List<PropertyHandle<?>> handles = new ArrayList<PropertyHandle<?>>();
+            List<Object> handleValues = new ArrayList<Object>();
+            try {
+                for (PropertySchema schema : oldSnapshot.typedProperties.keySet())
+                    newSnapshot.typedProperties.put(schema,
+                        TypedProperties.parse(schema, newSnapshot.values, entry.fileName));
+                for (Iterator<WeakReference<PropertyHandle<?>>> it = entry.handles.iterator(); it.hasNext(); ) {
+                    WeakReference<PropertyHandle<?>> ref = it.next();
+                    PropertyHandle<?> handle = ref.get();
+                    if (handle == null) {
+                        entry.handles.remove(ref);
+                        continue;
+                    }
+                    handles.add(handle);
+                    handleValues.add(convert(handle, newSnapshot.values, entry.fileName));
+                }
+            } catch (PropertyFormatException e) {
+                logger.log(Level.WARNING, "Keeping previous properties: " + e.getMessage());
+                return false;
+            }
+            entry.snapshot = newSnapshot;
+            for (int i = 0; i < handles.size(); i++)
+                publish(handles.get(i), handleValues.get(i));
+        }
+        Class cls = entry.type.get();
+        if (cls != null) {
+            for (PropertiesChangeListener listener : listeners) {
                 try {
-                    istream.close();
-                } catch (IOException e) {
-                    logger.log(Level.WARNING, e.getMessage(), e);
+                    listener.propertiesChanged(cls, oldSnapshot.values, newSnapshot.values);
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Properties listener failed: " + listener, e);
                 }
+            }
+        }
+        return true;
+    }
+
+    private synchronized void startWatcher() {
+        if (watcher != null)
+            return;
+        try {
+            watcher = new PropertiesWatcher(this);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot watch properties files: " + e.getMessage(), e);
+            return;
+        }
+        for (PropertiesEntry entry : loadedEntries)
+            watcher.watch(entry);
+    }
+
+    private synchronized void stopWatcher() {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * The cached properties of a single class. The snapshot is replaced as a
+     * whole on reload, so that readers always see a complete one.
+     */
+    static final class PropertiesEntry {
+        volatile PropertiesSnapshot snapshot;
+        // Set once, before the first snapshot is published.
+        String fileName;
+        List<PropertiesSource> sources;
+        WeakReference<Class> type;
+        final List<WeakReference<PropertyHandle<?>>> handles =
+            new CopyOnWriteArrayList<WeakReference<PropertyHandle<?>>>();
+    }
+
+    /**
+     * A properties file, in text or compiled form, or both.
+     */
+    static final class PropertiesSource {
+        final URL text;
+        final URL compiled;
+        final ParsedFileKey textKey;
+        final ParsedFileKey compiledKey;
+
+        PropertiesSource(ClassLoader loader, URL text, URL compiled) {
+            this.text = text;
+            this.compiled = compiled;
+            this.textKey = text != null ? new ParsedFileKey(loader, text) : null;
+            this.compiledKey = compiled != null ? new ParsedFileKey(loader, compiled) : null;
+        }
+    }
+
+    /**
+     * The key of a parsed file: its URL, and the classloader it was found by.
+     * The classloader is weakly referenced, so that the cache never keeps it
+     * alive; once it is collected, the key matches no other key, and its file
+     * is eventually evicted.
+     */
+    static final class ParsedFileKey {
+        // null for the bootstrap classloader.
+        private final WeakReference<ClassLoader> loader;
+        private final String url;
+        private final int hash;
+
+        ParsedFileKey(ClassLoader loader, URL url) {
+            this.loader = loader != null ? new WeakReference<ClassLoader>(loader) : null;
+            this.url = url.toExternalForm();
+            this.hash = System.identityHashCode(loader) * 31 + this.url.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof ParsedFileKey))
+                return false;
+            ParsedFileKey other = (ParsedFileKey) obj;
+            if (hash != other.hash || !url.equals(other.url))
+                return false;
+            if (loader == null || other.loader == null)
+                return loader == other.loader;
+            ClassLoader referent = loader.get();
+            return referent != null && referent == other.loader.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+
+    /**
+     * The immutable raw values of a properties file, with the typed views already
+     * parsed from them, and the schemas they failed to parse for.
+     */
+    private static final class PropertiesSnapshot {
+        final Map<String, String> values;
+        final ConcurrentMap<PropertySchema, TypedProperties> typedProperties =
+            new ConcurrentHashMap<PropertySchema, TypedProperties>();
+        final ConcurrentMap<PropertySchema, PropertyFormatException> typedFailures =
+            new ConcurrentHashMap<PropertySchema, PropertyFormatException>();
+
+        PropertiesSnapshot(Map<String, String> values) {
+            this.values = values;
         }
     }
 
@@ -107,7 +598,7 @@ public class ClassPropertiesManager {
      *         is not found.
      */
     public static String getString(String propertyName, Object obj) {
-        return INSTANCE.getProperties(obj).getProperty(propertyName);
+        return INSTANCE.getProperties(obj).get(propertyName);
     }
 
     /**
@@ -123,7 +614,7 @@ public class ClassPropertiesManager {
         String value = getString(propertyName, obj);
         if (value == null)
             return 0;
-        return Integer.valueOf(value);
+        return Integer.parseInt(value);
     }
 
     /**
@@ -151,6 +642,115 @@ public class ClassPropertiesManager {
      */
     public static int getInt(String propertyName, Object obj, int defaultValue) {
         String value = getString(propertyName, obj);
-        return value != null ? Integer.valueOf(value) : defaultValue;
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Returns the properties of object <i>obj</i>, parsed according to the
+     * specified schema. The properties are parsed once per class and schema, so
+     * that repeated reads through the returned object are plain array reads.
+     *
+     * @param obj    the object target.
+     * @param schema the schema declaring the typed properties.
+     * @return the typed properties.
+     * @throws PropertyFormatException if some values do not match their declared
+     *                                 type; all of them are reported at once.
+     */
+    public static TypedProperties getTypedProperties(Object obj, PropertySchema schema) {
+        return INSTANCE.getTypedProperties(classOf(obj), schema);
+    }
+
+    /**
+     * Creates a handle on the property named <i>propertyName</i> of class
+     * <i>cls</i>. The value is converted once, and kept up to date on reload, so
+     * that reading it through the handle is a single volatile read.
+     *
+     * @param cls          the class.
+     * @param propertyName the name of the property.
+     * @param type         the type of the value, see {@link PropertyHandle}.
+     * @param <T>          the type of the value.
+     * @return the handle.
+     * @throws PropertyFormatException if the value cannot be converted.
+     */
+    public static <T> PropertyHandle<T> handle(Class cls, String propertyName, Class<T> type) {
+        return INSTANCE.createHandle(cls, propertyName, type, null);
+    }
+
+    /**
+     * Same as {@link #handle(Class, String, Class)} but using a default value, if
+     * the property is not defined.
+     *
+     * @param cls          the class.
+     * @param propertyName the name of the property.
+     * @param type         the type of the value, see {@link PropertyHandle}.
+     * @param defaultValue the default value.
+     * @param <T>          the type of the value.
+     * @return the handle.
+     * @throws PropertyFormatException if the value cannot be converted.
+     */
+    public static <T> PropertyHandle<T> handle(Class cls, String propertyName, Class<T> type, T defaultValue) {
+        return INSTANCE.createHandle(cls, propertyName, type, defaultValue);
+    }
+
+    /**
+     * Enables the reload mode: the properties files of the classes, loaded so far
+     * or later, are watched when they are on the filesystem, and reloaded when
+     * they change, whether in text or compiled form. Files inside jars are never
+     * reloaded, and a compiled file created after the properties of its class
+     * were loaded is only picked up by {@link #reload(Class)}. A compiled file
+     * is mapped while in use: it must be replaced, as {@link PropertiesCompiler}
+     * does, rather than rewritten in place.
+     */
+    public static void enableReload() {
+        INSTANCE.startWatcher();
+    }
+
+    /**
+     * Disables the reload mode, and stops watching the properties files.
+     */
+    public static void disableReload() {
+        INSTANCE.stopWatcher();
+    }
+
+    /**
+     * Loads the properties of object <i>obj</i> now, if they are not loaded yet,
+     * so that the first read does not pay for it.
+     *
+     * @param obj the object target.
+     */
+    public static void preload(Object obj) {
+        INSTANCE.getSnapshot(classOf(obj));
+    }
+
+    /**
+     * Reloads the properties of object <i>obj</i> now, whether the reload mode is
+     * enabled or not. The listeners are notified if the properties changed.
+     *
+     * @param obj the object target.
+     * @return <code>true</code> if the properties changed.
+     */
+    public static boolean reload(Object obj) {
+        Class cls = classOf(obj);
+        INSTANCE.getSnapshot(cls);
+        return INSTANCE.reload(INSTANCE.propertiesEntries.get(cls));
+    }
+
+    /**
+     * Registers a listener, notified each time the properties of a class are
+     * reloaded with new values.
+     *
+     * @param listener the listener.
+     */
+    public static void addChangeListener(PropertiesChangeListener listener) {
+        INSTANCE.listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener.
+     */
+    public static void removeChangeListener(PropertiesChangeListener listener) {
+        INSTANCE.listeners.remove(listener);
     }
 }
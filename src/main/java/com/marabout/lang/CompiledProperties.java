@@ -0,0 +1,269 @@
+package com.marabout.lang;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The properties of a compiled properties file, read straight from its bytes.
+ * <p/>
+ * A compiled file holds a header, an index of <code>(key hash, record offset)</code>
+ * pairs sorted by hash, and the records: the UTF-8 encoded key and value of each
+ * property. Files on the filesystem are memory-mapped, so opening one does not
+ * depend on its size, and the properties take no heap: a lookup binary searches
+ * the index and decodes the value from the mapped pages.
+ * <p/>
+ * The map is immutable and thread-safe.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see PropertiesCompiler
+ */
+final class CompiledProperties extends AbstractMap<String, String> {
+
+    /**
+     * The suffix of the compiled files, appended to the name of the properties file.
+     */
+    static final String SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x43505250; // "CPRP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    private static final Comparator<String> BY_HASH = new Comparator<String>() {
+        public int compare(String key1, String key2) {
+            int result = Integer.compare(key1.hashCode(), key2.hashCode());
+            return result != 0 ? result : key1.compareTo(key2);
+        }
+    };
+
+    // Only absolute reads, so that the buffer can be shared by all the threads.
+    private final ByteBuffer buffer;
+    private final int size;
+    private Set<Map.Entry<String, String>> entrySet;
+
+    private CompiledProperties(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a compiled properties file");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported compiled properties version: " + buffer.getInt(4));
+        this.size = buffer.getInt(8);
+        if (size < 0 || HEADER_SIZE + (long) size * INDEX_ENTRY_SIZE > buffer.limit())
+            throw new IOException("Corrupted compiled properties file");
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens a compiled file, memory-mapped if it is on the filesystem.
+     *
+     * @param url the location of the file.
+     * @return the properties.
+     * @throws IOException if the file cannot be read, or is not a compiled file.
+     */
+    static CompiledProperties open(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ);
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+            try {
+                // The mapping stays valid once the channel is closed.
+                return new CompiledProperties(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                channel.close();
+            }
+        }
+        InputStream istream = url.openStream();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = istream.read(chunk)) >= 0)
+                bytes.write(chunk, 0, read);
+            return new CompiledProperties(ByteBuffer.wrap(bytes.toByteArray()));
+        } finally {
+            istream.close();
+        }
+    }
+
+    /**
+     * Writes properties in the compiled format.
+     *
+     * @param properties the properties.
+     * @param ostream    the stream to write to. It is not closed.
+     * @throws IOException if the stream cannot be written.
+     */
+    static void write(Map<String, String> properties, OutputStream ostream) throws IOException {
+        List<String> keys = new ArrayList<String>(properties.keySet());
+        Collections.sort(keys, BY_HASH);
+        List<byte[][]> entries = new ArrayList<byte[][]>(keys.size());
+        for (String key : keys) {
+            entries.add(new byte[][]{ key.getBytes(StandardCharsets.UTF_8),
+                properties.get(key).getBytes(StandardCharsets.UTF_8) });
+        }
+        DataOutputStream output = new DataOutputStream(ostream);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(entries.size());
+        long offset = HEADER_SIZE + (long) entries.size() * INDEX_ENTRY_SIZE;
+        for (int i = 0; i < entries.size(); i++) {
+            byte[][] entry = entries.get(i);
+            if (offset > Integer.MAX_VALUE)
+                throw new IOException("Properties too large to be compiled");
+            output.writeInt(keys.get(i).hashCode());
+            output.writeInt((int) offset);
+            offset += 8 + entry[0].length + entry[1].length;
+        }
+        for (byte[][] entry : entries) {
+            output.writeInt(entry[0].length);
+            output.write(entry[0]);
+            output.writeInt(entry[1].length);
+            output.write(entry[1]);
+        }
+        output.flush();
+    }
+
+    /**
+     * @return <code>true</code> if the compiled file is not older than the
+     *         properties file, or if their dates cannot be compared.
+     */
+    static boolean isUpToDate(URL compiled, URL source) {
+        if (source == null || !"file".equals(compiled.getProtocol()) || !"file".equals(source.getProtocol()))
+            return true;
+        try {
+            return new File(compiled.toURI()).lastModified() >= new File(source.toURI()).lastModified();
+        } catch (URISyntaxException e) {
+            return true;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return recordOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int record = recordOf(key);
+        if (record < 0)
+            return null;
+        int valueOffset = record + 4 + buffer.getInt(record);
+        return decode(valueOffset + 4, buffer.getInt(valueOffset));
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private int index;
+
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        public Map.Entry<String, String> next() {
+                            if (index >= size)
+                                throw new NoSuchElementException();
+                            int record = buffer.getInt(HEADER_SIZE + index++ * INDEX_ENTRY_SIZE + 4);
+                            int keyLength = buffer.getInt(record);
+                            int valueOffset = record + 4 + keyLength;
+                            return new SimpleImmutableEntry<String, String>(decode(record + 4, keyLength),
+                                decode(valueOffset + 4, buffer.getInt(valueOffset)));
+                        }
+
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * @return the offset of the record of a key, or <code>-1</code> if not found.
+     */
+    private int recordOf(Object key) {
+        if (!(key instanceof String))
+            return -1;
+        int hash = key.hashCode();
+        // Find the first index entry with this hash.
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getInt(HEADER_SIZE + middle * INDEX_ENTRY_SIZE) < hash)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        byte[] keyBytes = null;
+        for (int i = low; i < size && buffer.getInt(HEADER_SIZE + i * INDEX_ENTRY_SIZE) == hash; i++) {
+            if (keyBytes == null)
+                keyBytes = ((String) key).getBytes(StandardCharsets.UTF_8);
+            int record = buffer.getInt(HEADER_SIZE + i * INDEX_ENTRY_SIZE + 4);
+            if (matches(record, keyBytes))
+                return record;
+        }
+        return -1;
+    }
+
+    private boolean matches(int record, byte[] keyBytes) {
+        if (buffer.getInt(record) != keyBytes.length)
+            return false;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (buffer.get(record + 4 + i) != keyBytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledProperties[" + size + " entries]";
+    }
+}
@@ -1,35 +1,293 @@
 package com.marabout.lang;
 
+import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.zone.ZoneRules;
 import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  *  An utility class for Date related operations.
- * 
+ * <p/>
+ * Besides the <code>Calendar</code> based methods, it offers <code>java.time</code>
+ * based ones that do not allocate: days are handled as epoch days (the number of
+ * days since 1970-01-01), and timestamps are formatted as
+ * <code>yyyy-MM-dd HH:mm:ss.SSS</code> directly into a <code>StringBuilder</code>
+ * or a <code>char[]</code>. {@link DateTimeFormatter}s are immutable, and cached
+ * by {@link #formatter(String)}.
+ * <p/>
+ * The current time is read from the system clock, unless another clock is
+ * {@link #setClock(Clock) set}, such as a {@link CachedClock}.
+ *
  * @author <a href="mailto:gmarabout@gmail.com">Grgoire Marabout</a>
  */
 public final class DateUtils {
 
+    /**
+     * The number of milliseconds in a day.
+     */
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * The length of a timestamp, as formatted by {@link #formatTimestamp(long, ZoneId, char[], int)}.
+     */
+    public static final int TIMESTAMP_LENGTH = 23;
+
+    /**
+     * The format of the timestamps, <code>yyyy-MM-dd HH:mm:ss.SSS</code>.
+     */
+    public static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern( "yyyy-MM-dd HH:mm:ss.SSS" );
+
+    private static final int MAX_CACHED_FORMATTERS = 256;
+    private static final ConcurrentMap<String, DateTimeFormatter> formatters = new ConcurrentHashMap<String, DateTimeFormatter>();
+
+    private static volatile Clock clock = Clock.systemDefaultZone();
+
+    private static final ThreadLocal<DateFormat> dateFormats = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return SimpleDateFormat.getInstance();
+        }
+    };
+
     private DateUtils() {
     }
 
+    /**
+     * Sets the clock the current time is read from.
+     *
+     * @param clock the clock, or <code>null</code> for the system clock.
+     */
+    public static void setClock(Clock clock) {
+        DateUtils.clock = clock != null ? clock : Clock.systemDefaultZone();
+    }
+
+    /**
+     * @return the clock the current time is read from.
+     */
+    public static Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return the current time, in milliseconds since the epoch, from the clock.
+     */
+    public static long currentTimeMillis() {
+        return clock.millis();
+    }
+
     public static Calendar now() {
-        return Calendar.getInstance();
+        Calendar now = Calendar.getInstance();
+        now.setTimeInMillis( clock.millis() );
+        return now;
     }
 
+    /**
+     * @return the start of the current day.
+     */
     public static Calendar today() {
-        return org.apache.commons.lang.time.DateUtils.round( now(), Calendar.DATE );
+        return org.apache.commons.lang.time.DateUtils.truncate( now(), Calendar.DATE );
     }
 
+    /**
+     * @return the start of the previous day.
+     */
     public static Calendar yesterday() {
         Calendar today = today();
-        int dayOfYear = today.get( Calendar.DAY_OF_YEAR );
-        today.set( Calendar.DAY_OF_YEAR, dayOfYear - 1 );
+        today.add( Calendar.DATE, -1 );
         return today;
     }
 
     public static String format(Calendar calendar) {
-        return SimpleDateFormat.getInstance().format( calendar.getTime() );
+        return dateFormats.get().format( calendar.getTime() );
+    }
+
+    /**
+     * Returns the formatter of a pattern. Formatters are immutable and
+     * thread-safe, and the formatters of the most used patterns are cached.
+     *
+     * @param pattern the pattern, as defined by {@link DateTimeFormatter}.
+     * @return the formatter.
+     * @throws IllegalArgumentException if the pattern is invalid.
+     */
+    public static DateTimeFormatter formatter(String pattern) {
+        DateTimeFormatter formatter = formatters.get( pattern );
+        if ( formatter == null ) {
+            formatter = DateTimeFormatter.ofPattern( pattern );
+            if ( formatters.size() < MAX_CACHED_FORMATTERS )
+                formatters.putIfAbsent( pattern, formatter );
+        }
+        return formatter;
+    }
+
+    /**
+     * Formats a date or a time with a cached formatter.
+     *
+     * @param temporal the date or time.
+     * @param pattern  the pattern, as defined by {@link DateTimeFormatter}.
+     * @return the formatted date or time.
+     */
+    public static String format(TemporalAccessor temporal, String pattern) {
+        return formatter( pattern ).format( temporal );
+    }
+
+    /**
+     * @param zone the time-zone.
+     * @return the current day, as an epoch day.
+     */
+    public static long today(ZoneId zone) {
+        return epochDay( clock.millis(), zone );
+    }
+
+    /**
+     * @param zone the time-zone.
+     * @return the previous day, as an epoch day.
+     */
+    public static long yesterday(ZoneId zone) {
+        return today( zone ) - 1;
+    }
+
+    /**
+     * Returns the day of an instant, in a time-zone.
+     *
+     * @param epochMillis the instant, in milliseconds since the epoch.
+     * @param zone        the time-zone.
+     * @return the number of days since 1970-01-01.
+     */
+    public static long epochDay(long epochMillis, ZoneId zone) {
+        return Math.floorDiv( epochMillis + offsetMillis( epochMillis, zone ), MILLIS_PER_DAY );
+    }
+
+    /**
+     * Returns the instant a day starts, in a time-zone.
+     *
+     * @param epochDay the number of days since 1970-01-01.
+     * @param zone     the time-zone.
+     * @return the start of the day, in milliseconds since the epoch.
+     */
+    public static long startOfDay(long epochDay, ZoneId zone) {
+        return LocalDate.ofEpochDay( epochDay ).atStartOfDay( zone ).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Appends the current time of the clock, in its time-zone, formatted as
+     * <code>yyyy-MM-dd HH:mm:ss.SSS</code>.
+     *
+     * @param sbuilder the builder to append to.
+     * @return the builder.
+     */
+    public static StringBuilder appendTimestamp(StringBuilder sbuilder) {
+        Clock current = clock;
+        if ( current instanceof CachedClock )
+            return ( (CachedClock) current ).appendTimestamp( sbuilder );
+        return appendTimestamp( sbuilder, current.millis(), current.getZone() );
+    }
+
+    /**
+     * Appends a timestamp, formatted as <code>yyyy-MM-dd HH:mm:ss.SSS</code>.
+     *
+     * @param sbuilder    the builder to append to.
+     * @param epochMillis the instant, in milliseconds since the epoch.
+     * @param zone        the time-zone.
+     * @return the builder.
+     * @throws DateTimeException if the year is not between 0 and 9999.
+     */
+    public static StringBuilder appendTimestamp(StringBuilder sbuilder, long epochMillis, ZoneId zone) {
+        int length = sbuilder.length();
+        sbuilder.setLength( length + TIMESTAMP_LENGTH );
+        try {
+            writeTimestamp( epochMillis + offsetMillis( epochMillis, zone ), sbuilder, null, length );
+        } catch ( DateTimeException e ) {
+            sbuilder.setLength( length );
+            throw e;
+        }
+        return sbuilder;
+    }
+
+    /**
+     * Formats a timestamp as <code>yyyy-MM-dd HH:mm:ss.SSS</code> into an array.
+     *
+     * @param epochMillis the instant, in milliseconds since the epoch.
+     * @param zone        the time-zone.
+     * @param dest        the destination array.
+     * @param offset      the index of the first character in the destination array.
+     * @return the index after the last character written, <i>offset</i> + {@link #TIMESTAMP_LENGTH}.
+     * @throws DateTimeException if the year is not between 0 and 9999.
+     */
+    public static int formatTimestamp(long epochMillis, ZoneId zone, char[] dest, int offset) {
+        if ( offset < 0 || offset + TIMESTAMP_LENGTH > dest.length )
+            throw new IndexOutOfBoundsException( "No room for a timestamp at " + offset + " in " + dest.length + " chars" );
+        writeTimestamp( epochMillis + offsetMillis( epochMillis, zone ), null, dest, offset );
+        return offset + TIMESTAMP_LENGTH;
+    }
+
+    private static long offsetMillis(long epochMillis, ZoneId zone) {
+        if ( zone instanceof ZoneOffset )
+            return ( (ZoneOffset) zone ).getTotalSeconds() * 1000L;
+        ZoneRules rules = zone.getRules();
+        if ( rules.isFixedOffset() )
+            return rules.getOffset( Instant.EPOCH ).getTotalSeconds() * 1000L;
+        return rules.getOffset( Instant.ofEpochMilli( epochMillis ) ).getTotalSeconds() * 1000L;
+    }
+
+    /**
+     * Writes a timestamp into either a builder or an array, converting the epoch
+     * day to a civil date without going through a calendar.
+     */
+    private static void writeTimestamp(long localMillis, StringBuilder sbuilder, char[] chars, int offset) {
+        // Days since 0000-03-01, in 400 years eras.
+        long days = Math.floorDiv( localMillis, MILLIS_PER_DAY ) + 719468;
+        long era = Math.floorDiv( days, 146097 );
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = ( dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096 ) / 365;
+        long dayOfYear = dayOfEra - ( 365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100 );
+        long shiftedMonth = ( 5 * dayOfYear + 2 ) / 153;
+        int day = (int) ( dayOfYear - ( 153 * shiftedMonth + 2 ) / 5 + 1 );
+        int month = (int) ( shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9 );
+        long year = yearOfEra + era * 400 + ( month <= 2 ? 1 : 0 );
+        if ( year < 0 || year > 9999 )
+            throw new DateTimeException( "Year out of the timestamp range: " + year );
+        int millis = (int) Math.floorMod( localMillis, MILLIS_PER_DAY );
+
+        int position = offset;
+        position = writeDigits( (int) year, 4, sbuilder, chars, position );
+        position = writeChar( '-', sbuilder, chars, position );
+        position = writeDigits( month, 2, sbuilder, chars, position );
+        position = writeChar( '-', sbuilder, chars, position );
+        position = writeDigits( day, 2, sbuilder, chars, position );
+        position = writeChar( ' ', sbuilder, chars, position );
+        position = writeDigits( millis / 3600000, 2, sbuilder, chars, position );
+        position = writeChar( ':', sbuilder, chars, position );
+        position = writeDigits( millis / 60000 % 60, 2, sbuilder, chars, position );
+        position = writeChar( ':', sbuilder, chars, position );
+        position = writeDigits( millis / 1000 % 60, 2, sbuilder, chars, position );
+        position = writeChar( '.', sbuilder, chars, position );
+        writeDigits( millis % 1000, 3, sbuilder, chars, position );
+    }
+
+    private static int writeDigits(int value, int digits, StringBuilder sbuilder, char[] chars, int position) {
+        for ( int i = position + digits - 1; i >= position; i-- ) {
+            writeChar( (char) ( '0' + value % 10 ), sbuilder, chars, i );
+            value /= 10;
+        }
+        return position + digits;
+    }
+
+    private static int writeChar(char c, StringBuilder sbuilder, char[] chars, int position) {
+        if ( chars != null )
+            chars[position] = c;
+        else
+            sbuilder.setCharAt( position, c );
+        return position + 1;
     }
 
     public static void main(String... args) {
@@ -0,0 +1,143 @@
+package com.marabout.lang;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The properties of several layers, each one overriding the next ones, read
+ * in place rather than merged into a single table.
+ * <p/>
+ * A lookup tries the layers in order, so that a {@link CompiledProperties}
+ * layer stays off the heap. Iterating visits the entries of each layer, minus
+ * the ones overridden by a previous layer.
+ * <p/>
+ * The map is immutable, and thread-safe if its layers are.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+final class LayeredProperties extends AbstractMap<String, String> {
+
+    private final List<Map<String, String>> layers;
+    private Set<Map.Entry<String, String>> entrySet;
+    private int size = -1;
+
+    /**
+     * @param layers the layers, the first one overriding the others; they must not change.
+     */
+    LayeredProperties(List<Map<String, String>> layers) {
+        if (layers.isEmpty())
+            throw new IllegalArgumentException("No layer");
+        this.layers = layers;
+    }
+
+    @Override
+    public String get(Object key) {
+        for (int i = 0; i < layers.size(); i++) {
+            String value = layers.get(i).get(key);
+            if (value != null)
+                return value;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        for (int i = 0; i < layers.size(); i++) {
+            if (layers.get(i).containsKey(key))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        int result = size;
+        if (result < 0) {
+            result = 0;
+            for (Iterator<Map.Entry<String, String>> it = entrySet().iterator(); it.hasNext(); it.next())
+                result++;
+            size = result;
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public int size() {
+                    return LayeredProperties.this.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new EntryIterator();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * @return whether a key is defined by a layer before the specified one.
+     */
+    private boolean isOverridden(String key, int layer) {
+        for (int i = 0; i < layer; i++) {
+            if (layers.get(i).containsKey(key))
+                return true;
+        }
+        return false;
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+        private int layer;
+        private Iterator<Map.Entry<String, String>> entries = layers.get(0).entrySet().iterator();
+        private Map.Entry<String, String> next;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null) {
+                if (entries.hasNext()) {
+                    Map.Entry<String, String> entry = entries.next();
+                    if (!isOverridden(entry.getKey(), layer))
+                        next = entry;
+                } else if (++layer < layers.size()) {
+                    entries = layers.get(layer).entrySet().iterator();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Map.Entry<String, String> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            Map.Entry<String, String> result = next;
+            advance();
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LayeredProperties[" + layers.size() + " layers]";
+    }
+}
@@ -0,0 +1,49 @@
+package com.marabout.lang;
+
+/**
+ * An object rendered to a string only when its {@link #toString()} method is
+ * called, and at most once: the result is cached.
+ * <p/>
+ * Passed as a <code>java.util.logging</code> parameter, it costs nothing when the
+ * message is discarded by the log level:
+ * <p/>
+ * <code>
+ * logger.log(Level.FINE, "Loaded: {0}", StringUtils.lazyMapToString(map));
+ * </code>
+ * <p/>
+ * The rendered state is the one at the time of the first call to
+ * {@link #toString()}, not at the time the object was created.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see StringUtils#lazyMapToString(java.util.Map)
+ * @see StringUtils#lazyCollectionToString(java.util.Collection)
+ */
+public abstract class LazyString {
+
+    private volatile String rendered;
+
+    /**
+     * Renders the string. Called at most once per thread racing on the first call
+     * to {@link #toString()}, so it must not have side effects.
+     *
+     * @return the string.
+     */
+    protected abstract String render();
+
+    /**
+     * @return <code>true</code> if the string has already been rendered.
+     */
+    public boolean isRendered() {
+        return rendered != null;
+    }
+
+    @Override
+    public String toString() {
+        String result = rendered;
+        if (result == null) {
+            result = render();
+            rendered = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+package com.marabout.lang;
+
+import java.util.Arrays;
+
+/**
+ * A growable <code>long[]</code>, to build arrays of unknown size without boxing.
+ * <p/>
+ * See {@link ArrayBuilder} for the growth and reuse policies.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class LongArrayBuilder {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] elements;
+    private int size;
+
+    /**
+     * Creates a builder with a default initial capacity.
+     */
+    public LongArrayBuilder() {
+        this(ArrayBuilder.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a builder pre-sized for <i>initialCapacity</i> elements.
+     *
+     * @param initialCapacity the initial capacity.
+     */
+    public LongArrayBuilder(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+        elements = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+    }
+
+    /**
+     * Appends an element.
+     *
+     * @param element the element.
+     * @return this builder.
+     */
+    public LongArrayBuilder add(long element) {
+        if (size == elements.length)
+            grow(size + 1);
+        elements[size++] = element;
+        return this;
+    }
+
+    /**
+     * Appends all the elements of an array.
+     *
+     * @param array the array.
+     * @return this builder.
+     */
+    public LongArrayBuilder addAll(long[] array) {
+        return addAll(array, 0, array.length);
+    }
+
+    /**
+     * Appends <i>length</i> elements of an array, starting at <i>offset</i>.
+     *
+     * @param array  the array.
+     * @param offset the index of the first element to append.
+     * @param length the number of elements to append.
+     * @return this builder.
+     */
+    public LongArrayBuilder addAll(long[] array, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(array, offset, elements, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Makes sure that <i>capacity</i> elements fit without growing again.
+     *
+     * @param capacity the minimum capacity.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length)
+            grow(capacity);
+    }
+
+    /**
+     * @param index the index of an element.
+     * @return the element.
+     */
+    public long get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        return elements[index];
+    }
+
+    /**
+     * @return the number of elements added so far.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets the elements added so far, but keeps the allocated capacity, so
+     * that the builder can be reused without allocating.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return a new array holding exactly the elements added so far.
+     */
+    public long[] build() {
+        return size == 0 ? EMPTY : Arrays.copyOf(elements, size);
+    }
+
+    private void grow(int minCapacity) {
+        elements = Arrays.copyOf(elements, ArrayBuilder.newCapacity(elements.length, minCapacity));
+    }
+}
@@ -0,0 +1,22 @@
+package com.marabout.lang;
+
+import java.util.Map;
+
+/**
+ * Listener notified when the properties of a class are reloaded by
+ * {@link ClassPropertiesManager}.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public interface PropertiesChangeListener {
+
+    /**
+     * Called after the new properties have been published: readers already see
+     * the new values when this method is called.
+     *
+     * @param cls       the class whose properties changed.
+     * @param oldValues the previous properties, unmodifiable.
+     * @param newValues the new properties, unmodifiable.
+     */
+    void propertiesChanged(Class<?> cls, Map<String, String> oldValues, Map<String, String> newValues);
+}
@@ -0,0 +1,120 @@
+package com.marabout.lang;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Compiles properties files into the binary form read by
+ * {@link ClassPropertiesManager}.
+ * <p/>
+ * <code>Foo.properties</code> is compiled into <code>Foo.properties.bin</code>,
+ * next to it. When both are found, the compiled file is used, unless the
+ * properties file is more recent. Compiling pays off for large files: opening
+ * a compiled file does not parse anything, and its properties take no heap.
+ * <pre>
+ * java com.marabout.lang.PropertiesCompiler [-min &lt;entries&gt;] &lt;file or directory&gt;...
+ * </pre>
+ * The properties files of the directories are compiled if they hold at least
+ * <code>-min</code> entries, {@value #DEFAULT_MIN_ENTRIES} by default; the
+ * files specified explicitly are always compiled. The <code>compile-properties</code>
+ * Maven profile compiles the classes directory of the build.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class PropertiesCompiler {
+
+    /**
+     * The minimum number of entries of the properties files compiled from a directory.
+     */
+    public static final int DEFAULT_MIN_ENTRIES = 1000;
+
+    private PropertiesCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int minEntries = DEFAULT_MIN_ENTRIES;
+        int compiled = 0;
+        for (int i = 0; i < args.length; i++) {
+            if ("-min".equals(args[i]) && i + 1 < args.length) {
+                minEntries = Integer.parseInt(args[++i]);
+                continue;
+            }
+            File file = new File(args[i]);
+            if (file.isDirectory())
+                compiled += compileDirectory(file, minEntries);
+            else if (compile(file, 0))
+                compiled++;
+        }
+        System.out.println("Compiled " + compiled + " properties files");
+    }
+
+    /**
+     * Compiles a properties file into a <code>.bin</code> file next to it.
+     * <p/>
+     * The compiled file is written aside, then moved over the previous one, so
+     * that the JVMs which have the previous one mapped keep reading it.
+     *
+     * @param file       the properties file.
+     * @param minEntries the minimum number of entries to compile the file.
+     * @return <code>true</code> if the file was compiled.
+     * @throws IOException if the file cannot be read, or the compiled file written.
+     */
+    public static boolean compile(File file, int minEntries) throws IOException {
+        Map<String, String> values = load(file);
+        if (values.size() < minEntries)
+            return false;
+        File compiled = new File(file.getPath() + CompiledProperties.SUFFIX);
+        File temp = File.createTempFile(compiled.getName(), ".tmp", compiled.getAbsoluteFile().getParentFile());
+        try {
+            OutputStream ostream = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                CompiledProperties.write(values, ostream);
+            } finally {
+                ostream.close();
+            }
+            Files.move(temp.toPath(), compiled.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+        return true;
+    }
+
+    private static int compileDirectory(File directory, int minEntries) throws IOException {
+        int compiled = 0;
+        File[] files = directory.listFiles();
+        if (files == null)
+            return 0;
+        for (File file : files) {
+            if (file.isDirectory())
+                compiled += compileDirectory(file, minEntries);
+            else if (file.getName().endsWith(".properties") && compile(file, minEntries))
+                compiled++;
+        }
+        return compiled;
+    }
+
+    private static Map<String, String> load(File file) throws IOException {
+        Properties props = new Properties();
+        InputStream istream = new FileInputStream(file);
+        try {
+            props.load(istream);
+        } finally {
+            istream.close();
+        }
+        Map<String, String> values = new HashMap<String, String>(props.size() * 4 / 3 + 1);
+        for (String name : props.stringPropertyNames())
+            values.put(name, props.getProperty(name));
+        return values;
+    }
+}
@@ -0,0 +1,145 @@
+package com.marabout.lang;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the properties files loaded by {@link ClassPropertiesManager} from the
+ * filesystem, and reloads them when they change. A file shared by several
+ * classes, such as the file of a superclass, reloads all of them.
+ * <p/>
+ * The entries are only weakly referenced, so that watching a file never prevents
+ * its class from being unloaded.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+final class PropertiesWatcher implements Runnable {
+
+    private static Logger logger = Logger.getLogger(PropertiesWatcher.class.getName());
+
+    private final ClassPropertiesManager manager;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<WatchKey, Path>();
+    private final Map<Path, List<WeakReference<ClassPropertiesManager.PropertiesEntry>>> entries =
+        new HashMap<Path, List<WeakReference<ClassPropertiesManager.PropertiesEntry>>>();
+    private final Thread thread;
+
+    PropertiesWatcher(ClassPropertiesManager manager) throws IOException {
+        this.manager = manager;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this, "class-properties-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts watching the files of the entry that are on the filesystem, in text
+     * or compiled form.
+     */
+    synchronized void watch(ClassPropertiesManager.PropertiesEntry entry) {
+        for (ClassPropertiesManager.PropertiesSource source : entry.sources) {
+            if (source.text != null && "file".equals(source.text.getProtocol()))
+                watch(entry, source.text);
+            if (source.compiled != null && "file".equals(source.compiled.getProtocol()))
+                watch(entry, source.compiled);
+        }
+    }
+
+    private void watch(ClassPropertiesManager.PropertiesEntry entry, URL source) {
+        Path file;
+        try {
+            file = Paths.get(source.toURI()).toAbsolutePath();
+        } catch (URISyntaxException e) {
+            logger.log(Level.WARNING, "Cannot watch: " + source, e);
+            return;
+        }
+        Path directory = file.getParent();
+        if (!directories.containsValue(directory)) {
+            try {
+                WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, directory);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot watch: " + directory, e);
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+        }
+        List<WeakReference<ClassPropertiesManager.PropertiesEntry>> fileEntries = entries.get(file);
+        if (fileEntries == null) {
+            fileEntries = new ArrayList<WeakReference<ClassPropertiesManager.PropertiesEntry>>(1);
+            entries.put(file, fileEntries);
+        }
+        fileEntries.add(new WeakReference<ClassPropertiesManager.PropertiesEntry>(entry));
+    }
+
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                List<ClassPropertiesManager.PropertiesEntry> changed = changedEntries(key);
+                key.reset();
+                for (ClassPropertiesManager.PropertiesEntry entry : changed) {
+                    try {
+                        manager.reload(entry);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Cannot reload: " + entry.fileName, e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // The reload mode has been disabled.
+        }
+    }
+
+    private synchronized List<ClassPropertiesManager.PropertiesEntry> changedEntries(WatchKey key) {
+        List<ClassPropertiesManager.PropertiesEntry> changed = new ArrayList<ClassPropertiesManager.PropertiesEntry>();
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW)
+                continue;
+            Path file = directory.resolve((Path) event.context());
+            List<WeakReference<ClassPropertiesManager.PropertiesEntry>> fileEntries = entries.get(file);
+            if (fileEntries == null)
+                continue;
+            for (Iterator<WeakReference<ClassPropertiesManager.PropertiesEntry>> it = fileEntries.iterator(); it.hasNext(); ) {
+                ClassPropertiesManager.PropertiesEntry entry = it.next().get();
+                if (entry == null)
+                    it.remove();
+                else if (!changed.contains(entry))
+                    changed.add(entry);
+            }
+            if (fileEntries.isEmpty())
+                entries.remove(file);
+        }
+        return changed;
+    }
+}
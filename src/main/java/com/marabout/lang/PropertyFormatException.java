@@ -0,0 +1,39 @@
+package com.marabout.lang;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when some properties of a file do not match the type declared in
+ * their {@link PropertySchema}. All the invalid properties of the file are
+ * reported at once.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class PropertyFormatException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String source;
+    private final List<String> errors;
+
+    public PropertyFormatException(String source, List<String> errors) {
+        super("Invalid properties in " + source + ": " + errors);
+        this.source = source;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the name of the properties file.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return one message per invalid property.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,146 @@
+package com.marabout.lang;
+
+import java.time.Duration;
+
+/**
+ * A precompiled lookup of a single property of a class.
+ * <p/>
+ * The value is resolved and converted once, when the handle is created, and
+ * again each time the properties of the class are reloaded. Reading it is a
+ * single volatile read: no hashing, no locking and no parsing.
+ * <p/>
+ * <code>
+ * static final PropertyHandle&lt;Integer&gt; POOL_SIZE =
+ *     ClassPropertiesManager.handle(Foo.class, "pool.size", int.class);
+ * ...
+ * int poolSize = POOL_SIZE.getInt();
+ * </code>
+ * <p/>
+ * Supported types are <code>String</code>, <code>int</code>, <code>long</code>,
+ * <code>boolean</code>, <code>double</code> (primitive or wrapper) and
+ * {@link Duration}. When the property is not defined, the handle holds its
+ * default value; without default value, primitive types hold <code>0</code> or
+ * <code>false</code>, and the other types hold <code>null</code>.
+ *
+ * @param <T> the type of the property value.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see ClassPropertiesManager#handle(Class, String, Class)
+ */
+@SuppressWarnings("unchecked")
+public final class PropertyHandle<T> {
+
+    private final String name;
+    private final Class<T> type;
+    private final T defaultValue;
+    private volatile T value;
+
+    PropertyHandle(String name, Class<T> type, T defaultValue) {
+        if (!isSupported(type))
+            throw new IllegalArgumentException("Unsupported property type: " + type.getName());
+        this.name = name;
+        this.type = type;
+        this.defaultValue = defaultValue != null ? defaultValue : primitiveDefault(type);
+    }
+
+    /**
+     * @return the name of the property.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value of the property.
+     */
+    public T get() {
+        return value;
+    }
+
+    /**
+     * @return the value of an int property.
+     * @throws ClassCastException if the property is not an int.
+     */
+    public int getInt() {
+        return (Integer) value;
+    }
+
+    /**
+     * @return the value of a long property.
+     * @throws ClassCastException if the property is not a long.
+     */
+    public long getLong() {
+        return (Long) value;
+    }
+
+    /**
+     * @return the value of a boolean property.
+     * @throws ClassCastException if the property is not a boolean.
+     */
+    public boolean getBoolean() {
+        return (Boolean) value;
+    }
+
+    /**
+     * @return the value of a double property.
+     * @throws ClassCastException if the property is not a double.
+     */
+    public double getDouble() {
+        return (Double) value;
+    }
+
+    /**
+     * Converts the raw value of the property.
+     *
+     * @param raw the raw value, <code>null</code> if the property is not defined.
+     * @return the converted value.
+     * @throws IllegalArgumentException if the raw value cannot be converted.
+     */
+    T convert(String raw) {
+        if (raw == null)
+            return defaultValue;
+        Object converted;
+        if (type == String.class)
+            converted = raw;
+        else if (type == int.class || type == Integer.class)
+            converted = Integer.parseInt(raw.trim());
+        else if (type == long.class || type == Long.class)
+            converted = Long.parseLong(raw.trim());
+        else if (type == boolean.class || type == Boolean.class)
+            converted = PropertySchema.parseBoolean(raw);
+        else if (type == double.class || type == Double.class)
+            converted = Double.parseDouble(raw.trim());
+        else
+            converted = PropertySchema.parseDuration(raw);
+        return (T) converted;
+    }
+
+    void set(T value) {
+        this.value = value;
+    }
+
+    private static boolean isSupported(Class<?> type) {
+        return type == String.class || type == Duration.class
+            || type == int.class || type == Integer.class
+            || type == long.class || type == Long.class
+            || type == boolean.class || type == Boolean.class
+            || type == double.class || type == Double.class;
+    }
+
+    private static <T> T primitiveDefault(Class<T> type) {
+        Object value = null;
+        if (type == int.class)
+            value = 0;
+        else if (type == long.class)
+            value = 0L;
+        else if (type == boolean.class)
+            value = Boolean.FALSE;
+        else if (type == double.class)
+            value = 0.0;
+        return (T) value;
+    }
+
+    @Override
+    public String toString() {
+        return name + "=" + value;
+    }
+}
@@ -0,0 +1,336 @@
+package com.marabout.lang;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Declares the typed properties a class reads through {@link ClassPropertiesManager}.
+ * <p/>
+ * Each declaration returns a key which knows its slot in the parsed
+ * {@link TypedProperties}. All the values are parsed once, when the properties
+ * file is loaded, so that reading a value is a plain array read:
+ * <p/>
+ * <code>
+ * static final PropertySchema SCHEMA = new PropertySchema();
+ * static final PropertySchema.IntKey POOL_SIZE = SCHEMA.intKey("pool.size", 10);
+ * ...
+ * int poolSize = getTypedProperties(this, SCHEMA).get(POOL_SIZE);
+ * </code>
+ * <p/>
+ * A schema is frozen the first time it is used to parse properties: no key can
+ * be declared after that.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class PropertySchema {
+
+    private final List<Key> keys = new ArrayList<Key>();
+    private int intSlots;
+    private int longSlots;
+    private int booleanSlots;
+    private int doubleSlots;
+    private int durationSlots;
+    private volatile boolean frozen;
+
+    /**
+     * Declares an int property.
+     *
+     * @param name         the name of the property.
+     * @param defaultValue the value used when the property is not defined.
+     * @return the key of the property.
+     */
+    public synchronized IntKey intKey(String name, int defaultValue) {
+        checkNotFrozen(name);
+        return add(new IntKey(this, name, intSlots++, defaultValue));
+    }
+
+    /**
+     * Declares a long property.
+     *
+     * @param name         the name of the property.
+     * @param defaultValue the value used when the property is not defined.
+     * @return the key of the property.
+     */
+    public synchronized LongKey longKey(String name, long defaultValue) {
+        checkNotFrozen(name);
+        return add(new LongKey(this, name, longSlots++, defaultValue));
+    }
+
+    /**
+     * Declares a boolean property. Accepted values are <code>true</code>,
+     * <code>false</code>, <code>yes</code>, <code>no</code>, <code>on</code> and
+     * <code>off</code>, ignoring case.
+     *
+     * @param name         the name of the property.
+     * @param defaultValue the value used when the property is not defined.
+     * @return the key of the property.
+     */
+    public synchronized BooleanKey booleanKey(String name, boolean defaultValue) {
+        checkNotFrozen(name);
+        return add(new BooleanKey(this, name, booleanSlots++, defaultValue));
+    }
+
+    /**
+     * Declares a double property.
+     *
+     * @param name         the name of the property.
+     * @param defaultValue the value used when the property is not defined.
+     * @return the key of the property.
+     */
+    public synchronized DoubleKey doubleKey(String name, double defaultValue) {
+        checkNotFrozen(name);
+        return add(new DoubleKey(this, name, doubleSlots++, defaultValue));
+    }
+
+    /**
+     * Declares a duration property. See {@link #parseDuration(String)} for the
+     * accepted formats.
+     *
+     * @param name         the name of the property.
+     * @param defaultValue the value used when the property is not defined.
+     * @return the key of the property.
+     */
+    public synchronized DurationKey durationKey(String name, Duration defaultValue) {
+        checkNotFrozen(name);
+        return add(new DurationKey(this, name, durationSlots++, defaultValue));
+    }
+
+    /**
+     * Parses a duration. The value is either an ISO-8601 duration
+     * (<code>PT5S</code>), or a number followed by one of the units <code>ns</code>,
+     * <code>us</code>, <code>ms</code>, <code>s</code>, <code>m</code>, <code>h</code>
+     * or <code>d</code>. A number without unit is a number of milliseconds.
+     *
+     * @param value the value to parse.
+     * @return the duration.
+     * @throws IllegalArgumentException if the value is not a duration.
+     */
+    public static Duration parseDuration(String value) {
+        String trimmed = value.trim();
+        if (trimmed.startsWith("P") || trimmed.startsWith("p") || trimmed.startsWith("-P")) {
+            try {
+                return Duration.parse(trimmed);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Not a duration: " + value);
+            }
+        }
+        int end = trimmed.length();
+        while (end > 0 && Character.isLetter(trimmed.charAt(end - 1)))
+            end--;
+        long amount;
+        try {
+            amount = Long.parseLong(trimmed.substring(0, end).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a duration: " + value);
+        }
+        String unit = trimmed.substring(end).toLowerCase(Locale.ROOT);
+        try {
+            return toDuration(amount, unit, value);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Duration out of range: " + value);
+        }
+    }
+
+    private static Duration toDuration(long amount, String unit, String value) {
+        if (unit.length() == 0 || unit.equals("ms"))
+            return Duration.ofMillis(amount);
+        if (unit.equals("ns"))
+            return Duration.ofNanos(amount);
+        if (unit.equals("us"))
+            return Duration.ofNanos(Math.multiplyExact(amount, 1000L));
+        if (unit.equals("s"))
+            return Duration.ofSeconds(amount);
+        if (unit.equals("m"))
+            return Duration.ofMinutes(amount);
+        if (unit.equals("h"))
+            return Duration.ofHours(amount);
+        if (unit.equals("d"))
+            return Duration.ofDays(amount);
+        throw new IllegalArgumentException("Unknown duration unit: " + value);
+    }
+
+    /**
+     * Parses a boolean, accepting <code>true</code>, <code>false</code>,
+     * <code>yes</code>, <code>no</code>, <code>on</code> and <code>off</code>,
+     * ignoring case.
+     *
+     * @throws IllegalArgumentException if the value is not a boolean.
+     */
+    static boolean parseBoolean(String value) {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("true") || trimmed.equalsIgnoreCase("yes")
+            || trimmed.equalsIgnoreCase("on"))
+            return true;
+        if (trimmed.equalsIgnoreCase("false") || trimmed.equalsIgnoreCase("no")
+            || trimmed.equalsIgnoreCase("off"))
+            return false;
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+
+    private void checkNotFrozen(String name) {
+        if (frozen)
+            throw new IllegalStateException("Schema already in use, cannot declare: " + name);
+    }
+
+    private <K extends Key> K add(K key) {
+        keys.add(key);
+        return key;
+    }
+
+    /**
+     * Freezes the schema and returns its keys.
+     */
+    List<Key> freeze() {
+        synchronized (this) {
+            frozen = true;
+            return Collections.unmodifiableList(new ArrayList<Key>(keys));
+        }
+    }
+
+    synchronized TypedProperties newTypedProperties() {
+        return new TypedProperties(this, new int[intSlots], new long[longSlots], new boolean[booleanSlots],
+            new double[doubleSlots], new Duration[durationSlots]);
+    }
+
+    /**
+     * The base class of the property keys.
+     */
+    public abstract static class Key {
+        final PropertySchema schema;
+        final String name;
+        final int slot;
+
+        Key(PropertySchema schema, String name, int slot) {
+            if (name == null)
+                throw new IllegalArgumentException("Property name cannot be null");
+            this.schema = schema;
+            this.name = name;
+            this.slot = slot;
+        }
+
+        /**
+         * @return the name of the property.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Stores the parsed value in its slot.
+         *
+         * @throws IllegalArgumentException if the value cannot be parsed.
+         */
+        abstract void parse(String value, TypedProperties target);
+
+        abstract void setDefault(TypedProperties target);
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The key of an int property.
+     */
+    public static final class IntKey extends Key {
+        private final int defaultValue;
+
+        IntKey(PropertySchema schema, String name, int slot, int defaultValue) {
+            super(schema, name, slot);
+            this.defaultValue = defaultValue;
+        }
+
+        void parse(String value, TypedProperties target) {
+            target.ints[slot] = Integer.parseInt(value.trim());
+        }
+
+        void setDefault(TypedProperties target) {
+            target.ints[slot] = defaultValue;
+        }
+    }
+
+    /**
+     * The key of a long property.
+     */
+    public static final class LongKey extends Key {
+        private final long defaultValue;
+
+        LongKey(PropertySchema schema, String name, int slot, long defaultValue) {
+            super(schema, name, slot);
+            this.defaultValue = defaultValue;
+        }
+
+        void parse(String value, TypedProperties target) {
+            target.longs[slot] = Long.parseLong(value.trim());
+        }
+
+        void setDefault(TypedProperties target) {
+            target.longs[slot] = defaultValue;
+        }
+    }
+
+    /**
+     * The key of a boolean property.
+     */
+    public static final class BooleanKey extends Key {
+        private final boolean defaultValue;
+
+        BooleanKey(PropertySchema schema, String name, int slot, boolean defaultValue) {
+            super(schema, name, slot);
+            this.defaultValue = defaultValue;
+        }
+
+        void parse(String value, TypedProperties target) {
+            target.booleans[slot] = parseBoolean(value);
+        }
+
+        void setDefault(TypedProperties target) {
+            target.booleans[slot] = defaultValue;
+        }
+    }
+
+    /**
+     * The key of a double property.
+     */
+    public static final class DoubleKey extends Key {
+        private final double defaultValue;
+
+        DoubleKey(PropertySchema schema, String name, int slot, double defaultValue) {
+            super(schema, name, slot);
+            this.defaultValue = defaultValue;
+        }
+
+        void parse(String value, TypedProperties target) {
+            target.doubles[slot] = Double.parseDouble(value.trim());
+        }
+
+        void setDefault(TypedProperties target) {
+            target.doubles[slot] = defaultValue;
+        }
+    }
+
+    /**
+     * The key of a {@link Duration} property.
+     */
+    public static final class DurationKey extends Key {
+        private final Duration defaultValue;
+
+        DurationKey(PropertySchema schema, String name, int slot, Duration defaultValue) {
+            super(schema, name, slot);
+            this.defaultValue = defaultValue;
+        }
+
+        void parse(String value, TypedProperties target) {
+            target.durations[slot] = parseDuration(value);
+        }
+
+        void setDefault(TypedProperties target) {
+            target.durations[slot] = defaultValue;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.marabout.lang;
+
+/**
+ * The resource usage of the JVM at one point in time, as taken by a
+ * {@link RuntimeSampler}. Sizes are in bytes and durations in milliseconds;
+ * the values that the JVM does not report are <code>-1</code>.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class RuntimeSample {
+
+    private final long timestamp;
+    private final long heapUsed;
+    private final long heapMax;
+    private final long nonHeapUsed;
+    private final long oldGenUsed;
+    private final long oldGenMax;
+    private final long gcCount;
+    private final long gcTime;
+    private final long gcCountDelta;
+    private final long gcTimeDelta;
+    private final int threadCount;
+    private final int daemonThreadCount;
+    private final long allocationRate;
+
+    RuntimeSample(long timestamp, long heapUsed, long heapMax, long nonHeapUsed, long oldGenUsed, long oldGenMax,
+                  long gcCount, long gcTime, long gcCountDelta, long gcTimeDelta,
+                  int threadCount, int daemonThreadCount, long allocationRate) {
+        this.timestamp = timestamp;
+        this.heapUsed = heapUsed;
+        this.heapMax = heapMax;
+        this.nonHeapUsed = nonHeapUsed;
+        this.oldGenUsed = oldGenUsed;
+        this.oldGenMax = oldGenMax;
+        this.gcCount = gcCount;
+        this.gcTime = gcTime;
+        this.gcCountDelta = gcCountDelta;
+        this.gcTimeDelta = gcTimeDelta;
+        this.threadCount = threadCount;
+        this.daemonThreadCount = daemonThreadCount;
+        this.allocationRate = allocationRate;
+    }
+
+    /**
+     * @return when the sample was taken, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    /**
+     * @return the maximum heap size, or <code>-1</code> if undefined.
+     */
+    public long getHeapMax() {
+        return heapMax;
+    }
+
+    public long getNonHeapUsed() {
+        return nonHeapUsed;
+    }
+
+    /**
+     * @return the used size of the old generation, or <code>-1</code> if it cannot be found.
+     */
+    public long getOldGenUsed() {
+        return oldGenUsed;
+    }
+
+    /**
+     * @return the maximum size of the old generation, or <code>-1</code> if undefined.
+     */
+    public long getOldGenMax() {
+        return oldGenMax;
+    }
+
+    /**
+     * @return the used fraction of the heap, between <code>0</code> and
+     *         <code>1</code>, or <code>-1</code> if the maximum is undefined.
+     */
+    public double getHeapUsage() {
+        return fraction(heapUsed, heapMax);
+    }
+
+    /**
+     * @return the used fraction of the old generation, between <code>0</code>
+     *         and <code>1</code>, or <code>-1</code> if unknown.
+     */
+    public double getOldGenUsage() {
+        return fraction(oldGenUsed, oldGenMax);
+    }
+
+    /**
+     * @return the number of collections since the JVM started.
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * @return the accumulated collection time since the JVM started.
+     */
+    public long getGcTime() {
+        return gcTime;
+    }
+
+    /**
+     * @return the number of collections since the previous sample.
+     */
+    public long getGcCountDelta() {
+        return gcCountDelta;
+    }
+
+    /**
+     * @return the collection time since the previous sample.
+     */
+    public long getGcTimeDelta() {
+        return gcTimeDelta;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public int getDaemonThreadCount() {
+        return daemonThreadCount;
+    }
+
+    /**
+     * @return the bytes allocated per second by all the threads since the
+     *         previous sample, or <code>-1</code> if the JVM does not report it.
+     */
+    public long getAllocationRate() {
+        return allocationRate;
+    }
+
+    private static double fraction(long used, long max) {
+        return used < 0 || max <= 0 ? -1 : (double) used / max;
+    }
+
+    @Override
+    public String toString() {
+        return "RuntimeSample[heap=" + heapUsed + "/" + heapMax + ", nonHeap=" + nonHeapUsed
+            + ", oldGen=" + oldGenUsed + "/" + oldGenMax + ", gc=+" + gcCountDelta + " (+" + gcTimeDelta + " ms)"
+            + ", threads=" + threadCount + ", allocationRate=" + allocationRate + " B/s]";
+    }
+}
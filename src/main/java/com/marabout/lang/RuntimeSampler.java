@@ -0,0 +1,320 @@
+package com.marabout.lang;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Samples the resource usage of the JVM periodically, from the platform
+ * MXBeans: heap, non-heap and old generation usage, garbage collections, thread
+ * counts and allocation rate.
+ * <p/>
+ * The last samples are kept in a fixed-size ring buffer, and can be queried at
+ * any time. Thresholds can be registered to react to resource pressure, for
+ * instance to shed load when the old generation is nearly full:
+ * <p/>
+ * <code>
+ * sampler.addThreshold(RuntimeSampler.oldGenUsageAbove(0.85), listener);
+ * sampler.start(1, TimeUnit.SECONDS);
+ * </code>
+ * <p/>
+ * Safepoint statistics are not exposed by the platform MXBeans; the collection
+ * counts and times are the closest portable measure of the pauses.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see RuntimeUtils#getSampler()
+ */
+public final class RuntimeSampler {
+
+    private static Logger logger = Logger.getLogger(RuntimeSampler.class.getName());
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MemoryPoolMXBean oldGen = findOldGen();
+    private final List<Threshold> thresholds = new CopyOnWriteArrayList<Threshold>();
+
+    // The ring buffer, guarded by this.
+    private final RuntimeSample[] samples;
+    private int next;
+    private int count;
+    private RuntimeSample last;
+    private Map<Long, Long> threadAllocations = Collections.emptyMap();
+    private Map<Long, Long> threadAllocationRates = Collections.emptyMap();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param capacity the number of samples kept.
+     */
+    public RuntimeSampler(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        this.samples = new RuntimeSample[capacity];
+    }
+
+    /**
+     * Starts sampling in a daemon thread. Does nothing if already started.
+     *
+     * @param period the sampling period.
+     * @param unit   the unit of the period.
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null)
+            return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "runtime-sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    sample();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Runtime sampling failed", e);
+                }
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Stops sampling. The samples taken so far are kept.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Takes a sample now, stores it, and checks the thresholds.
+     *
+     * @return the sample.
+     */
+    public RuntimeSample sample() {
+        long timestamp = System.currentTimeMillis();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        MemoryUsage oldGenUsage = oldGen != null ? oldGen.getUsage() : null;
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcTime += Math.max(0, collector.getCollectionTime());
+        }
+        Map<Long, Long> allocations = threadAllocations();
+
+        RuntimeSample sample;
+        synchronized (this) {
+            long elapsed = last != null ? timestamp - last.getTimestamp() : 0;
+            long allocationRate = -1;
+            if (allocations != null) {
+                Map<Long, Long> rates = new HashMap<Long, Long>(allocations.size() * 2);
+                long allocated = 0;
+                for (Map.Entry<Long, Long> entry : allocations.entrySet()) {
+                    Long previous = threadAllocations.get(entry.getKey());
+                    // A new thread allocated part of its total before this interval: skip it.
+                    if (previous == null)
+                        continue;
+                    long delta = entry.getValue() - previous;
+                    allocated += delta;
+                    if (elapsed > 0)
+                        rates.put(entry.getKey(), delta * 1000 / elapsed);
+                }
+                if (elapsed > 0) {
+                    allocationRate = allocated * 1000 / elapsed;
+                    threadAllocationRates = Collections.unmodifiableMap(rates);
+                }
+                threadAllocations = allocations;
+            }
+            sample = new RuntimeSample(timestamp, heap.getUsed(), heap.getMax(), nonHeap.getUsed(),
+                oldGenUsage != null ? oldGenUsage.getUsed() : -1, oldGenUsage != null ? oldGenUsage.getMax() : -1,
+                gcCount, gcTime, last != null ? gcCount - last.getGcCount() : 0, last != null ? gcTime - last.getGcTime() : 0,
+                threads.getThreadCount(), threads.getDaemonThreadCount(), allocationRate);
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            last = sample;
+        }
+        for (Threshold threshold : thresholds)
+            threshold.check(sample);
+        return sample;
+    }
+
+    /**
+     * @return the last sample, or <code>null</code> if none was taken.
+     */
+    public synchronized RuntimeSample latest() {
+        return last;
+    }
+
+    /**
+     * @return the samples kept, oldest first.
+     */
+    public List<RuntimeSample> samples() {
+        return samples(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the samples taken since a given time.
+     *
+     * @param since the time, in milliseconds since the epoch.
+     * @return the samples, oldest first.
+     */
+    public synchronized List<RuntimeSample> samples(long since) {
+        List<RuntimeSample> result = new ArrayList<RuntimeSample>(count);
+        for (int i = 0; i < count; i++) {
+            RuntimeSample sample = samples[(next - count + i + samples.length) % samples.length];
+            if (sample.getTimestamp() >= since)
+                result.add(sample);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the allocation rate of each live thread between the last two
+     * samples, in bytes per second. The threads started since the previous
+     * sample are not reported yet.
+     *
+     * @return the rates by thread id, empty if the JVM does not report them.
+     */
+    public synchronized Map<Long, Long> getThreadAllocationRates() {
+        return threadAllocationRates;
+    }
+
+    /**
+     * Registers a threshold. The listener is notified when a sample first
+     * matches the threshold, and when a sample first stops matching it.
+     *
+     * @param threshold the threshold, matching the samples over it.
+     * @param listener  the listener.
+     */
+    public void addThreshold(Predicate<RuntimeSample> threshold, RuntimeThresholdListener listener) {
+        thresholds.add(new Threshold(threshold, listener));
+    }
+
+    /**
+     * Removes the thresholds of a listener.
+     *
+     * @param listener the listener.
+     */
+    public void removeThresholds(RuntimeThresholdListener listener) {
+        for (Threshold threshold : thresholds) {
+            if (threshold.listener == listener)
+                thresholds.remove(threshold);
+        }
+    }
+
+    /**
+     * Matches the samples where the old generation is used over a fraction of
+     * its maximum size. When the old generation cannot be identified, as with
+     * single-generation collectors, the whole heap is considered.
+     *
+     * @param fraction the fraction, between <code>0</code> and <code>1</code>.
+     * @return the threshold.
+     */
+    public static Predicate<RuntimeSample> oldGenUsageAbove(final double fraction) {
+        return new Predicate<RuntimeSample>() {
+            public boolean test(RuntimeSample sample) {
+                double usage = sample.getOldGenUsage();
+                return (usage >= 0 ? usage : sample.getHeapUsage()) > fraction;
+            }
+        };
+    }
+
+    /**
+     * Matches the samples where the heap is used over a fraction of its maximum size.
+     *
+     * @param fraction the fraction, between <code>0</code> and <code>1</code>.
+     * @return the threshold.
+     */
+    public static Predicate<RuntimeSample> heapUsageAbove(final double fraction) {
+        return new Predicate<RuntimeSample>() {
+            public boolean test(RuntimeSample sample) {
+                return sample.getHeapUsage() > fraction;
+            }
+        };
+    }
+
+    /**
+     * @return the bytes allocated by each live thread, or <code>null</code> if
+     *         the JVM does not report them.
+     */
+    private Map<Long, Long> threadAllocations() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspotThreads.isThreadAllocatedMemorySupported() || !hotspotThreads.isThreadAllocatedMemoryEnabled())
+            return null;
+        long[] ids = hotspotThreads.getAllThreadIds();
+        long[] allocated = hotspotThreads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> result = new HashMap<Long, Long>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] >= 0)
+                result.put(ids[i], allocated[i]);
+        }
+        return result;
+    }
+
+    private static MemoryPoolMXBean findOldGen() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()
+                && (name.contains("Old Gen") || name.contains("Tenured")))
+                return pool;
+        }
+        return null;
+    }
+
+    /**
+     * A registered threshold, with its current state.
+     */
+    private static final class Threshold {
+        final Predicate<RuntimeSample> predicate;
+        final RuntimeThresholdListener listener;
+        private boolean exceeded;
+
+        Threshold(Predicate<RuntimeSample> predicate, RuntimeThresholdListener listener) {
+            this.predicate = predicate;
+            this.listener = listener;
+        }
+
+        synchronized void check(RuntimeSample sample) {
+            boolean matches = predicate.test(sample);
+            if (matches == exceeded)
+                return;
+            exceeded = matches;
+            try {
+                if (matches)
+                    listener.thresholdExceeded(sample);
+                else
+                    listener.thresholdCleared(sample);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Threshold listener failed: " + listener, e);
+            }
+        }
+    }
+}
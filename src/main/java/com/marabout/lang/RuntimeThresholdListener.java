@@ -0,0 +1,24 @@
+package com.marabout.lang;
+
+/**
+ * Notified by a {@link RuntimeSampler} when a threshold is crossed.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see RuntimeSampler#addThreshold(java.util.function.Predicate, RuntimeThresholdListener)
+ */
+public interface RuntimeThresholdListener {
+
+    /**
+     * Called on the first sample exceeding the threshold.
+     *
+     * @param sample the sample.
+     */
+    void thresholdExceeded(RuntimeSample sample);
+
+    /**
+     * Called on the first sample back under the threshold.
+     *
+     * @param sample the sample.
+     */
+    void thresholdCleared(RuntimeSample sample);
+}
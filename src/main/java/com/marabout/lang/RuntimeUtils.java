@@ -1,9 +1,6 @@
 package com.marabout.lang;
 
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A collection of runtime utilities.
@@ -12,20 +9,37 @@ import java.util.logging.Logger;
  */
 public final class RuntimeUtils {
 
-    private static Logger logger = Logger.getLogger(RuntimeUtils.class.getName());
+    private static final int SAMPLER_CAPACITY = 600;
+    private static volatile RuntimeSampler sampler;
 
     /**
-     * Call <code>Runtime.getRuntime().exit(0)</code> in a timer thread.
-     * The registered shutdown hooks are guaranteed to be called.
+     * Returns the sampler shared by the application, which keeps the last
+     * {@value #SAMPLER_CAPACITY} samples. It is created on first call, and must
+     * be {@link RuntimeSampler#start(long, TimeUnit) started}.
      *
-     * @param milliseconds delay before shutdown.
+     * @return the shared sampler.
      */
-    public static void shutdown(final long milliseconds) {
-        logger.log(Level.WARNING, "Shutdown in " + milliseconds + " ms!");
-        new Timer(true).schedule(new TimerTask() {
-            public void run() {
-                Runtime.getRuntime().exit(0);
+    public static RuntimeSampler getSampler() {
+        RuntimeSampler result = sampler;
+        if (result == null) {
+            synchronized (RuntimeUtils.class) {
+                result = sampler;
+                if (result == null)
+                    sampler = result = new RuntimeSampler(SAMPLER_CAPACITY);
             }
-        }, milliseconds);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the phases of the {@link ShutdownCoordinator#getInstance() shared
+     * shutdown coordinator} in a new thread, and then calls
+     * <code>Runtime.getRuntime().exit(0)</code>. The registered shutdown hooks
+     * are guaranteed to be called.
+     *
+     * @param milliseconds maximum delay before exit.
+     */
+    public static void shutdown(final long milliseconds) {
+        ShutdownCoordinator.getInstance().start(milliseconds, TimeUnit.MILLISECONDS);
     }
 }
@@ -0,0 +1,272 @@
+package com.marabout.lang;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shuts the application down gracefully, in ordered phases.
+ * <p/>
+ * Shutdown tasks are registered in one of the {@link Phase phases}. The phases
+ * run one after the other, and the tasks of a phase run in parallel. A phase
+ * ends when all its tasks are done, or at its deadline: the tasks still running
+ * are then interrupted, and the next phase starts. Once the last phase is over,
+ * the exit action is run, by default <code>Runtime.getRuntime().exit(0)</code>.
+ * <p/>
+ * <code>
+ * ShutdownCoordinator coordinator = ShutdownCoordinator.getInstance();
+ * coordinator.register(Phase.STOP_ACCEPTING, "http", new Runnable() {...});
+ * coordinator.registerExecutor("workers", workers);
+ * ...
+ * coordinator.start(30, TimeUnit.SECONDS);
+ * </code>
+ * <p/>
+ * The duration of each phase and of each task is logged, and returned by
+ * {@link #run(long, TimeUnit)}.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see RuntimeUtils#shutdown(long)
+ */
+public final class ShutdownCoordinator {
+
+    /**
+     * The shutdown phases, in their execution order.
+     */
+    public enum Phase {
+        /** Stop accepting new work: close listeners, deregister from load balancers. */
+        STOP_ACCEPTING,
+        /** Let the work in progress complete. */
+        DRAIN,
+        /** Flush and close: buffers, files, connections. */
+        FLUSH
+    }
+
+    private static Logger logger = Logger.getLogger(ShutdownCoordinator.class.getName());
+    private static final ShutdownCoordinator instance = new ShutdownCoordinator();
+
+    private final Map<Phase, List<Task>> tasks = new EnumMap<Phase, List<Task>>(Phase.class);
+    private final Map<Phase, Long> phaseTimeouts = new EnumMap<Phase, Long>(Phase.class);
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile Runnable exitAction = new Runnable() {
+        public void run() {
+            Runtime.getRuntime().exit(0);
+        }
+    };
+
+    /**
+     * Creates a coordinator. Most applications use the {@link #getInstance() shared one}.
+     */
+    public ShutdownCoordinator() {
+        for (Phase phase : Phase.values())
+            tasks.put(phase, new ArrayList<Task>());
+    }
+
+    /**
+     * @return the coordinator shared by the application.
+     */
+    public static ShutdownCoordinator getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registers a shutdown task.
+     *
+     * @param phase the phase of the task.
+     * @param name  the name of the task, for the logs.
+     * @param task  the task. It should stop when interrupted.
+     */
+    public synchronized void register(Phase phase, String name, Runnable task) {
+        tasks.get(phase).add(new Task(name, task));
+    }
+
+    /**
+     * Registers the draining of an executor in the {@link Phase#DRAIN} phase: the
+     * executor is shut down, and waited for until the deadline of the phase,
+     * when its remaining tasks are cancelled.
+     *
+     * @param name     the name of the executor, for the logs.
+     * @param executor the executor.
+     */
+    public void registerExecutor(String name, final ExecutorService executor) {
+        register(Phase.DRAIN, name, new Runnable() {
+            public void run() {
+                executor.shutdown();
+                try {
+                    while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                        // wait until the deadline interrupts us
+                    }
+                } catch (InterruptedException e) {
+                    List<Runnable> dropped = executor.shutdownNow();
+                    logger.log(Level.WARNING, "Executor not drained in time, " + dropped.size() + " tasks dropped");
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the maximum duration of a phase. By default a phase can last as long
+     * as the overall shutdown timeout allows.
+     *
+     * @param phase   the phase.
+     * @param timeout the maximum duration.
+     * @param unit    the unit of the timeout.
+     */
+    public synchronized void setPhaseTimeout(Phase phase, long timeout, TimeUnit unit) {
+        phaseTimeouts.put(phase, unit.toNanos(timeout));
+    }
+
+    /**
+     * Sets the action run after the last phase.
+     *
+     * @param exitAction the action, <code>Runtime.getRuntime().exit(0)</code> by default.
+     */
+    public void setExitAction(Runnable exitAction) {
+        this.exitAction = exitAction;
+    }
+
+    /**
+     * @return <code>true</code> once the shutdown has started.
+     */
+    public boolean isShuttingDown() {
+        return started.get();
+    }
+
+    /**
+     * Starts the shutdown in a new thread.
+     *
+     * @param timeout the maximum duration of all the phases.
+     * @param unit    the unit of the timeout.
+     * @return the shutdown thread, or <code>null</code> if the shutdown has already started.
+     */
+    public Thread start(final long timeout, final TimeUnit unit) {
+        if (isShuttingDown())
+            return null;
+        Thread thread = new Thread("shutdown-coordinator") {
+            @Override
+            public void run() {
+                ShutdownCoordinator.this.run(timeout, unit);
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Runs all the phases, and then the exit action. Only the first call shuts
+     * down: the next ones return immediately.
+     *
+     * @param timeout the maximum duration of all the phases.
+     * @param unit    the unit of the timeout.
+     * @return the duration of each phase, in milliseconds, or <code>null</code>
+     *         if the shutdown had already started.
+     */
+    public Map<Phase, Long> run(long timeout, TimeUnit unit) {
+        if (!started.compareAndSet(false, true))
+            return null;
+        logger.log(Level.WARNING, "Shutdown in at most " + unit.toMillis(timeout) + " ms!");
+        long shutdownStart = System.nanoTime();
+        long budget = unit.toNanos(timeout);
+        Map<Phase, Long> durations = new EnumMap<Phase, Long>(Phase.class);
+        ExecutorService executor = Executors.newCachedThreadPool(new ShutdownThreadFactory());
+        try {
+            for (Phase phase : Phase.values()) {
+                long start = System.nanoTime();
+                long remaining = Math.max(0, budget - (start - shutdownStart));
+                runPhase(phase, executor, start, Math.min(remaining, phaseTimeout(phase)));
+                long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                durations.put(phase, duration);
+                logger.log(Level.INFO, "Shutdown phase {0} took {1} ms", new Object[]{ phase, duration });
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        exitAction.run();
+        return Collections.unmodifiableMap(durations);
+    }
+
+    private synchronized long phaseTimeout(Phase phase) {
+        Long timeout = phaseTimeouts.get(phase);
+        return timeout != null ? timeout : Long.MAX_VALUE;
+    }
+
+    private void runPhase(Phase phase, ExecutorService executor, long start, long timeout) {
+        List<Task> phaseTasks;
+        synchronized (this) {
+            phaseTasks = new ArrayList<Task>(tasks.get(phase));
+        }
+        List<Future<?>> futures = new ArrayList<Future<?>>(phaseTasks.size());
+        for (Task task : phaseTasks)
+            futures.add(executor.submit(task));
+        for (int i = 0; i < futures.size(); i++) {
+            Task task = phaseTasks.get(i);
+            try {
+                futures.get(i).get(Math.max(0, timeout - (System.nanoTime() - start)), TimeUnit.NANOSECONDS);
+                logger.log(Level.INFO, "Shutdown task {0} took {1} ms", new Object[]{ task.name, task.getDurationMillis() });
+            } catch (TimeoutException e) {
+                futures.get(i).cancel(true);
+                logger.log(Level.WARNING, "Shutdown task " + task.name + " did not complete before the deadline of " + phase);
+            } catch (ExecutionException e) {
+                logger.log(Level.WARNING, "Shutdown task " + task.name + " failed", e.getCause());
+            } catch (CancellationException e) {
+                logger.log(Level.WARNING, "Shutdown task " + task.name + " was cancelled");
+            } catch (InterruptedException e) {
+                for (Future<?> future : futures)
+                    future.cancel(true);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * A registered task, timing its execution.
+     */
+    private static final class Task implements Runnable {
+        final String name;
+        private final Runnable runnable;
+        private volatile long durationNanos;
+
+        Task(String name, Runnable runnable) {
+            this.name = name;
+            this.runnable = runnable;
+        }
+
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                runnable.run();
+            } finally {
+                durationNanos = System.nanoTime() - start;
+            }
+        }
+
+        long getDurationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        }
+    }
+
+    private static final class ShutdownThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "shutdown-task-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,18 +1,28 @@
 package com.marabout.lang;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 
-import org.apache.commons.collections.Closure;
-import org.apache.commons.collections.CollectionUtils;
-
 /**
  * An utility class for String related operations.
+ * <p/>
+ * The renderers can write to any <code>Appendable</code>, and can be bounded by
+ * a maximum number of elements and a maximum number of characters: what does not
+ * fit is replaced by a marker such as <code>... 999,000 more</code>, so that
+ * rendering a huge collection has a bounded cost.
  * 
  * @author <a href="mailto:gmarabout@gmail.com">Grgoire Marabout</a>
  */
 public class StringUtils {
 
+    /**
+     * No limit on the number of elements or characters rendered.
+     */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
     /**
      * Returns a human readable string representation of a hash map.
      * 
@@ -25,35 +35,142 @@ public class StringUtils {
      * @return A string representation of this map.
      */
     public static <T, V> String mapToString(Map<T, V> map) {
-        StringBuilder sbuilder = new StringBuilder();
-        sbuilder.append(" [ ");
-        boolean first = true;
-        for (Map.Entry<T, V> entry : map.entrySet()) {
-            if (!first) {
-                sbuilder.append(", ");
-            }
+        return mapToString(map, UNLIMITED, UNLIMITED);
+    }
 
-            sbuilder.append(entry.getKey()).append(" : ");
-            sbuilder.append(entry.getValue());
-            first = false;
+    /**
+     * Same as {@link #mapToString(Map)}, but renders at most <i>maxElements</i>
+     * entries and about <i>maxChars</i> characters, followed by a truncation marker.
+     * The keys and values are still converted to strings in full before they are
+     * cut, so the budget does not bound the cost of a single huge one.
+     *
+     * @param map         the map.
+     * @param maxElements the maximum number of entries rendered.
+     * @param maxChars    the maximum number of characters of the rendered entries.
+     * @param <T>         the map key type.
+     * @param <V>         the map value type.
+     * @return A string representation of this map.
+     */
+    public static <T, V> String mapToString(Map<T, V> map, int maxElements, int maxChars) {
+        StringBuilder sbuilder = new StringBuilder(estimateCapacity(map.size(), maxElements, maxChars));
+        try {
+            appendMap(sbuilder, map, maxElements, maxChars);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
-        sbuilder.append(" ] ");
         return sbuilder.toString();
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Writes the representation of {@link #mapToString(Map, int, int)} to
+     * <i>out</i>, without building it as a whole first.
+     *
+     * @param out         where to write.
+     * @param map         the map.
+     * @param maxElements the maximum number of entries rendered.
+     * @param maxChars    the maximum number of characters of the rendered entries.
+     * @param <T>         the map key type.
+     * @param <V>         the map value type.
+     * @throws IOException if <i>out</i> fails.
+     */
+    public static <T, V> void appendMap(Appendable out, Map<T, V> map, int maxElements, int maxChars)
+        throws IOException {
+        out.append(" [ ");
+        int rendered = 0;
+        BudgetAppendable budget = new BudgetAppendable(out, maxChars);
+        for (Iterator<Map.Entry<T, V>> it = map.entrySet().iterator(); it.hasNext(); rendered++) {
+            Map.Entry<T, V> entry = it.next();
+            if (rendered > 0)
+                out.append(", ");
+            if (rendered == maxElements) {
+                appendMore(out, map.size() - rendered);
+                break;
+            }
+            budget.append(String.valueOf(entry.getKey())).append(" : ");
+            if (!budget.isExhausted())
+                budget.append(String.valueOf(entry.getValue()));
+            if (budget.isExhausted()) {
+                appendMore(out, map.size() - rendered);
+                break;
+            }
+        }
+        out.append(" ] ");
+    }
+
+    /**
+     * Returns the representation of the elements of a collection, one per line.
+     *
+     * @param collection the collection; <code>null</code> is rendered as an empty string.
+     * @param toStringer renders each element.
+     * @param <T>        the element type.
+     * @return the string representation.
+     */
     public static <T> String collectionToString(Collection<T> collection,
             final ToStringer<T> toStringer) {
-        final StringBuffer buffer = new StringBuffer();
+        return collectionToString(collection, toStringer, UNLIMITED, UNLIMITED);
+    }
 
-        CollectionUtils.forAllDo(collection, new Closure() {
+    /**
+     * Same as {@link #collectionToString(Collection, ToStringer)}, but renders at
+     * most <i>maxElements</i> elements and about <i>maxChars</i> characters,
+     * followed by a truncation marker. Each element rendered is still converted to
+     * a string in full by <i>toStringer</i> before it is cut, so the budget does
+     * not bound the cost of a single huge element.
+     *
+     * @param collection  the collection; <code>null</code> is rendered as an empty string.
+     * @param toStringer  renders each element.
+     * @param maxElements the maximum number of elements rendered.
+     * @param maxChars    the maximum number of characters of the rendered elements.
+     * @param <T>         the element type.
+     * @return the string representation.
+     */
+    public static <T> String collectionToString(Collection<T> collection, ToStringer<T> toStringer,
+            int maxElements, int maxChars) {
+        if (collection == null)
+            return "";
+        StringBuilder sbuilder = new StringBuilder(estimateCapacity(collection.size(), maxElements, maxChars));
+        try {
+            appendCollection(sbuilder, collection, toStringer, maxElements, maxChars);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sbuilder.toString();
+    }
 
-            public void execute(Object input) {
-                T obj = (T) input;
-                buffer.append(toStringer.toString(obj)).append("\n");
+    /**
+     * Writes the representation of
+     * {@link #collectionToString(Collection, ToStringer, int, int)} to <i>out</i>,
+     * without building it as a whole first.
+     *
+     * @param out         where to write.
+     * @param collection  the collection; nothing is written if it is <code>null</code>.
+     * @param toStringer  renders each element.
+     * @param maxElements the maximum number of elements rendered.
+     * @param maxChars    the maximum number of characters of the rendered elements.
+     * @param <T>         the element type.
+     * @throws IOException if <i>out</i> fails.
+     */
+    public static <T> void appendCollection(Appendable out, Collection<T> collection, ToStringer<T> toStringer,
+            int maxElements, int maxChars) throws IOException {
+        if (collection == null)
+            return;
+        int rendered = 0;
+        BudgetAppendable budget = new BudgetAppendable(out, maxChars);
+        for (Iterator<T> it = collection.iterator(); it.hasNext(); rendered++) {
+            T obj = it.next();
+            if (rendered == maxElements) {
+                appendMore(out, collection.size() - rendered);
+                out.append("\n");
+                break;
             }
-        });
-        return buffer.toString();
+            budget.append(toStringer.toString(obj));
+            if (budget.isExhausted()) {
+                appendMore(out, collection.size() - rendered);
+                out.append("\n");
+                break;
+            }
+            out.append("\n");
+        }
     }
 
     public static <T> String collectionToString(Collection<T> collection) {
@@ -64,6 +181,135 @@ public class StringUtils {
         });
     }
 
+    /**
+     * Returns an object rendering {@link #mapToString(Map)} only when its
+     * <code>toString()</code> method is called, typically as a logging parameter.
+     *
+     * @param map the map.
+     * @param <T> the map key type.
+     * @param <V> the map value type.
+     * @return the lazy representation.
+     */
+    public static <T, V> LazyString lazyMapToString(Map<T, V> map) {
+        return lazyMapToString(map, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * Lazy version of {@link #mapToString(Map, int, int)}.
+     *
+     * @param map         the map.
+     * @param maxElements the maximum number of entries rendered.
+     * @param maxChars    the maximum number of characters of the rendered entries.
+     * @param <T>         the map key type.
+     * @param <V>         the map value type.
+     * @return the lazy representation.
+     */
+    public static <T, V> LazyString lazyMapToString(final Map<T, V> map, final int maxElements,
+            final int maxChars) {
+        return new LazyString() {
+            protected String render() {
+                return mapToString(map, maxElements, maxChars);
+            }
+        };
+    }
+
+    /**
+     * Lazy version of {@link #collectionToString(Collection)}.
+     *
+     * @param collection the collection.
+     * @param <T>        the element type.
+     * @return the lazy representation.
+     */
+    public static <T> LazyString lazyCollectionToString(final Collection<T> collection) {
+        return new LazyString() {
+            protected String render() {
+                return collectionToString(collection);
+            }
+        };
+    }
+
+    /**
+     * Lazy version of {@link #collectionToString(Collection, ToStringer, int, int)}.
+     *
+     * @param collection  the collection.
+     * @param toStringer  renders each element.
+     * @param maxElements the maximum number of elements rendered.
+     * @param maxChars    the maximum number of characters of the rendered elements.
+     * @param <T>         the element type.
+     * @return the lazy representation.
+     */
+    public static <T> LazyString lazyCollectionToString(final Collection<T> collection,
+            final ToStringer<T> toStringer, final int maxElements, final int maxChars) {
+        return new LazyString() {
+            protected String render() {
+                return collectionToString(collection, toStringer, maxElements, maxChars);
+            }
+        };
+    }
+
+    private static void appendMore(Appendable out, int more) throws IOException {
+        out.append("... ").append(String.format(Locale.ROOT, "%,d", more)).append(" more");
+    }
+
+    private static int estimateCapacity(int size, int maxElements, int maxChars) {
+        long estimate = Math.min((long) Math.min(size, maxElements) * 16L, (long) maxChars) + 32L;
+        return (int) Math.min(estimate, 1 << 20);
+    }
+
+    /**
+     * Forwards at most a given number of characters to another
+     * <code>Appendable</code>, and ignores everything once it is exhausted.
+     */
+    private static final class BudgetAppendable implements Appendable {
+
+        private final Appendable out;
+        private int remaining;
+        private boolean exhausted;
+
+        BudgetAppendable(Appendable out, int budget) {
+            this.out = out;
+            this.remaining = budget;
+        }
+
+        /**
+         * @return whether some characters were dropped.
+         */
+        boolean isExhausted() {
+            return exhausted;
+        }
+
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            if (exhausted)
+                return this;
+            int length = end - start;
+            if (length > remaining) {
+                out.append(csq, start, start + remaining);
+                remaining = 0;
+                exhausted = true;
+            } else {
+                out.append(csq, start, end);
+                remaining -= length;
+            }
+            return this;
+        }
+
+        public Appendable append(char c) throws IOException {
+            if (exhausted)
+                return this;
+            if (remaining == 0) {
+                exhausted = true;
+            } else {
+                out.append(c);
+                remaining--;
+            }
+            return this;
+        }
+    }
+
     public static interface ToStringer<T> {
         String toString(T arg);
     }
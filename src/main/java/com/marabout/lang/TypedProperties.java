@@ -0,0 +1,114 @@
+package com.marabout.lang;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The properties of a class, parsed according to a {@link PropertySchema}.
+ * <p/>
+ * Instances are immutable. The values are stored in primitive arrays indexed by
+ * the slot of their key, so the getters neither parse nor box. They only throw
+ * when given a key of another schema.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see ClassPropertiesManager#getTypedProperties(Object, PropertySchema)
+ */
+public final class TypedProperties {
+
+    private final PropertySchema schema;
+    final int[] ints;
+    final long[] longs;
+    final boolean[] booleans;
+    final double[] doubles;
+    final Duration[] durations;
+
+    TypedProperties(PropertySchema schema, int[] ints, long[] longs, boolean[] booleans, double[] doubles, Duration[] durations) {
+        this.schema = schema;
+        this.ints = ints;
+        this.longs = longs;
+        this.booleans = booleans;
+        this.doubles = doubles;
+        this.durations = durations;
+    }
+
+    /**
+     * Parses all the properties declared by the schema. The values which cannot
+     * be parsed are all reported by a single exception.
+     *
+     * @param schema the schema.
+     * @param values the raw values of the properties.
+     * @param source the name of the properties source, used in error messages.
+     * @return the parsed properties.
+     * @throws PropertyFormatException if some values cannot be parsed.
+     */
+    static TypedProperties parse(PropertySchema schema, Map<String, String> values, String source) {
+        List<PropertySchema.Key> keys = schema.freeze();
+        TypedProperties result = schema.newTypedProperties();
+        List<String> errors = null;
+        for (PropertySchema.Key key : keys) {
+            String value = values.get(key.name);
+            if (value == null) {
+                key.setDefault(result);
+                continue;
+            }
+            try {
+                key.parse(value, result);
+            } catch (IllegalArgumentException e) {
+                if (errors == null)
+                    errors = new ArrayList<String>();
+                errors.add(key.name + "=" + value + " (" + e.getMessage() + ")");
+            }
+        }
+        if (errors != null)
+            throw new PropertyFormatException(source, errors);
+        return result;
+    }
+
+    /**
+     * @param key the key of the property.
+     * @return the int value of the property.
+     */
+    public int get(PropertySchema.IntKey key) {
+        return ints[slotOf(key)];
+    }
+
+    /**
+     * @param key the key of the property.
+     * @return the long value of the property.
+     */
+    public long get(PropertySchema.LongKey key) {
+        return longs[slotOf(key)];
+    }
+
+    /**
+     * @param key the key of the property.
+     * @return the boolean value of the property.
+     */
+    public boolean get(PropertySchema.BooleanKey key) {
+        return booleans[slotOf(key)];
+    }
+
+    /**
+     * @param key the key of the property.
+     * @return the double value of the property.
+     */
+    public double get(PropertySchema.DoubleKey key) {
+        return doubles[slotOf(key)];
+    }
+
+    /**
+     * @param key the key of the property.
+     * @return the duration value of the property.
+     */
+    public Duration get(PropertySchema.DurationKey key) {
+        return durations[slotOf(key)];
+    }
+
+    private int slotOf(PropertySchema.Key key) {
+        if (key.schema != schema)
+            throw new IllegalArgumentException("Key of another schema: " + key.name);
+        return key.slot;
+    }
+}
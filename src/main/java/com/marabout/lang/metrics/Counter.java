@@ -0,0 +1,45 @@
+package com.marabout.lang.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter, striped so that concurrent increments do not contend.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see MetricsRegistry#counter(String)
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds a value to the counter.
+     *
+     * @param value the value to add.
+     */
+    public void add(long value) {
+        count.add(value);
+    }
+
+    /**
+     * @return the current count.
+     */
+    public long get() {
+        return count.sum();
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
@@ -0,0 +1,75 @@
+package com.marabout.lang.metrics;
+
+/**
+ * An immutable copy of the values recorded by a {@link Histogram} or a
+ * {@link Timer}.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded values.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the highest recorded value.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the mean of the recorded values, <code>0</code> if there is none.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the value under which a fraction of the recorded values fall.
+     *
+     * @param quantile the fraction, between <code>0</code> and <code>1</code>.
+     * @return the value, or <code>0</code> if no value was recorded.
+     */
+    public long getValueAt(double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new IllegalArgumentException("Invalid quantile: " + quantile);
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > 0 && seen >= rank)
+                return Math.min(Histogram.upperBoundOf(i), max);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", mean=" + String.format("%.1f", getMean()) + ", p50=" + getValueAt(0.5)
+            + ", p99=" + getValueAt(0.99) + ", max=" + max;
+    }
+}
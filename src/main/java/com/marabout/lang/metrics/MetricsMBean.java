@@ -0,0 +1,86 @@
+package com.marabout.lang.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+
+/**
+ * Exposes the metrics of a registry as read-only MBean attributes. The
+ * attributes follow the metrics created after the registration.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+final class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = attributes().get(attribute);
+        if (value == null)
+            throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only attribute: " + attribute.getName());
+    }
+
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Object> attributes = attributes();
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Object value = attributes.get(name);
+            if (value != null)
+                list.add(new Attribute(name, value));
+        }
+        return list;
+    }
+
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> infos = new ArrayList<MBeanAttributeInfo>();
+        for (Map.Entry<String, Object> entry : attributes().entrySet()) {
+            infos.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(),
+                true, false, false));
+        }
+        return new MBeanInfo(MetricsRegistry.class.getName(), "Metrics", infos.toArray(new MBeanAttributeInfo[infos.size()]),
+            null, new MBeanOperationInfo[0], null);
+    }
+
+    private Map<String, Object> attributes() {
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Object> entry : registry.snapshot().entrySet()) {
+            if (entry.getValue() instanceof HistogramSnapshot) {
+                HistogramSnapshot snapshot = (HistogramSnapshot) entry.getValue();
+                attributes.put(entry.getKey() + ".count", snapshot.getCount());
+                attributes.put(entry.getKey() + ".mean", snapshot.getMean());
+                attributes.put(entry.getKey() + ".p50", snapshot.getValueAt(0.5));
+                attributes.put(entry.getKey() + ".p99", snapshot.getValueAt(0.99));
+                attributes.put(entry.getKey() + ".max", snapshot.getMax());
+            } else {
+                attributes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return attributes;
+    }
+}
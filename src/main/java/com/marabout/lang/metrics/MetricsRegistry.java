@@ -0,0 +1,140 @@
+package com.marabout.lang.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A named set of {@link Counter counters}, {@link Timer timers} and
+ * {@link Histogram histograms}.
+ * <p/>
+ * Metrics are created on first request and then live as long as the registry.
+ * They should be looked up once and kept in a field, so that recording is only
+ * the cost of the metric itself:
+ * <code>
+ * private static final Counter HITS = MetricsRegistry.getDefault().counter("cache.hits");
+ * </code>
+ * The utilities of this library record their metrics in the
+ * {@link #getDefault() default registry}. A registry can be exposed through
+ * JMX with {@link #registerMBean(String)}.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry defaultRegistry = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * @return the registry shared by the application.
+     */
+    public static MetricsRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * @param name the name of the counter.
+     * @return the counter.
+     * @throws IllegalArgumentException if the name is used by another type of metric.
+     */
+    public Counter counter(String name) {
+        Object metric = metrics.get(name);
+        if (metric == null)
+            metric = register(name, new Counter());
+        return cast(name, metric, Counter.class);
+    }
+
+    /**
+     * @param name the name of the timer.
+     * @return the timer.
+     * @throws IllegalArgumentException if the name is used by another type of metric.
+     */
+    public Timer timer(String name) {
+        Object metric = metrics.get(name);
+        if (metric == null)
+            metric = register(name, new Timer());
+        return cast(name, metric, Timer.class);
+    }
+
+    /**
+     * @param name the name of the histogram.
+     * @return the histogram.
+     * @throws IllegalArgumentException if the name is used by another type of metric.
+     */
+    public Histogram histogram(String name) {
+        Object metric = metrics.get(name);
+        if (metric == null)
+            metric = register(name, new Histogram());
+        return cast(name, metric, Histogram.class);
+    }
+
+    /**
+     * Returns the current values of all the metrics: a <code>Long</code> for
+     * the counters, and a {@link HistogramSnapshot} for the timers and the
+     * histograms.
+     *
+     * @return the values, sorted by name.
+     */
+    public SortedMap<String, Object> snapshot() {
+        SortedMap<String, Object> snapshot = new TreeMap<String, Object>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            Object metric = entry.getValue();
+            Object value;
+            if (metric instanceof Counter)
+                value = ((Counter) metric).get();
+            else if (metric instanceof Timer)
+                value = ((Timer) metric).snapshot();
+            else
+                value = ((Histogram) metric).snapshot();
+            snapshot.put(entry.getKey(), value);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Registers the registry in the platform MBean server, as
+     * <code>com.marabout.metrics:type=Metrics,name=</code><i>name</i>. Each
+     * counter is an attribute, and each timer or histogram has
+     * <code>count</code>, <code>mean</code>, <code>p50</code>, <code>p99</code>
+     * and <code>max</code> attributes.
+     *
+     * @param name the name of the registry.
+     * @return the name of the MBean.
+     * @throws IllegalStateException if the MBean cannot be registered.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.marabout.metrics:type=Metrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsMBean(this), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics MBean: " + name, e);
+        }
+    }
+
+    private Object register(String name, Object metric) {
+        Object existing = metrics.putIfAbsent(name, metric);
+        return existing != null ? existing : metric;
+    }
+
+    private static <M> M cast(String name, Object metric, Class<M> type) {
+        if (!type.isInstance(metric))
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName()
+                + ", not a " + type.getSimpleName());
+        return type.cast(metric);
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
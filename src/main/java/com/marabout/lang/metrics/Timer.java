@@ -0,0 +1,64 @@
+package com.marabout.lang.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lock-free latency timer: a {@link Histogram} of durations in nanoseconds.
+ * <p/>
+ * <code>
+ * long start = timer.start();
+ * ...
+ * timer.stop(start);
+ * </code>
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see MetricsRegistry#timer(String)
+ */
+public final class Timer {
+
+    private final Histogram durations = new Histogram();
+
+    Timer() {
+    }
+
+    /**
+     * @return the start time, to pass to {@link #stop(long)}.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since a start time.
+     *
+     * @param start the value returned by {@link #start()}.
+     * @return the elapsed time, in nanoseconds.
+     */
+    public long stop(long start) {
+        long duration = System.nanoTime() - start;
+        durations.record(duration);
+        return duration;
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param duration the duration.
+     * @param unit     the unit of the duration.
+     */
+    public void record(long duration, TimeUnit unit) {
+        durations.record(unit.toNanos(duration));
+    }
+
+    /**
+     * @return a copy of the recorded durations, in nanoseconds.
+     */
+    public HistogramSnapshot snapshot() {
+        return durations.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,19 @@
+package com.marabout.utils;
+
+/**
+ * Computes the value of a key missing from a {@link ConcurrentCache}.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public interface CacheLoader<K, V> {
+
+    /**
+     * @param key the key.
+     * @return the value of the key, or <code>null</code> if it has none: it is
+     *         then not cached.
+     * @throws Exception if the value cannot be computed.
+     */
+    V load(K key) throws Exception;
+}
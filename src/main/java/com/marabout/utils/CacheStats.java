@@ -0,0 +1,95 @@
+package com.marabout.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statistics of a {@link ConcurrentCache}, counted since it was created.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadNanos;
+    private final long evictionCount;
+    private final long evictionWeight;
+
+    CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadNanos,
+               long evictionCount, long evictionWeight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadNanos = totalLoadNanos;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+    }
+
+    /**
+     * @return the number of lookups that found a value.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that found no value, or an expired one.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the ratio of the lookups that found a value, 1 if there was no lookup.
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return the number of values loaded, including <code>null</code> ones.
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * @return the number of loads that threw an exception.
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * @param unit the unit of the result.
+     * @return the time spent loading values, successfully or not.
+     */
+    public long getTotalLoadTime(TimeUnit unit) {
+        return unit.convert( totalLoadNanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * @return the number of entries evicted by the size bound or expired.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the total weight of the evicted entries.
+     */
+    public long getEvictionWeight() {
+        return evictionWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats[hits=" + hitCount + ", misses=" + missCount + ", loads=" + loadSuccessCount
+            + ", loadFailures=" + loadFailureCount + ", loadTime=" + getTotalLoadTime( TimeUnit.MILLISECONDS )
+            + "ms, evictions=" + evictionCount + "]";
+    }
+}
@@ -0,0 +1,763 @@
+package com.marabout.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A concurrent cache, optionally bounded by size or by weight, with expiration
+ * and refresh after write.
+ * <p/>
+ * Reads do not lock: the entries are held in a <code>ConcurrentHashMap</code>,
+ * and the eviction order is updated only when the lock of the entry's segment
+ * is free. Writes lock one segment. Each segment evicts on its own, within its
+ * share of the bound, so the eviction order is per segment, not global. The
+ * eviction policy is either:
+ * <ul>
+ * <li>{@link Policy#LRU}: the least recently used entry is evicted,</li>
+ * <li>{@link Policy#TINY_LFU}: new entries go through a small LRU window, and
+ * are then only admitted in the main space if they were used more often,
+ * recently, than the entry they would replace. It resists scans much better
+ * than LRU.</li>
+ * </ul>
+ * Missing values are loaded once for concurrent lookups of the same key: the
+ * other threads wait for the first one's result. Values loaded as
+ * <code>null</code>, and failed loads, are not cached, nor are the values of
+ * the keys invalidated while they were loading.
+ * <p/>
+ * <code>
+ * ConcurrentCache&lt;Long, User&gt; users = ConcurrentCache.&lt;Long, User&gt;newBuilder()
+ *     .maximumSize(10000)
+ *     .evictionPolicy(ConcurrentCache.Policy.TINY_LFU)
+ *     .expireAfterWrite(10, TimeUnit.MINUTES)
+ *     .build(new CacheLoader&lt;Long, User&gt;() {...});
+ * User user = users.get(id);
+ * </code>
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class ConcurrentCache<K, V> {
+
+    /**
+     * The eviction policies of bounded caches.
+     */
+    public enum Policy {
+        /** Evicts the least recently used entry. */
+        LRU,
+        /** Admits new entries by frequency, behind a small LRU window (W-TinyLFU). */
+        TINY_LFU
+    }
+
+    private static Logger logger = Logger.getLogger( ConcurrentCache.class.getName() );
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<Node> REFRESHING =
+        AtomicIntegerFieldUpdater.newUpdater( Node.class, "refreshing" );
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<K, Node<K, V>>();
+    private final ConcurrentHashMap<K, FutureTask<V>> loading = new ConcurrentHashMap<K, FutureTask<V>>();
+    // null when the cache is not bounded.
+    private final Segment[] segments;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long expireNanos;
+    private final long refreshNanos;
+    private final CacheLoader<? super K, ? extends V> loader;
+    private final Executor executor;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedWeight = new LongAdder();
+
+    private ConcurrentCache(Builder<K, V> builder, CacheLoader<? super K, ? extends V> loader) {
+        this.weigher = builder.weigher;
+        this.expireNanos = builder.expireNanos;
+        this.refreshNanos = builder.refreshNanos;
+        this.loader = loader;
+        this.executor = builder.executor;
+        if ( builder.maximumWeight >= 0 ) {
+            // Every segment gets a share of the bound, so there are no more segments than weight units.
+            int count = 1;
+            while ( count < builder.concurrencyLevel && count * 2L <= Math.max( 1, builder.maximumWeight ) )
+                count <<= 1;
+            // Segment is an inner class of a generic class: its arrays can only be created raw.
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Segment[] created = new ConcurrentCache.Segment[count];
+            segments = created;
+            for ( int i = 0; i < count; i++ ) {
+                long share = builder.maximumWeight / count + ( i < builder.maximumWeight % count ? 1 : 0 );
+                // The number of weighed entries is unknown: their frequencies are sampled on a fixed size sketch.
+                segments[i] = new Segment( share, builder.weigher == null ? share : Math.min( share, 4096 ), builder.policy );
+            }
+        } else {
+            segments = null;
+        }
+    }
+
+    /**
+     * @param <K> the key type.
+     * @param <V> the value type.
+     * @return a builder of unbounded caches, until configured otherwise.
+     */
+    public static <K, V> Builder<K, V> newBuilder() {
+        return new Builder<K, V>();
+    }
+
+    /**
+     * Returns the value of a key, if it is cached.
+     *
+     * @param key the key.
+     * @return the value, or <code>null</code> if it is not cached or expired.
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = data.get( key );
+        if ( node == null ) {
+            misses.increment();
+            return null;
+        }
+        long now = expireNanos > 0 || refreshNanos > 0 ? System.nanoTime() : 0;
+        if ( expireNanos > 0 && now - node.writeTime >= expireNanos ) {
+            expire( node );
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        recordAccess( node );
+        if ( refreshNanos > 0 && now - node.writeTime >= refreshNanos )
+            refresh( node );
+        return node.value;
+    }
+
+    /**
+     * Returns the value of a key, loading it with the loader of the cache if it
+     * is not cached.
+     *
+     * @param key the key.
+     * @return the value, or <code>null</code> if it was loaded as <code>null</code>.
+     * @throws IllegalStateException if the cache has no loader.
+     * @throws CompletionException   if the loader threw a checked exception.
+     */
+    public V get(K key) {
+        if ( loader == null )
+            throw new IllegalStateException( "No cache loader" );
+        return get( key, loader );
+    }
+
+    /**
+     * Returns the value of a key, loading it if it is not cached. Concurrent
+     * calls for the same key load it only once.
+     *
+     * @param key    the key.
+     * @param loader the loader of the value.
+     * @return the value, or <code>null</code> if it was loaded as <code>null</code>.
+     * @throws CompletionException if the loader threw a checked exception.
+     */
+    public V get(K key, CacheLoader<? super K, ? extends V> loader) {
+        V value = getIfPresent( key );
+        return value != null ? value : load( key, loader );
+    }
+
+    /**
+     * Caches a value, replacing the previous one.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    public void put(K key, V value) {
+        if ( key == null || value == null )
+            throw new NullPointerException( "Null key or value" );
+        Node<K, V> node = newNode( key, value );
+        if ( segments == null ) {
+            data.put( key, node );
+            return;
+        }
+        Segment segment = segmentFor( node.hash );
+        segment.lock.lock();
+        try {
+            Node<K, V> old = data.put( key, node );
+            if ( old != null )
+                segment.remove( old );
+            segment.add( node );
+            segment.evict();
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the value of a key. A load of the key in progress is not cached:
+     * the next lookups load it again.
+     *
+     * @param key the key.
+     */
+    public void invalidate(K key) {
+        loading.remove( key );
+        if ( segments == null ) {
+            data.remove( key );
+            return;
+        }
+        Segment segment = segmentFor( spread( key.hashCode() ) );
+        segment.lock.lock();
+        try {
+            Node<K, V> node = data.remove( key );
+            if ( node != null )
+                segment.remove( node );
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the values.
+     */
+    public void invalidateAll() {
+        for ( K key : loading.keySet() )
+            invalidate( key );
+        for ( K key : data.keySet() )
+            invalidate( key );
+    }
+
+    /**
+     * @return the number of cached values, including expired ones not removed yet.
+     */
+    public long size() {
+        return data.mappingCount();
+    }
+
+    /**
+     * @return the total weight of the cached values, or their number if the
+     *         cache is not bounded.
+     */
+    public long weight() {
+        if ( segments == null )
+            return size();
+        long weight = 0;
+        for ( Segment segment : segments ) {
+            segment.lock.lock();
+            try {
+                weight += segment.weight;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @return the statistics of the cache since it was created.
+     */
+    public CacheStats stats() {
+        return new CacheStats( hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), loadNanos.sum(),
+            evictions.sum(), evictedWeight.sum() );
+    }
+
+    /**
+     * Returns the value of a key if it is cached and fresh, without counting a
+     * lookup.
+     */
+    private V peek(K key) {
+        Node<K, V> node = data.get( key );
+        if ( node == null || expireNanos > 0 && System.nanoTime() - node.writeTime >= expireNanos )
+            return null;
+        return node.value;
+    }
+
+    private V load(final K key, CacheLoader<? super K, ? extends V> loader) {
+        final Load load = new Load( key, loader );
+        final FutureTask<V> task = new FutureTask<V>( load );
+        FutureTask<V> existing = loading.putIfAbsent( key, task );
+        if ( existing == null ) {
+            try {
+                task.run();
+                if ( load.loaded != null ) {
+                    // Cached only if the key was not invalidated meanwhile: invalidate()
+                    // unregisters the task, atomically with respect to this check.
+                    loading.computeIfPresent( key, new BiFunction<K, FutureTask<V>, FutureTask<V>>() {
+                        public FutureTask<V> apply(K k, FutureTask<V> current) {
+                            if ( current != task )
+                                return current;
+                            put( key, load.loaded );
+                            return null;
+                        }
+                    } );
+                }
+            } finally {
+                loading.remove( key, task );
+            }
+            existing = task;
+        }
+        return getUninterruptibly( existing );
+    }
+
+    private void refresh(final Node<K, V> node) {
+        if ( loader == null || !REFRESHING.compareAndSet( node, 0, 1 ) )
+            return;
+        try {
+            executor.execute( new Runnable() {
+                public void run() {
+                    long start = System.nanoTime();
+                    V value;
+                    try {
+                        value = loader.load( node.key );
+                    } catch ( Exception e ) {
+                        loadNanos.add( System.nanoTime() - start );
+                        loadFailures.increment();
+                        logger.log( Level.WARNING, "Could not refresh: " + node.key, e );
+                        REFRESHING.set( node, 0 );
+                        return;
+                    }
+                    loadNanos.add( System.nanoTime() - start );
+                    loadSuccesses.increment();
+                    replace( node, value );
+                }
+            } );
+        } catch ( RejectedExecutionException e ) {
+            REFRESHING.set( node, 0 );
+        }
+    }
+
+    /**
+     * Replaces a node by a new value, unless it was replaced or removed in the
+     * meantime. A <code>null</code> value removes it.
+     */
+    private void replace(Node<K, V> old, V value) {
+        Node<K, V> node = value != null ? newNode( old.key, value ) : null;
+        if ( segments == null ) {
+            if ( node != null )
+                data.replace( old.key, old, node );
+            else
+                data.remove( old.key, old );
+            return;
+        }
+        Segment segment = segmentFor( old.hash );
+        segment.lock.lock();
+        try {
+            boolean replaced = node != null ? data.replace( old.key, old, node ) : data.remove( old.key, old );
+            if ( replaced ) {
+                segment.remove( old );
+                if ( node != null ) {
+                    segment.add( node );
+                    segment.evict();
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private void expire(Node<K, V> node) {
+        if ( segments == null ) {
+            if ( data.remove( node.key, node ) )
+                recordEviction( node );
+            return;
+        }
+        Segment segment = segmentFor( node.hash );
+        segment.lock.lock();
+        try {
+            if ( data.remove( node.key, node ) ) {
+                segment.remove( node );
+                recordEviction( node );
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        if ( segments == null )
+            return;
+        Segment segment = segmentFor( node.hash );
+        // The access is dropped under contention: the order is only approximate.
+        if ( segment.lock.tryLock() ) {
+            try {
+                segment.access( node );
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    private void recordEviction(Node<K, V> node) {
+        evictions.increment();
+        evictedWeight.add( node.weight );
+    }
+
+    private Node<K, V> newNode(K key, V value) {
+        int weight = 1;
+        if ( weigher != null ) {
+            weight = weigher.weigh( key, value );
+            if ( weight < 0 )
+                throw new IllegalArgumentException( "Negative weight: " + weight + " for " + key );
+        }
+        long now = expireNanos > 0 || refreshNanos > 0 ? System.nanoTime() : 0;
+        return new Node<K, V>( key, spread( key.hashCode() ), value, now, weight );
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash & ( segments.length - 1 )];
+    }
+
+    private static int spread(int hashCode) {
+        int hash = hashCode * 0x9E3779B9;
+        return hash ^ ( hash >>> 16 );
+    }
+
+    private static <V> V getUninterruptibly(Future<V> future) {
+        boolean interrupted = false;
+        try {
+            while ( true ) {
+                try {
+                    return future.get();
+                } catch ( InterruptedException e ) {
+                    interrupted = true;
+                } catch ( ExecutionException e ) {
+                    Throwable cause = e.getCause();
+                    if ( cause instanceof RuntimeException )
+                        throw (RuntimeException) cause;
+                    if ( cause instanceof Error )
+                        throw (Error) cause;
+                    throw new CompletionException( cause );
+                }
+            }
+        } finally {
+            if ( interrupted )
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads the value of a key, once for the concurrent lookups of the key.
+     */
+    private final class Load implements Callable<V> {
+        private final K key;
+        private final CacheLoader<? super K, ? extends V> loader;
+        // The value read by the loader, to be cached; null if it was already cached.
+        V loaded;
+
+        Load(K key, CacheLoader<? super K, ? extends V> loader) {
+            this.key = key;
+            this.loader = loader;
+        }
+
+        public V call() throws Exception {
+            // Another thread may have loaded the key since the lookup.
+            V value = peek( key );
+            if ( value != null )
+                return value;
+            long start = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                value = loader.load( key );
+                succeeded = true;
+            } finally {
+                loadNanos.add( System.nanoTime() - start );
+                ( succeeded ? loadSuccesses : loadFailures ).increment();
+            }
+            loaded = value;
+            return value;
+        }
+    }
+
+    /**
+     * A cache entry, and a link of its segment's eviction queue. Entries are
+     * immutable: a new value is a new node.
+     */
+    static final class Node<K, V> {
+        final K key;
+        final int hash;
+        final V value;
+        final long writeTime;
+        final int weight;
+        volatile int refreshing;
+        // Guarded by the segment lock, null once unlinked.
+        Node<K, V> prev;
+        Node<K, V> next;
+        int queue;
+
+        Node(K key, int hash, V value, long writeTime, int weight) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.writeTime = writeTime;
+            this.weight = weight;
+        }
+
+        /**
+         * Creates the head of an empty circular queue.
+         */
+        static <K, V> Node<K, V> newQueue() {
+            Node<K, V> head = new Node<K, V>( null, 0, null, 0, 0 );
+            head.prev = head;
+            head.next = head;
+            return head;
+        }
+    }
+
+    /**
+     * A share of a bounded cache, with its own lock and eviction queues. With
+     * the LRU policy, only the window queue is used.
+     */
+    private final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        private final long maxWeight;
+        private final long maxWindow;
+        private final long maxProtected;
+        // null with the LRU policy.
+        private final FrequencySketch sketch;
+        private final Node<K, V> window = Node.newQueue();
+        private final Node<K, V> probation = Node.newQueue();
+        private final Node<K, V> protect = Node.newQueue();
+        long weight;
+        private long windowWeight;
+        private long protectedWeight;
+
+        Segment(long maxWeight, long expectedSize, Policy policy) {
+            this.maxWeight = maxWeight;
+            this.maxWindow = Math.max( 1, maxWeight / 100 );
+            this.maxProtected = ( maxWeight - maxWindow ) * 4 / 5;
+            this.sketch = policy == Policy.TINY_LFU ? new FrequencySketch( expectedSize ) : null;
+        }
+
+        void add(Node<K, V> node) {
+            if ( sketch != null )
+                sketch.increment( node.hash );
+            node.queue = WINDOW;
+            linkLast( window, node );
+            weight += node.weight;
+            windowWeight += node.weight;
+        }
+
+        void access(Node<K, V> node) {
+            if ( node.prev == null )
+                return;
+            if ( sketch == null ) {
+                unlink( node );
+                linkLast( window, node );
+                return;
+            }
+            sketch.increment( node.hash );
+            unlink( node );
+            if ( node.queue == PROBATION ) {
+                // Used again: promoted to the protected queue.
+                node.queue = PROTECTED;
+                protectedWeight += node.weight;
+                linkLast( protect, node );
+                while ( protectedWeight > maxProtected ) {
+                    Node<K, V> demoted = protect.next;
+                    unlink( demoted );
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    linkLast( probation, demoted );
+                }
+            } else {
+                linkLast( node.queue == WINDOW ? window : protect, node );
+            }
+        }
+
+        void remove(Node<K, V> node) {
+            if ( node.prev == null )
+                return;
+            unlink( node );
+            weight -= node.weight;
+            if ( node.queue == WINDOW )
+                windowWeight -= node.weight;
+            else if ( node.queue == PROTECTED )
+                protectedWeight -= node.weight;
+        }
+
+        void evict() {
+            if ( sketch == null ) {
+                while ( weight > maxWeight )
+                    evict( window.next );
+                return;
+            }
+            // The entries leaving the window become candidates in the probation queue.
+            while ( windowWeight > maxWindow ) {
+                Node<K, V> candidate = window.next;
+                unlink( candidate );
+                windowWeight -= candidate.weight;
+                candidate.queue = PROBATION;
+                linkLast( probation, candidate );
+            }
+            while ( weight > maxWeight ) {
+                Node<K, V> victim = probation.next;
+                Node<K, V> candidate = probation.prev;
+                if ( victim == probation ) {
+                    evict( protect.next != protect ? protect.next : window.next );
+                } else if ( victim == candidate || sketch.frequency( candidate.hash ) > sketch.frequency( victim.hash ) ) {
+                    evict( victim );
+                } else {
+                    evict( candidate );
+                }
+            }
+        }
+
+        private void evict(Node<K, V> node) {
+            remove( node );
+            if ( data.remove( node.key, node ) )
+                recordEviction( node );
+        }
+
+        private void linkLast(Node<K, V> queue, Node<K, V> node) {
+            node.prev = queue.prev;
+            node.next = queue;
+            queue.prev.next = node;
+            queue.prev = node;
+        }
+
+        private void unlink(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * Configures and builds caches.
+     *
+     * @param <K> the key type.
+     * @param <V> the value type.
+     */
+    public static final class Builder<K, V> {
+        private long maximumWeight = -1;
+        private Weigher<? super K, ? super V> weigher;
+        private Policy policy = Policy.LRU;
+        private long expireNanos;
+        private long refreshNanos;
+        private int concurrencyLevel = 16;
+        private Executor executor = ForkJoinPool.commonPool();
+
+        private Builder() {
+        }
+
+        /**
+         * Bounds the number of entries.
+         *
+         * @param maximumSize the maximum number of entries.
+         * @return this builder.
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if ( maximumSize < 0 )
+                throw new IllegalArgumentException( "Negative size: " + maximumSize );
+            this.maximumWeight = maximumSize;
+            this.weigher = null;
+            return this;
+        }
+
+        /**
+         * Bounds the total weight of the entries.
+         *
+         * @param maximumWeight the maximum total weight.
+         * @param weigher       the weigher of the entries.
+         * @return this builder.
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+            if ( maximumWeight < 0 )
+                throw new IllegalArgumentException( "Negative weight: " + maximumWeight );
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Sets the eviction policy of a bounded cache, {@link Policy#LRU} by default.
+         *
+         * @param policy the policy.
+         * @return this builder.
+         */
+        public Builder<K, V> evictionPolicy(Policy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Expires the entries some time after they were written.
+         *
+         * @param duration the time to live of the entries.
+         * @param unit     the unit of the duration.
+         * @return this builder.
+         */
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            this.expireNanos = unit.toNanos( duration );
+            return this;
+        }
+
+        /**
+         * Reloads the entries in the background when they are read some time
+         * after they were written. The previous value is returned until the
+         * new one is loaded. Requires a cache {@link #build(CacheLoader) loader}.
+         *
+         * @param duration the time after which the entries are refreshed.
+         * @param unit     the unit of the duration.
+         * @return this builder.
+         */
+        public Builder<K, V> refreshAfterWrite(long duration, TimeUnit unit) {
+            this.refreshNanos = unit.toNanos( duration );
+            return this;
+        }
+
+        /**
+         * Sets the number of segments the writes are spread on, 16 by default.
+         *
+         * @param concurrencyLevel the expected number of concurrent writers.
+         * @return this builder.
+         */
+        public Builder<K, V> concurrencyLevel(int concurrencyLevel) {
+            if ( concurrencyLevel < 1 )
+                throw new IllegalArgumentException( "Concurrency level must be positive: " + concurrencyLevel );
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * Sets the executor of the refreshes, the common fork-join pool by default.
+         *
+         * @param executor the executor.
+         * @return this builder.
+         */
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @return a new cache, without loader.
+         */
+        public ConcurrentCache<K, V> build() {
+            if ( refreshNanos > 0 )
+                throw new IllegalStateException( "Refreshing requires a cache loader" );
+            return new ConcurrentCache<K, V>( this, null );
+        }
+
+        /**
+         * @param loader the loader of the missing values.
+         * @return a new cache.
+         */
+        public ConcurrentCache<K, V> build(CacheLoader<? super K, ? extends V> loader) {
+            return new ConcurrentCache<K, V>( this, loader );
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.marabout.utils;
+
+/**
+ * An approximate count of how often keys were used recently, for the TinyLFU
+ * admission of {@link ConcurrentCache}.
+ * <p/>
+ * A count-min sketch of 4 bits counters, 16 per <code>long</code>: each key
+ * has 4 counters, and its frequency is the smallest of them. All the counters
+ * are halved after every <i>10 x size</i> increments, so that the old
+ * popularity fades away.
+ * <p/>
+ * Sketches are not thread-safe.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = { 0x97CB3127, 0xB7F0E5A1, 0xC2B2AE35, 0x9E3779B9 };
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity the expected number of keys.
+     */
+    FrequencySketch(long capacity) {
+        int length = 8;
+        while ( length < capacity && length < ( 1 << 24 ) )
+            length <<= 1;
+        table = new long[length];
+        mask = length - 1;
+        sampleSize = 10 * length;
+    }
+
+    /**
+     * @return the estimated frequency of a key, from 0 to 15.
+     */
+    int frequency(int hashCode) {
+        int frequency = 15;
+        for ( int i = 0; i < SEEDS.length; i++ ) {
+            int hash = hash( hashCode, i );
+            int count = (int) ( ( table[hash & mask] >>> offset( hash ) ) & 0xF );
+            frequency = Math.min( frequency, count );
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts one more use of a key.
+     */
+    void increment(int hashCode) {
+        boolean incremented = false;
+        for ( int i = 0; i < SEEDS.length; i++ ) {
+            int hash = hash( hashCode, i );
+            int index = hash & mask;
+            int offset = offset( hash );
+            if ( ( ( table[index] >>> offset ) & 0xF ) != 0xF ) {
+                table[index] += 1L << offset;
+                incremented = true;
+            }
+        }
+        if ( incremented && ++additions == sampleSize )
+            reset();
+    }
+
+    private void reset() {
+        for ( int i = 0; i < table.length; i++ )
+            table[i] = ( table[i] >>> 1 ) & RESET_MASK;
+        additions /= 2;
+    }
+
+    private static int hash(int hashCode, int i) {
+        int hash = ( hashCode + SEEDS[i] ) * SEEDS[i];
+        return hash ^ ( hash >>> 16 );
+    }
+
+    // The index uses the low bits of the hash, the counter its 4 highest bits.
+    private static int offset(int hash) {
+        return ( hash >>> 28 ) << 2;
+    }
+}
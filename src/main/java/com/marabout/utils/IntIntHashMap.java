@@ -0,0 +1,223 @@
+package com.marabout.utils;
+
+import java.util.Arrays;
+
+/**
+ * A map from <code>int</code> to <code>int</code>, without boxing.
+ * <p/>
+ * The entries are stored in two flat arrays, with open addressing and linear
+ * probing: a lookup reads one or two adjacent slots, and the map holds two
+ * objects whatever its size, instead of three per entry for a
+ * <code>HashMap&lt;Integer, Integer&gt;</code>. Removed entries leave no tombstone.
+ * <p/>
+ * {@link #forEach(IntIntProcedure)} walks the entries without allocating. The
+ * map must not be modified while it is walked.
+ * <p/>
+ * Maps are not thread-safe.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class IntIntHashMap {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // 0 marks a free slot: the 0 key is held apart.
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int assigned;
+    private int resizeAt;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    /**
+     * Creates a map with a default initial capacity.
+     */
+    public IntIntHashMap() {
+        this( PrimitiveHashing.DEFAULT_EXPECTED_SIZE );
+    }
+
+    /**
+     * Creates a map holding <i>expectedSize</i> keys without growing.
+     *
+     * @param expectedSize the expected number of keys.
+     */
+    public IntIntHashMap(int expectedSize) {
+        allocate( PrimitiveHashing.tableSize( expectedSize, MAX_CAPACITY ) );
+    }
+
+    /**
+     * @param key          the key.
+     * @param defaultValue the value returned when the key is missing.
+     * @return the value of the key, or <i>defaultValue</i>.
+     */
+    public int get(int key, int defaultValue) {
+        if ( key == 0 )
+            return hasZeroKey ? zeroValue : defaultValue;
+        int[] keys = this.keys;
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        int existing;
+        while ( ( existing = keys[slot] ) != 0 ) {
+            if ( existing == key )
+                return values[slot];
+            slot = ( slot + 1 ) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @param key the key.
+     * @return <code>true</code> if the map holds the key.
+     */
+    public boolean containsKey(int key) {
+        if ( key == 0 )
+            return hasZeroKey;
+        return slotOf( key ) >= 0;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return <code>true</code> if the key was added, <code>false</code> if its value was replaced.
+     * @throws IllegalStateException if the map cannot grow anymore.
+     */
+    public boolean put(int key, int value) {
+        if ( key == 0 ) {
+            boolean added = !hasZeroKey;
+            hasZeroKey = true;
+            zeroValue = value;
+            return added;
+        }
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        int existing;
+        while ( ( existing = keys[slot] ) != 0 ) {
+            if ( existing == key ) {
+                values[slot] = value;
+                return false;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        if ( assigned == resizeAt ) {
+            rehash( PrimitiveHashing.grow( keys.length, MAX_CAPACITY ) );
+            insert( key, value );
+        } else {
+            keys[slot] = key;
+            values[slot] = value;
+        }
+        assigned++;
+        return true;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key.
+     * @return <code>true</code> if the map held the key.
+     */
+    public boolean remove(int key) {
+        if ( key == 0 ) {
+            boolean removed = hasZeroKey;
+            hasZeroKey = false;
+            zeroValue = 0;
+            return removed;
+        }
+        int slot = slotOf( key );
+        if ( slot < 0 )
+            return false;
+        // Shifts the following keys back, instead of leaving a tombstone.
+        int next = ( slot + 1 ) & mask;
+        int moved;
+        while ( ( moved = keys[next] ) != 0 ) {
+            if ( PrimitiveHashing.canShift( slot, next, PrimitiveHashing.mix( moved ) & mask, mask ) ) {
+                keys[slot] = moved;
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = ( next + 1 ) & mask;
+        }
+        keys[slot] = 0;
+        values[slot] = 0;
+        assigned--;
+        return true;
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    public int size() {
+        return assigned + ( hasZeroKey ? 1 : 0 );
+    }
+
+    /**
+     * @return <code>true</code> if the map holds no key.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all the keys, but keeps the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill( keys, 0 );
+        Arrays.fill( values, 0 );
+        assigned = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+    }
+
+    /**
+     * Calls a procedure on each entry, in no particular order.
+     *
+     * @param procedure the procedure.
+     */
+    public void forEach(IntIntProcedure procedure) {
+        if ( hasZeroKey )
+            procedure.apply( 0, zeroValue );
+        int[] keys = this.keys;
+        int[] values = this.values;
+        for ( int i = 0; i < keys.length; i++ ) {
+            if ( keys[i] != 0 )
+                procedure.apply( keys[i], values[i] );
+        }
+    }
+
+    private int slotOf(int key) {
+        int[] keys = this.keys;
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        int existing;
+        while ( ( existing = keys[slot] ) != 0 ) {
+            if ( existing == key )
+                return slot;
+            slot = ( slot + 1 ) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int key, int value) {
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        while ( keys[slot] != 0 )
+            slot = ( slot + 1 ) & mask;
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = PrimitiveHashing.resizeAt( capacity, MAX_CAPACITY );
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate( capacity );
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+            if ( oldKeys[i] != 0 )
+                insert( oldKeys[i], oldValues[i] );
+        }
+    }
+}
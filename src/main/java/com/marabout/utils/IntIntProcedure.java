@@ -0,0 +1,16 @@
+package com.marabout.utils;
+
+/**
+ * A callback on the entries of an <code>int</code> to <code>int</code> map.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see IntIntHashMap#forEach(IntIntProcedure)
+ */
+public interface IntIntProcedure {
+
+    /**
+     * @param key   the key of an entry.
+     * @param value the value of the entry.
+     */
+    void apply(int key, int value);
+}
@@ -0,0 +1,17 @@
+package com.marabout.utils;
+
+/**
+ * A callback on the entries of a <code>long</code> to <code>long</code> map.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see LongLongHashMap#forEach(LongLongProcedure)
+ * @see OffHeapLongLongHashMap#forEach(LongLongProcedure)
+ */
+public interface LongLongProcedure {
+
+    /**
+     * @param key   the key of an entry.
+     * @param value the value of the entry.
+     */
+    void apply(long key, long value);
+}
@@ -0,0 +1,222 @@
+package com.marabout.utils;
+
+import java.util.Arrays;
+
+/**
+ * A map from <code>long</code> to objects, without boxing the keys.
+ * <p/>
+ * The entries are stored in two flat arrays, with open addressing and linear
+ * probing, as in {@link LongLongHashMap}. <code>null</code> values are not
+ * allowed, so that {@link #get(long)} returning <code>null</code> means that
+ * the key is missing.
+ * <p/>
+ * {@link #forEach(LongObjectProcedure)} walks the entries without allocating.
+ * The map must not be modified while it is walked.
+ * <p/>
+ * Maps are not thread-safe.
+ *
+ * @param <V> the value type.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@SuppressWarnings("unchecked")
+public final class LongObjectHashMap<V> {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // 0 marks a free slot: the 0 key is held apart.
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int assigned;
+    private int resizeAt;
+    private V zeroValue;
+
+    /**
+     * Creates a map with a default initial capacity.
+     */
+    public LongObjectHashMap() {
+        this( PrimitiveHashing.DEFAULT_EXPECTED_SIZE );
+    }
+
+    /**
+     * Creates a map holding <i>expectedSize</i> keys without growing.
+     *
+     * @param expectedSize the expected number of keys.
+     */
+    public LongObjectHashMap(int expectedSize) {
+        allocate( PrimitiveHashing.tableSize( expectedSize, MAX_CAPACITY ) );
+    }
+
+    /**
+     * @param key the key.
+     * @return the value of the key, or <code>null</code> if the key is missing.
+     */
+    public V get(long key) {
+        if ( key == 0 )
+            return zeroValue;
+        long[] keys = this.keys;
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        long existing;
+        while ( ( existing = keys[slot] ) != 0 ) {
+            if ( existing == key )
+                return (V) values[slot];
+            slot = ( slot + 1 ) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key.
+     * @return <code>true</code> if the map holds the key.
+     */
+    public boolean containsKey(long key) {
+        return get( key ) != null;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   the key.
+     * @param value the value, not <code>null</code>.
+     * @return the previous value of the key, or <code>null</code> if the key was added.
+     * @throws IllegalStateException if the map cannot grow anymore.
+     */
+    public V put(long key, V value) {
+        if ( value == null )
+            throw new NullPointerException( "Null value for key " + key );
+        if ( key == 0 ) {
+            V previous = zeroValue;
+            zeroValue = value;
+            return previous;
+        }
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        long existing;
+        while ( ( existing = keys[slot] ) != 0 ) {
+            if ( existing == key ) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        if ( assigned == resizeAt ) {
+            rehash( PrimitiveHashing.grow( keys.length, MAX_CAPACITY ) );
+            insert( key, value );
+        } else {
+            keys[slot] = key;
+            values[slot] = value;
+        }
+        assigned++;
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key.
+     * @return the value of the key, or <code>null</code> if the key was missing.
+     */
+    public V remove(long key) {
+        if ( key == 0 ) {
+            V previous = zeroValue;
+            zeroValue = null;
+            return previous;
+        }
+        int slot = slotOf( key );
+        if ( slot < 0 )
+            return null;
+        V previous = (V) values[slot];
+        // Shifts the following keys back, instead of leaving a tombstone.
+        int next = ( slot + 1 ) & mask;
+        long moved;
+        while ( ( moved = keys[next] ) != 0 ) {
+            if ( PrimitiveHashing.canShift( slot, next, PrimitiveHashing.mix( moved ) & mask, mask ) ) {
+                keys[slot] = moved;
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = ( next + 1 ) & mask;
+        }
+        keys[slot] = 0;
+        values[slot] = null;
+        assigned--;
+        return previous;
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    public int size() {
+        return assigned + ( zeroValue != null ? 1 : 0 );
+    }
+
+    /**
+     * @return <code>true</code> if the map holds no key.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all the keys, but keeps the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill( keys, 0 );
+        Arrays.fill( values, null );
+        assigned = 0;
+        zeroValue = null;
+    }
+
+    /**
+     * Calls a procedure on each entry, in no particular order.
+     *
+     * @param procedure the procedure.
+     */
+    public void forEach(LongObjectProcedure<? super V> procedure) {
+        if ( zeroValue != null )
+            procedure.apply( 0, zeroValue );
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        for ( int i = 0; i < keys.length; i++ ) {
+            if ( keys[i] != 0 )
+                procedure.apply( keys[i], (V) values[i] );
+        }
+    }
+
+    private int slotOf(long key) {
+        long[] keys = this.keys;
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        long existing;
+        while ( ( existing = keys[slot] ) != 0 ) {
+            if ( existing == key )
+                return slot;
+            slot = ( slot + 1 ) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long key, Object value) {
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        while ( keys[slot] != 0 )
+            slot = ( slot + 1 ) & mask;
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = PrimitiveHashing.resizeAt( capacity, MAX_CAPACITY );
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate( capacity );
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+            if ( oldKeys[i] != 0 )
+                insert( oldKeys[i], oldValues[i] );
+        }
+    }
+}
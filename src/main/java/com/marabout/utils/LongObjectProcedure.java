@@ -0,0 +1,17 @@
+package com.marabout.utils;
+
+/**
+ * A callback on the entries of a <code>long</code> to object map.
+ *
+ * @param <V> the value type.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see LongObjectHashMap#forEach(LongObjectProcedure)
+ */
+public interface LongObjectProcedure<V> {
+
+    /**
+     * @param key   the key of an entry.
+     * @param value the value of the entry.
+     */
+    void apply(long key, V value);
+}
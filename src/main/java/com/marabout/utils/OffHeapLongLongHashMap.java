@@ -0,0 +1,230 @@
+package com.marabout.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * A map from <code>long</code> to <code>long</code>, stored outside of the heap.
+ * <p/>
+ * It works as a {@link LongLongHashMap}, but its tables are direct buffers: a
+ * map of millions of entries is a handful of small objects for the garbage
+ * collector, whatever its size. The memory is counted against
+ * <code>-XX:MaxDirectMemorySize</code>, and released when the map is garbage
+ * collected. A map holds at most 2<sup>27</sup> - 1 keys, that is 2 GB of
+ * tables.
+ * <p/>
+ * {@link #forEach(LongLongProcedure)} walks the entries without allocating. The
+ * map must not be modified while it is walked.
+ * <p/>
+ * Maps are not thread-safe.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class OffHeapLongLongHashMap {
+
+    // A LongBuffer is indexed by int, and its backing ByteBuffer as well.
+    private static final int MAX_CAPACITY = 1 << 27;
+
+    // 0 marks a free slot: the 0 key is held apart.
+    private LongBuffer keys;
+    private LongBuffer values;
+    private int capacity;
+    private int mask;
+    private int assigned;
+    private int resizeAt;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * Creates a map with a default initial capacity.
+     */
+    public OffHeapLongLongHashMap() {
+        this( PrimitiveHashing.DEFAULT_EXPECTED_SIZE );
+    }
+
+    /**
+     * Creates a map holding <i>expectedSize</i> keys without growing.
+     *
+     * @param expectedSize the expected number of keys.
+     */
+    public OffHeapLongLongHashMap(int expectedSize) {
+        allocate( PrimitiveHashing.tableSize( expectedSize, MAX_CAPACITY ) );
+    }
+
+    /**
+     * @param key          the key.
+     * @param defaultValue the value returned when the key is missing.
+     * @return the value of the key, or <i>defaultValue</i>.
+     */
+    public long get(long key, long defaultValue) {
+        if ( key == 0 )
+            return hasZeroKey ? zeroValue : defaultValue;
+        int slot = slotOf( key );
+        return slot >= 0 ? values.get( slot ) : defaultValue;
+    }
+
+    /**
+     * @param key the key.
+     * @return <code>true</code> if the map holds the key.
+     */
+    public boolean containsKey(long key) {
+        if ( key == 0 )
+            return hasZeroKey;
+        return slotOf( key ) >= 0;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return <code>true</code> if the key was added, <code>false</code> if its value was replaced.
+     * @throws IllegalStateException if the map cannot grow anymore.
+     */
+    public boolean put(long key, long value) {
+        if ( key == 0 ) {
+            boolean added = !hasZeroKey;
+            hasZeroKey = true;
+            zeroValue = value;
+            return added;
+        }
+        LongBuffer keys = this.keys;
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        long existing;
+        while ( ( existing = keys.get( slot ) ) != 0 ) {
+            if ( existing == key ) {
+                values.put( slot, value );
+                return false;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        if ( assigned == resizeAt ) {
+            rehash( PrimitiveHashing.grow( capacity, MAX_CAPACITY ) );
+            insert( key, value );
+        } else {
+            keys.put( slot, key );
+            values.put( slot, value );
+        }
+        assigned++;
+        return true;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key.
+     * @return <code>true</code> if the map held the key.
+     */
+    public boolean remove(long key) {
+        if ( key == 0 ) {
+            boolean removed = hasZeroKey;
+            hasZeroKey = false;
+            zeroValue = 0;
+            return removed;
+        }
+        int slot = slotOf( key );
+        if ( slot < 0 )
+            return false;
+        // Shifts the following keys back, instead of leaving a tombstone.
+        int next = ( slot + 1 ) & mask;
+        long moved;
+        while ( ( moved = keys.get( next ) ) != 0 ) {
+            if ( PrimitiveHashing.canShift( slot, next, PrimitiveHashing.mix( moved ) & mask, mask ) ) {
+                keys.put( slot, moved );
+                values.put( slot, values.get( next ) );
+                slot = next;
+            }
+            next = ( next + 1 ) & mask;
+        }
+        keys.put( slot, 0 );
+        values.put( slot, 0 );
+        assigned--;
+        return true;
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    public int size() {
+        return assigned + ( hasZeroKey ? 1 : 0 );
+    }
+
+    /**
+     * @return <code>true</code> if the map holds no key.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Removes all the keys, but keeps the allocated memory.
+     */
+    public void clear() {
+        for ( int i = 0; i < capacity; i++ ) {
+            keys.put( i, 0 );
+            values.put( i, 0 );
+        }
+        assigned = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+    }
+
+    /**
+     * Calls a procedure on each entry, in no particular order.
+     *
+     * @param procedure the procedure.
+     */
+    public void forEach(LongLongProcedure procedure) {
+        if ( hasZeroKey )
+            procedure.apply( 0, zeroValue );
+        LongBuffer keys = this.keys;
+        LongBuffer values = this.values;
+        for ( int i = 0; i < capacity; i++ ) {
+            long key = keys.get( i );
+            if ( key != 0 )
+                procedure.apply( key, values.get( i ) );
+        }
+    }
+
+    private int slotOf(long key) {
+        LongBuffer keys = this.keys;
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        long existing;
+        while ( ( existing = keys.get( slot ) ) != 0 ) {
+            if ( existing == key )
+                return slot;
+            slot = ( slot + 1 ) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long key, long value) {
+        int slot = PrimitiveHashing.mix( key ) & mask;
+        while ( keys.get( slot ) != 0 )
+            slot = ( slot + 1 ) & mask;
+        keys.put( slot, key );
+        values.put( slot, value );
+    }
+
+    private void allocate(int capacity) {
+        // Direct buffers are zeroed when allocated.
+        keys = ByteBuffer.allocateDirect( capacity * 8 ).order( ByteOrder.nativeOrder() ).asLongBuffer();
+        values = ByteBuffer.allocateDirect( capacity * 8 ).order( ByteOrder.nativeOrder() ).asLongBuffer();
+        this.capacity = capacity;
+        mask = capacity - 1;
+        resizeAt = PrimitiveHashing.resizeAt( capacity, MAX_CAPACITY );
+    }
+
+    private void rehash(int capacity) {
+        LongBuffer oldKeys = keys;
+        LongBuffer oldValues = values;
+        int oldCapacity = this.capacity;
+        allocate( capacity );
+        for ( int i = 0; i < oldCapacity; i++ ) {
+            long key = oldKeys.get( i );
+            if ( key != 0 )
+                insert( key, oldValues.get( i ) );
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.marabout.utils;
+
+/**
+ * The hashing and sizing shared by the open-addressing primitive maps.
+ * <p/>
+ * The tables are linearly probed, and have a power of two number of slots, at
+ * most three quarters full. Keys are scrambled before being masked, so that
+ * sequential ids do not cluster.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+final class PrimitiveHashing {
+
+    static final int DEFAULT_EXPECTED_SIZE = 16;
+    static final float LOAD_FACTOR = 0.75f;
+    static final int MIN_CAPACITY = 8;
+
+    private PrimitiveHashing() {
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) ( h ^ ( h >>> 32 ) );
+    }
+
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ ( h >>> 16 );
+    }
+
+    /**
+     * Returns the number of slots needed for <i>expectedSize</i> keys.
+     */
+    static int tableSize(int expectedSize, int maxCapacity) {
+        if ( expectedSize < 0 )
+            throw new IllegalArgumentException( "Negative size: " + expectedSize );
+        long needed = (long) Math.ceil( expectedSize / LOAD_FACTOR ) + 1;
+        if ( needed > maxCapacity )
+            throw new IllegalArgumentException( "Too many keys: " + expectedSize );
+        int capacity = MIN_CAPACITY;
+        while ( capacity < needed )
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * Returns the number of keys above which a table grows. The largest tables
+     * keep a free slot, so that probing always ends.
+     */
+    static int resizeAt(int capacity, int maxCapacity) {
+        return capacity == maxCapacity ? capacity - 1 : (int) ( capacity * LOAD_FACTOR );
+    }
+
+    /**
+     * Returns the capacity to grow a full table to.
+     */
+    static int grow(int capacity, int maxCapacity) {
+        if ( capacity >= maxCapacity )
+            throw new IllegalStateException( "Map is full: " + ( capacity - 1 ) + " keys" );
+        return capacity << 1;
+    }
+
+    /**
+     * Tells whether the key in slot <i>next</i>, whose probing starts at
+     * <i>ideal</i>, can be moved back to the free slot <i>free</i> on removal.
+     */
+    static boolean canShift(int free, int next, int ideal, int mask) {
+        return ( ( next - ideal ) & mask ) >= ( ( next - free ) & mask );
+    }
+}
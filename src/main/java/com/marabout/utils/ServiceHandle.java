@@ -0,0 +1,160 @@
+package com.marabout.utils;
+
+import java.util.Queue;
+import java.util.ServiceConfigurationError;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The instances of a service provider class.
+ * <p/>
+ * A provider can be used in two modes:
+ * <ul>
+ * <li>as a singleton, with {@link #get()}: the instance is created on first
+ * use, exactly once, and then shared by all the callers. As there is one
+ * handle per provider class, there is one singleton per classloader.</li>
+ * <li>as a pool, with {@link #acquire()} and {@link #release(Object)}: the
+ * released instances are kept, up to {@link #setMaxIdle(int) a maximum}, and
+ * handed out again instead of creating new ones.</li>
+ * </ul>
+ * Providers are instantiated with their public no-argument constructor.
+ *
+ * @param <T> the provider type.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ * @see ServiceRegistry
+ */
+public final class ServiceHandle<T> {
+
+    static final int DEFAULT_MAX_IDLE = 16;
+    private static Logger logger = Logger.getLogger( ServiceHandle.class.getName() );
+
+    private final Class<T> providerClass;
+    private final int priority;
+    private final Queue<T> idle = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile int maxIdle = DEFAULT_MAX_IDLE;
+    private volatile T instance;
+    private volatile long initializationNanos = -1;
+
+    ServiceHandle(Class<T> providerClass) {
+        this.providerClass = providerClass;
+        ServicePriority annotation = providerClass.getAnnotation( ServicePriority.class );
+        this.priority = annotation != null ? annotation.value() : 0;
+    }
+
+    /**
+     * @return the provider class.
+     */
+    public Class<T> getProviderClass() {
+        return providerClass;
+    }
+
+    /**
+     * @return the priority of the provider.
+     * @see ServicePriority
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the singleton instance of the provider, creating it on first call.
+     *
+     * @return the singleton instance.
+     * @throws ServiceConfigurationError if the provider cannot be instantiated.
+     */
+    public T get() {
+        T result = instance;
+        if ( result == null ) {
+            synchronized ( this ) {
+                result = instance;
+                if ( result == null ) {
+                    long start = System.nanoTime();
+                    result = newInstance();
+                    initializationNanos = System.nanoTime() - start;
+                    instance = result;
+                    logger.log( Level.FINE, "Initialized {0} in {1} ms",
+                        new Object[]{ providerClass.getName(), TimeUnit.NANOSECONDS.toMillis( initializationNanos ) } );
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return <code>true</code> if the singleton instance has been created.
+     */
+    public boolean isInitialized() {
+        return instance != null;
+    }
+
+    /**
+     * Returns the time it took to create the singleton instance.
+     *
+     * @param unit the unit of the result.
+     * @return the time, or <code>-1</code> if the singleton has not been created.
+     */
+    public long getInitializationTime(TimeUnit unit) {
+        long nanos = initializationNanos;
+        return nanos < 0 ? -1 : unit.convert( nanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Returns a pooled instance of the provider, or a new one if the pool is
+     * empty. The instance should be {@link #release(Object) released} after use.
+     *
+     * @return an instance, for the exclusive use of the caller.
+     * @throws ServiceConfigurationError if the provider cannot be instantiated.
+     */
+    public T acquire() {
+        T result = idle.poll();
+        if ( result != null ) {
+            idleCount.decrementAndGet();
+            return result;
+        }
+        return newInstance();
+    }
+
+    /**
+     * Returns an instance to the pool. It is dropped if the pool is full.
+     *
+     * @param released an instance obtained from {@link #acquire()}.
+     */
+    public void release(T released) {
+        if ( !providerClass.isInstance( released ) )
+            throw new IllegalArgumentException( "Not an instance of " + providerClass.getName() + ": " + released );
+        if ( idleCount.incrementAndGet() <= maxIdle )
+            idle.offer( released );
+        else
+            idleCount.decrementAndGet();
+    }
+
+    /**
+     * Sets the maximum number of idle instances kept in the pool.
+     *
+     * @param maxIdle the maximum number of idle instances.
+     */
+    public void setMaxIdle(int maxIdle) {
+        if ( maxIdle < 0 )
+            throw new IllegalArgumentException( "Negative maximum: " + maxIdle );
+        this.maxIdle = maxIdle;
+    }
+
+    private T newInstance() {
+        try {
+            return providerClass.getConstructor().newInstance();
+        } catch ( ReflectiveOperationException e ) {
+            throw new ServiceConfigurationError( "Could not instantiate service provider: " + providerClass.getName(), e );
+        } catch ( RuntimeException e ) {
+            throw new ServiceConfigurationError( "Could not instantiate service provider: " + providerClass.getName(), e );
+        }
+    }
+
+    @Override
+    public String toString() {
+        return providerClass.getName() + "(priority=" + priority + ")";
+    }
+}
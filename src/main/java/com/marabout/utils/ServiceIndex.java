@@ -0,0 +1,308 @@
+package com.marabout.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Generates the index of the service providers of a classpath, so that
+ * {@link ServiceProviderManager} can find them without scanning the
+ * <code>META-INF/services</code> resources of every jar.
+ * <p/>
+ * The index is a single UTF-8 resource, <code>META-INF/services.idx</code>,
+ * with one line per service interface:
+ * <pre>
+ * com.foo.Codec=com.foo.GzipCodec,com.foo.ZipCodec
+ * </pre>
+ * It is meant to be generated at build time, in the classes of an application,
+ * for instance with:
+ * <pre>
+ * java com.marabout.utils.ServiceIndex target/classes
+ * </pre>
+ * Such an index only stands for the <code>META-INF/services</code> files of the
+ * directory or jar holding it: the files of the other classpath entries are
+ * still scanned, and their providers are added to the indexed ones. Listing the
+ * providers of other entries in an index is harmless, but does not spare
+ * scanning them.
+ * <p/>
+ * An index generated from the whole runtime classpath of an application can be
+ * marked complete, with a <code>!complete</code> line:
+ * <pre>
+ * java com.marabout.utils.ServiceIndex -complete target/classes target/classes:lib/a.jar:lib/b.jar
+ * </pre>
+ * A complete index is trusted for every service interface: the lookups are
+ * answered from it alone, and no <code>META-INF/services</code> resource is
+ * read, so it must be generated again whenever the classpath changes. The
+ * <code>service-index</code> Maven profile of this project shows the build step;
+ * an application copies it into its own pom, with the output directory set to
+ * <code>${project.build.outputDirectory}</code>.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class ServiceIndex {
+
+    /**
+     * The name of the index resource.
+     */
+    public static final String INDEX_RESOURCE = "META-INF/services.idx";
+    private static final String META_INF_SERVICES = "META-INF/services/";
+    private static final String COMPLETE = "!complete";
+
+    private ServiceIndex() {
+    }
+
+    /**
+     * Writes the index of the service providers found in some classpath entries.
+     *
+     * @param args <code>-complete</code> to mark the index complete, then the
+     *             output directory, followed by the directories and jars to
+     *             index, or classpaths. The output directory alone is indexed if
+     *             no entry is specified.
+     * @throws IOException if an entry cannot be read or the index cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int first = 0;
+        boolean complete = args.length > 0 && args[0].equals( "-complete" );
+        if ( complete )
+            first++;
+        if ( args.length == first ) {
+            System.err.println( "Usage: ServiceIndex [-complete] <output directory> [<directory or jar>...]" );
+            System.exit( 1 );
+        }
+        File output = new File( args[first] );
+        List<File> entries = new ArrayList<File>();
+        for ( int i = first + 1; i < args.length; i++ ) {
+            for ( String path : args[i].split( File.pathSeparator ) ) {
+                if ( path.length() > 0 )
+                    entries.add( new File( path ) );
+            }
+        }
+        if ( entries.isEmpty() )
+            entries.add( output );
+        Map<String, Set<String>> index = scan( entries );
+        write( index, new File( output, INDEX_RESOURCE ), complete );
+        System.out.println( "Indexed " + index.size() + " services in " + new File( output, INDEX_RESOURCE )
+            + ( complete ? " (complete)" : "" ) );
+    }
+
+    /**
+     * Reads the <code>META-INF/services</code> files of some classpath entries.
+     *
+     * @param entries directories or jars; missing entries are ignored.
+     * @return the providers of each service interface, sorted by interface name.
+     * @throws IOException if an entry cannot be read.
+     */
+    public static Map<String, Set<String>> scan(List<File> entries) throws IOException {
+        Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+        for ( File entry : entries ) {
+            if ( entry.isDirectory() )
+                scanDirectory( new File( entry, META_INF_SERVICES ), index );
+            else if ( entry.isFile() )
+                scanJar( entry, index );
+        }
+        return index;
+    }
+
+    /**
+     * Writes an index file, which only stands for its own classpath entry.
+     *
+     * @param index the providers of each service interface.
+     * @param file  the index file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Map<String, Set<String>> index, File file) throws IOException {
+        write( index, file, false );
+    }
+
+    /**
+     * Writes an index file.
+     *
+     * @param index    the providers of each service interface.
+     * @param file     the index file.
+     * @param complete whether the index lists the providers of the whole classpath.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Map<String, Set<String>> index, File file, boolean complete) throws IOException {
+        File parent = file.getParentFile();
+        if ( parent != null && !parent.isDirectory() && !parent.mkdirs() )
+            throw new IOException( "Could not create directory: " + parent );
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 );
+        try {
+            writer.write( "# Generated by " + ServiceIndex.class.getName() + "\n" );
+            if ( complete )
+                writer.write( COMPLETE + "\n" );
+            for ( Map.Entry<String, Set<String>> entry : index.entrySet() ) {
+                if ( entry.getValue().isEmpty() )
+                    continue;
+                writer.write( entry.getKey() );
+                char separator = '=';
+                for ( String provider : entry.getValue() ) {
+                    writer.write( separator );
+                    writer.write( provider );
+                    separator = ',';
+                }
+                writer.write( '\n' );
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads all the index resources visible from a classloader.
+     *
+     * @return the indexed providers, and the classpath entries they stand for.
+     */
+    static Contents read(ClassLoader cloader) throws IOException {
+        Map<String, Set<String>> index = new LinkedHashMap<String, Set<String>>();
+        Set<String> roots = new HashSet<String>();
+        boolean complete = false;
+        Enumeration<URL> resources = cloader.getResources( INDEX_RESOURCE );
+        while ( resources.hasMoreElements() ) {
+            URL url = resources.nextElement();
+            complete |= read( url, index );
+            String root = root( url, INDEX_RESOURCE );
+            if ( root != null )
+                roots.add( root );
+        }
+        Map<String, List<String>> result = new LinkedHashMap<String, List<String>>( index.size() * 2 );
+        for ( Map.Entry<String, Set<String>> entry : index.entrySet() )
+            result.put( entry.getKey(), new ArrayList<String>( entry.getValue() ) );
+        return new Contents( result, roots, complete );
+    }
+
+    /**
+     * @return the URL of the classpath entry holding a resource, as a string,
+     *         or <code>null</code> if it cannot be told.
+     */
+    private static String root(URL url, String resource) {
+        String location = url.toExternalForm();
+        return location.endsWith( resource ) ? location.substring( 0, location.length() - resource.length() ) : null;
+    }
+
+    /**
+     * @return whether the index is marked complete.
+     */
+    private static boolean read(URL url, Map<String, Set<String>> index) throws IOException {
+        boolean complete = false;
+        InputStream istream = url.openStream();
+        try {
+            BufferedReader reader = new BufferedReader( new InputStreamReader( istream, StandardCharsets.UTF_8 ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null ) {
+                if ( line.trim().equals( COMPLETE ) )
+                    complete = true;
+                int separator = line.indexOf( '=' );
+                if ( line.startsWith( "#" ) || separator <= 0 )
+                    continue;
+                providers( index, line.substring( 0, separator ).trim() )
+                    .addAll( Arrays.asList( line.substring( separator + 1 ).trim().split( "," ) ) );
+            }
+        } finally {
+            istream.close();
+        }
+        return complete;
+    }
+
+    private static void scanDirectory(File dir, Map<String, Set<String>> index) throws IOException {
+        File[] files = dir.listFiles();
+        if ( files == null )
+            return;
+        Arrays.sort( files );
+        for ( File file : files ) {
+            if ( file.isFile() )
+                ServiceProviderManager.readProviderNames( file.toURI().toURL(), providers( index, file.getName() ) );
+        }
+    }
+
+    private static void scanJar(File file, Map<String, Set<String>> index) throws IOException {
+        JarFile jar = new JarFile( file );
+        try {
+            Enumeration<JarEntry> entries = jar.entries();
+            while ( entries.hasMoreElements() ) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if ( entry.isDirectory() || !name.startsWith( META_INF_SERVICES )
+                    || name.indexOf( '/', META_INF_SERVICES.length() ) >= 0 )
+                    continue;
+                ServiceProviderManager.readProviderNames( jar.getInputStream( entry ),
+                    providers( index, name.substring( META_INF_SERVICES.length() ) ) );
+            }
+        } finally {
+            jar.close();
+        }
+    }
+
+    /**
+     * The index resources visible from a classloader.
+     */
+    static final class Contents {
+
+        static final Contents EMPTY = new Contents( Collections.<String, List<String>>emptyMap(),
+            Collections.<String>emptySet(), false );
+
+        private final Map<String, List<String>> providers;
+        private final Set<String> roots;
+        private final boolean complete;
+
+        Contents(Map<String, List<String>> providers, Set<String> roots, boolean complete) {
+            this.providers = providers;
+            this.roots = roots;
+            this.complete = complete;
+        }
+
+        /**
+         * @return whether an index lists the providers of the whole classpath,
+         *         so that no <code>META-INF/services</code> resource needs to be read.
+         */
+        boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * @return the indexed providers of a service interface, empty if it is not indexed.
+         */
+        List<String> getProviders(String service) {
+            List<String> result = providers.get( service );
+            return result == null ? Collections.<String>emptyList() : result;
+        }
+
+        /**
+         * @param url      a resource found by the classloader.
+         * @param resource the name of the resource.
+         * @return whether the resource is in a classpath entry that has an index.
+         */
+        boolean isIndexed(URL url, String resource) {
+            return !roots.isEmpty() && roots.contains( root( url, resource ) );
+        }
+    }
+
+    private static Set<String> providers(Map<String, Set<String>> index, String service) {
+        Set<String> providers = index.get( service );
+        if ( providers == null ) {
+            providers = new LinkedHashSet<String>();
+            index.put( service, providers );
+        }
+        return providers;
+    }
+}
@@ -0,0 +1,25 @@
+package com.marabout.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The priority of a service provider class in the {@link ServiceRegistry}.
+ * Providers with a higher priority come first; providers without this
+ * annotation have the priority <code>0</code>.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ServicePriority {
+
+    /**
+     * @return the priority of the provider.
+     */
+    int value();
+}
@@ -1,57 +1,377 @@
 package com.marabout.utils;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.LineIterator;
+import com.marabout.lang.metrics.Counter;
+import com.marabout.lang.metrics.MetricsRegistry;
+import com.marabout.lang.metrics.Timer;
 
 /**
  * Generic Manager class for Service providers.
- * 
+ * <p/>
+ * The providers found for a service interface are cached per classloader, in a
+ * {@link ConcurrentCache}, for the whole process: the <code>META-INF/services</code> files are read once,
+ * even when many threads ask at the same moment. The cache only holds weak
+ * references to the classloaders and to the provider classes, so that it never
+ * prevents a classloader from being unloaded.
+ * <p/>
+ * When a classpath entry holds a {@link ServiceIndex service index}, which is
+ * read once per classloader, the providers it lists are taken from it, and the
+ * <code>META-INF/services</code> resources of this entry are not read. The
+ * resources of the entries without an index are still read, and their
+ * providers added to the indexed ones. An index {@link ServiceIndex marked complete}
+ * answers every lookup on its own, without looking for any resource but itself.
+ * The index can be ignored by setting the
+ * system property <code>com.marabout.utils.ServiceProviderManager.useIndex</code>
+ * to <code>false</code>.
+ * <p/>
+ * The cache hits and misses, and the discovery time, are recorded in the default
+ * {@link MetricsRegistry} as <code>ServiceProviderManager.cache.hits</code>,
+ * <code>ServiceProviderManager.cache.misses</code> and
+ * <code>ServiceProviderManager.discovery</code>.
+ *
  * @author <a href="mailto:gmarabout@gmail.com">Grgoire Marabout</a>
- * 
+ *
  */
 public final class ServiceProviderManager {
 
     private static final String META_INF_SERVICES = "META-INF/services/";
     private static Logger logger = Logger.getLogger( ServiceProviderManager.class.getName() );
+    private static final Counter cacheHits = MetricsRegistry.getDefault().counter( "ServiceProviderManager.cache.hits" );
+    private static final Counter cacheMisses = MetricsRegistry.getDefault().counter( "ServiceProviderManager.cache.misses" );
+    private static final Timer discoveryTimer = MetricsRegistry.getDefault().timer( "ServiceProviderManager.discovery" );
 
+    private static final boolean USE_INDEX = Boolean.parseBoolean(
+        System.getProperty( ServiceProviderManager.class.getName() + ".useIndex", "true" ) );
+
+    private static final ConcurrentMap<LoaderKey, LoaderCache> cache = new ConcurrentHashMap<LoaderKey, LoaderCache>();
+    private static final ReferenceQueue<ClassLoader> unloadedLoaders = new ReferenceQueue<ClassLoader>();
+    private static final AtomicInteger cacheGeneration = new AtomicInteger();
+
+    private volatile int parallelThreshold = Integer.MAX_VALUE;
+
+    /**
+     * Returns the providers of a service interface, found by its classloader.
+     *
+     * @param serviceInterface the service interface.
+     * @param <T>              the service type.
+     * @return a new collection of the provider classes.
+     */
     public <T> Collection<Class<? extends T>> findServiceProviders(Class<T> serviceInterface) {
-        String spiFileName = serviceInterface.getName();
-        List<Class<? extends T>> result = new ArrayList<Class<? extends T>>();
+        return findServiceProviders( serviceInterface, serviceInterface.getClassLoader() );
+    }
+
+    /**
+     * Returns the providers of a service interface, found by the specified
+     * classloader.
+     *
+     * @param serviceInterface the service interface.
+     * @param cloader          the classloader, the system classloader if <code>null</code>.
+     * @param <T>              the service type.
+     * @return a new collection of the provider classes.
+     */
+    public <T> Collection<Class<? extends T>> findServiceProviders(Class<T> serviceInterface, ClassLoader cloader) {
+        if ( cloader == null )
+            cloader = ClassLoader.getSystemClassLoader();
+        CachedProviders providers = getProviders( serviceInterface.getName(), cloader );
+        List<Class<? extends T>> result = new ArrayList<Class<? extends T>>( providers.classes.length );
+        for ( WeakReference<Class<?>> ref : providers.classes ) {
+            Class<?> cls = ref.get();
+            if ( cls != null && serviceInterface.isAssignableFrom( cls ) )
+                result.add( cls.asSubclass( serviceInterface ) );
+        }
+        return result;
+    }
+
+    /**
+     * Sets the number of provider classes from which the classes are resolved in
+     * parallel, on the common fork/join pool. By default they are always resolved
+     * by the calling thread.
+     *
+     * @param threshold the threshold, at least 1.
+     */
+    public void setParallelResolutionThreshold(int threshold) {
+        if ( threshold < 1 )
+            throw new IllegalArgumentException( "Invalid threshold: " + threshold );
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Forgets all the cached providers, so that the next lookups read the
+     * <code>META-INF/services</code> files again.
+     */
+    public static void clearCache() {
+        cacheGeneration.incrementAndGet();
+        cache.clear();
+    }
+
+    /**
+     * @return a number changed by each {@link #clearCache()}, so that the
+     *         caches built on top of this one know when to forget their own
+     *         results.
+     */
+    static int getCacheGeneration() {
+        return cacheGeneration.get();
+    }
+
+    private CachedProviders getProviders(String spiFileName, final ClassLoader cloader) {
+        final LoaderCache loaderCache = getLoaderCache( cloader );
+        CachedProviders providers = loaderCache.providers.getIfPresent( spiFileName );
+        if ( providers != null ) {
+            cacheHits.increment();
+            return providers;
+        }
+        cacheMisses.increment();
+        // Concurrent lookups of the same interface wait for a single discovery.
+        providers = loaderCache.providers.get( spiFileName, new CacheLoader<String, CachedProviders>() {
+            public CachedProviders load(String name) {
+                return loadProviders( name, cloader, loaderCache );
+            }
+        } );
+        if ( !providers.complete )
+            // Do not keep a partial result: the next lookup will try again.
+            loaderCache.providers.invalidate( spiFileName );
+        return providers;
+    }
 
-        ClassLoader cloader = serviceInterface.getClassLoader();
-        // let's search for all files called after this name:
+    private static LoaderCache getLoaderCache(ClassLoader cloader) {
+        LoaderCache loaderCache = cache.get( new LoaderKey( cloader, null ) );
+        if ( loaderCache == null ) {
+            expungeUnloadedLoaders();
+            LoaderCache created = new LoaderCache();
+            loaderCache = cache.putIfAbsent( new LoaderKey( cloader, unloadedLoaders ), created );
+            if ( loaderCache == null )
+                loaderCache = created;
+        }
+        return loaderCache;
+    }
+
+    private CachedProviders loadProviders(String spiFileName, ClassLoader cloader, LoaderCache loaderCache) {
+        long start = discoveryTimer.start();
+        try {
+            return discoverProviders( spiFileName, cloader, loaderCache );
+        } finally {
+            discoveryTimer.stop( start );
+        }
+    }
+
+    private CachedProviders discoverProviders(String spiFileName, ClassLoader cloader, LoaderCache loaderCache) {
+        ServiceIndex.Contents index = loaderCache.getIndex( cloader );
+        Set<String> names = new LinkedHashSet<String>( index.getProviders( spiFileName ) );
+        boolean complete = true;
+        // A complete index stands for the whole classpath: nothing else to read.
+        if ( !index.isComplete() ) {
+            // let's search for all files called after this name:
+            try {
+                String name = META_INF_SERVICES + spiFileName;
+                Enumeration<URL> resources = cloader.getResources( name );
+                while ( resources.hasMoreElements() ) {
+                    URL url = resources.nextElement();
+                    // The index of a classpath entry stands for all its spi files.
+                    if ( !index.isIndexed( url, name ) )
+                        readProviderNames( url, names );
+                }
+            } catch ( IOException e ) {
+                logger.log( Level.WARNING, "Error while loading spi files: " + spiFileName, e );
+                complete = false;
+            }
+        }
+        List<Class<?>> classes = names.size() >= parallelThreshold
+            ? resolveInParallel( names, cloader ) : resolve( names, cloader );
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        WeakReference<Class<?>>[] refs = new WeakReference[classes.size()];
+        for ( int i = 0; i < refs.length; i++ )
+            refs[i] = new WeakReference<Class<?>>( classes.get( i ) );
+        return new CachedProviders( refs, complete );
+    }
+
+    static void readProviderNames(URL url, Set<String> names) throws IOException {
+        readProviderNames( url.openStream(), names );
+    }
+
+    /**
+     * Reads the provider class names of a spi file, and closes it.
+     */
+    static void readProviderNames(InputStream istream, Set<String> names) throws IOException {
         try {
-            String name = META_INF_SERVICES + spiFileName;
-            Enumeration<URL> resources = cloader.getResources( name );
-            while ( resources.hasMoreElements() ) {
-                URL url = resources.nextElement();
-                InputStream istream = url.openStream();
-                LineIterator lineIter = IOUtils.lineIterator( new InputStreamReader( istream ) );
-                while ( lineIter.hasNext() ) {
-                    String line = lineIter.nextLine();
-                    if ( !line.trim().startsWith( "#" ) ) {
-                        try {
-                            result.add( (Class<T>) Class.forName( line ) );
-                        } catch ( ClassNotFoundException e ) {
-                            logger.log( Level.SEVERE, "Could not load service provider class: " + line, e );
+            BufferedReader reader = new BufferedReader( new InputStreamReader( istream, StandardCharsets.UTF_8 ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null ) {
+                int comment = line.indexOf( '#' );
+                if ( comment >= 0 )
+                    line = line.substring( 0, comment );
+                line = line.trim();
+                if ( line.length() > 0 )
+                    names.add( line );
+            }
+        } finally {
+            try {
+                istream.close();
+            } catch ( IOException e ) {
+                logger.log( Level.WARNING, e.getMessage(), e );
+            }
+        }
+    }
+
+    private static List<Class<?>> resolve(Collection<String> names, ClassLoader cloader) {
+        List<Class<?>> classes = new ArrayList<Class<?>>( names.size() );
+        for ( String name : names ) {
+            Class<?> cls = resolve( name, cloader );
+            if ( cls != null )
+                classes.add( cls );
+        }
+        return classes;
+    }
+
+    private static List<Class<?>> resolveInParallel(Collection<String> names, final ClassLoader cloader) {
+        List<Callable<Class<?>>> tasks = new ArrayList<Callable<Class<?>>>( names.size() );
+        for ( final String name : names ) {
+            tasks.add( new Callable<Class<?>>() {
+                public Class<?> call() {
+                    return resolve( name, cloader );
+                }
+            } );
+        }
+        List<Class<?>> classes = new ArrayList<Class<?>>( names.size() );
+        for ( Future<Class<?>> future : ForkJoinPool.commonPool().invokeAll( tasks ) ) {
+            Class<?> cls = getUninterruptibly( future );
+            if ( cls != null )
+                classes.add( cls );
+        }
+        return classes;
+    }
+
+    private static Class<?> resolve(String name, ClassLoader cloader) {
+        try {
+            return Class.forName( name, false, cloader );
+        } catch ( ClassNotFoundException e ) {
+            logger.log( Level.SEVERE, "Could not load service provider class: " + name, e );
+        } catch ( LinkageError e ) {
+            logger.log( Level.SEVERE, "Could not load service provider class: " + name, e );
+        }
+        return null;
+    }
+
+    private static <V> V getUninterruptibly(Future<V> future) {
+        boolean interrupted = false;
+        try {
+            while ( true ) {
+                try {
+                    return future.get();
+                } catch ( InterruptedException e ) {
+                    interrupted = true;
+                } catch ( ExecutionException e ) {
+                    Throwable cause = e.getCause();
+                    if ( cause instanceof RuntimeException )
+                        throw (RuntimeException) cause;
+                    if ( cause instanceof Error )
+                        throw (Error) cause;
+                    throw new IllegalStateException( cause );
+                }
+            }
+        } finally {
+            if ( interrupted )
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void expungeUnloadedLoaders() {
+        Reference<? extends ClassLoader> ref;
+        while ( ( ref = unloadedLoaders.poll() ) != null )
+            cache.remove( ref );
+    }
+
+    /**
+     * The cached lookups of a classloader.
+     */
+    private static final class LoaderCache {
+        final ConcurrentCache<String, CachedProviders> providers =
+            ConcurrentCache.<String, CachedProviders>newBuilder().build();
+        private volatile ServiceIndex.Contents index;
+
+        ServiceIndex.Contents getIndex(ClassLoader cloader) {
+            ServiceIndex.Contents result = index;
+            if ( result == null ) {
+                synchronized ( this ) {
+                    result = index;
+                    if ( result == null ) {
+                        result = ServiceIndex.Contents.EMPTY;
+                        if ( USE_INDEX ) {
+                            try {
+                                result = ServiceIndex.read( cloader );
+                            } catch ( IOException e ) {
+                                logger.log( Level.WARNING, "Error while loading service index, scanning instead", e );
+                            }
                         }
+                        index = result;
                     }
                 }
             }
-        } catch ( IOException e ) {
-            logger.log( Level.WARNING, "Error while loading spi files: " + spiFileName, e );
+            return result;
+        }
+    }
+
+    /**
+     * The providers found for a service interface. The classes are weakly
+     * referenced: they are kept alive by their classloader.
+     */
+    private static final class CachedProviders {
+        final WeakReference<Class<?>>[] classes;
+        final boolean complete;
+
+        CachedProviders(WeakReference<Class<?>>[] classes, boolean complete) {
+            this.classes = classes;
+            this.complete = complete;
+        }
+    }
+
+    /**
+     * A weak, identity-based key on a classloader.
+     */
+    private static final class LoaderKey extends WeakReference<ClassLoader> {
+        private final int hash;
+
+        LoaderKey(ClassLoader cloader, ReferenceQueue<ClassLoader> queue) {
+            super( cloader, queue );
+            this.hash = System.identityHashCode( cloader );
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( this == obj )
+                return true;
+            if ( !( obj instanceof LoaderKey ) )
+                return false;
+            ClassLoader cloader = get();
+            return cloader != null && cloader == ( (LoaderKey) obj ).get();
         }
-        return result;
     }
 }
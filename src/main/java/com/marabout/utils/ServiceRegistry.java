@@ -0,0 +1,137 @@
+package com.marabout.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Instantiated service providers, on top of {@link ServiceProviderManager}.
+ * <p/>
+ * The providers of a service interface are found once, sorted by
+ * {@link ServicePriority priority}, and instantiated lazily, on first use,
+ * through their {@link ServiceHandle}. The handles are shared by the whole
+ * process, so all the subsystems asking for a service get the same
+ * singletons and the same pools.
+ * <p/>
+ * {@link ServiceProviderManager#clearCache()} also makes the registry find the
+ * providers again on the next lookups. The handles of the provider classes
+ * found again are kept, with their singletons and pools.
+ * <p/>
+ * <code>
+ * Codec codec = ServiceRegistry.getService(Codec.class);
+ * </code>
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class ServiceRegistry {
+
+    private static final ServiceProviderManager manager = new ServiceProviderManager();
+
+    private static final ClassValue<ServiceHandle<?>> handles = new ClassValue<ServiceHandle<?>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected ServiceHandle<?> computeValue(Class<?> type) {
+            return new ServiceHandle<Object>( (Class<Object>) type );
+        }
+    };
+
+    private static final ClassValue<Providers> services = new ClassValue<Providers>() {
+        @Override
+        protected Providers computeValue(Class<?> type) {
+            int generation = ServiceProviderManager.getCacheGeneration();
+            return new Providers( generation, findHandles( type ) );
+        }
+    };
+
+    private static final Comparator<ServiceHandle<?>> BY_PRIORITY = new Comparator<ServiceHandle<?>>() {
+        public int compare(ServiceHandle<?> h1, ServiceHandle<?> h2) {
+            return Integer.compare( h2.getPriority(), h1.getPriority() );
+        }
+    };
+
+    private ServiceRegistry() {
+    }
+
+    /**
+     * Returns the handles on the providers of a service interface, highest
+     * priority first. Providers with the same priority keep the order of the
+     * <code>META-INF/services</code> files.
+     *
+     * @param service the service interface.
+     * @param <T>     the service type.
+     * @return the handles, an unmodifiable list.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<ServiceHandle<? extends T>> getHandles(Class<T> service) {
+        Providers providers = services.get( service );
+        if ( providers.generation != ServiceProviderManager.getCacheGeneration() ) {
+            services.remove( service );
+            providers = services.get( service );
+        }
+        return (List<ServiceHandle<? extends T>>) (List<?>) providers.handles;
+    }
+
+    /**
+     * Returns the handle on a provider class.
+     *
+     * @param providerClass the provider class.
+     * @param <T>           the provider type.
+     * @return the handle.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ServiceHandle<T> getHandle(Class<T> providerClass) {
+        return (ServiceHandle<T>) handles.get( providerClass );
+    }
+
+    /**
+     * Returns the singleton instance of the highest priority provider of a
+     * service interface.
+     *
+     * @param service the service interface.
+     * @param <T>     the service type.
+     * @return the instance, or <code>null</code> if the service has no provider.
+     */
+    public static <T> T getService(Class<T> service) {
+        List<ServiceHandle<? extends T>> providers = getHandles( service );
+        return providers.isEmpty() ? null : providers.get( 0 ).get();
+    }
+
+    /**
+     * Returns the singleton instances of all the providers of a service
+     * interface, highest priority first.
+     *
+     * @param service the service interface.
+     * @param <T>     the service type.
+     * @return the instances.
+     */
+    public static <T> List<T> getServices(Class<T> service) {
+        List<ServiceHandle<? extends T>> providers = getHandles( service );
+        List<T> result = new ArrayList<T>( providers.size() );
+        for ( ServiceHandle<? extends T> handle : providers )
+            result.add( handle.get() );
+        return result;
+    }
+
+    private static List<ServiceHandle<?>> findHandles(Class<?> service) {
+        List<ServiceHandle<?>> result = new ArrayList<ServiceHandle<?>>();
+        for ( Class<?> providerClass : manager.findServiceProviders( service ) )
+            result.add( handles.get( providerClass ) );
+        Collections.sort( result, BY_PRIORITY );
+        return Collections.unmodifiableList( result );
+    }
+
+    /**
+     * The handles found for a service, and the generation of the
+     * {@link ServiceProviderManager} cache they were found in.
+     */
+    private static final class Providers {
+        final int generation;
+        final List<ServiceHandle<?>> handles;
+
+        Providers(int generation, List<ServiceHandle<?>> handles) {
+            this.generation = generation;
+            this.handles = handles;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.marabout.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.marabout.lang.ClassPropertiesManager;
+
+/**
+ * Loads the properties and the service providers of classes ahead of time,
+ * typically at startup, so that the first requests do not pay for the
+ * classpath I/O.
+ * <p/>
+ * For each class, its properties are loaded by the {@link ClassPropertiesManager},
+ * and for each interface, its providers are found by the {@link ServiceRegistry}.
+ * The classes are added one by one, or listed in <code>META-INF/warm-up</code>
+ * files, one fully qualified name per line, <code>#</code> starting a comment.
+ * <p/>
+ * The classes are warmed up in parallel, on at most {@link #setParallelism(int)}
+ * threads: virtual threads when the JVM has them, daemon threads otherwise.
+ * <p/>
+ * <code>
+ * CompletableFuture&lt;WarmUpReport&gt; ready = new WarmUp().addFromManifest().start();
+ * ...
+ * boolean isReady = ready.isDone();
+ * </code>
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class WarmUp {
+
+    /**
+     * The resource listing the classes to warm up.
+     */
+    public static final String MANIFEST_RESOURCE = "META-INF/warm-up";
+
+    private static Logger logger = Logger.getLogger( WarmUp.class.getName() );
+
+    private final ClassLoader cloader;
+    // The classes by name, or null when they are still to be loaded.
+    private final Map<String, Class<?>> targets = new LinkedHashMap<String, Class<?>>();
+    private int parallelism = Math.max( 4, Runtime.getRuntime().availableProcessors() );
+    private long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+    /**
+     * Creates a warm-up, loading the classes listed by name with the context class loader.
+     */
+    public WarmUp() {
+        this( Thread.currentThread().getContextClassLoader() );
+    }
+
+    /**
+     * Creates a warm-up.
+     *
+     * @param cloader the class loader of the classes listed by name.
+     */
+    public WarmUp(ClassLoader cloader) {
+        this.cloader = cloader != null ? cloader : WarmUp.class.getClassLoader();
+    }
+
+    /**
+     * Adds classes or service interfaces to warm up.
+     *
+     * @param classes the classes.
+     * @return this warm-up.
+     */
+    public synchronized WarmUp add(Class<?>... classes) {
+        for ( Class<?> cls : classes )
+            targets.put( cls.getName(), cls );
+        return this;
+    }
+
+    /**
+     * Adds classes or service interfaces to warm up, by name.
+     *
+     * @param classNames the fully qualified class names.
+     * @return this warm-up.
+     */
+    public synchronized WarmUp add(String... classNames) {
+        for ( String className : classNames ) {
+            if ( !targets.containsKey( className ) )
+                targets.put( className, null );
+        }
+        return this;
+    }
+
+    /**
+     * Adds the classes listed in all the {@link #MANIFEST_RESOURCE} files of the
+     * class loader.
+     *
+     * @return this warm-up.
+     */
+    public WarmUp addFromManifest() {
+        Set<String> names = new LinkedHashSet<String>();
+        try {
+            Enumeration<URL> urls = cloader.getResources( MANIFEST_RESOURCE );
+            while ( urls.hasMoreElements() ) {
+                URL url = urls.nextElement();
+                try {
+                    ServiceProviderManager.readProviderNames( url, names );
+                } catch ( IOException e ) {
+                    logger.log( Level.WARNING, "Error while reading warm-up manifest: " + url, e );
+                }
+            }
+        } catch ( IOException e ) {
+            logger.log( Level.WARNING, "Error while looking for warm-up manifests", e );
+        }
+        return add( names.toArray( new String[names.size()] ) );
+    }
+
+    /**
+     * Sets the maximum number of classes warmed up at the same time.
+     *
+     * @param parallelism the number of threads, at least one.
+     * @return this warm-up.
+     */
+    public synchronized WarmUp setParallelism(int parallelism) {
+        if ( parallelism < 1 )
+            throw new IllegalArgumentException( "Parallelism must be positive: " + parallelism );
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the duration above which the warm-up of a class is reported as slow.
+     *
+     * @param threshold the duration.
+     * @param unit      the unit of the duration.
+     * @return this warm-up.
+     */
+    public synchronized WarmUp setSlowThreshold(long threshold, TimeUnit unit) {
+        this.slowThresholdNanos = unit.toNanos( threshold );
+        return this;
+    }
+
+    /**
+     * Starts warming up the classes added so far. Classes that cannot be loaded
+     * or warmed up are reported as failures, and do not stop the others.
+     *
+     * @return a future completed with the report once all the classes are warmed up.
+     */
+    public synchronized CompletableFuture<WarmUpReport> start() {
+        final long start = System.nanoTime();
+        final long slowThreshold = slowThresholdNanos;
+        final ConcurrentMap<String, Long> durations = new ConcurrentHashMap<String, Long>();
+        final ConcurrentMap<String, Throwable> failures = new ConcurrentHashMap<String, Throwable>();
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( parallelism, Math.max( 1, targets.size() ) ), threadFactory() );
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>( targets.size() );
+        try {
+            for ( final Map.Entry<String, Class<?>> target : targets.entrySet() ) {
+                futures.add( CompletableFuture.runAsync( new Runnable() {
+                    public void run() {
+                        long begin = System.nanoTime();
+                        try {
+                            warmUp( target.getKey(), target.getValue() );
+                        } catch ( Throwable t ) {
+                            logger.log( Level.WARNING, "Could not warm up: " + target.getKey(), t );
+                            failures.put( target.getKey(), t );
+                        } finally {
+                            durations.put( target.getKey(), System.nanoTime() - begin );
+                        }
+                    }
+                }, executor ) );
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return CompletableFuture.allOf( futures.toArray( new CompletableFuture<?>[futures.size()] ) )
+            .thenApply( new Function<Void, WarmUpReport>() {
+                public WarmUpReport apply(Void ignored) {
+                    WarmUpReport report = new WarmUpReport( System.nanoTime() - start, durations, failures, slowThreshold );
+                    for ( String name : report.getSlowLoads() )
+                        logger.warning( "Slow warm-up: " + name + " took " + report.getDuration( name, TimeUnit.MILLISECONDS ) + " ms" );
+                    logger.info( "Warmed up " + durations.size() + " classes in " + report.getTotalTime( TimeUnit.MILLISECONDS )
+                        + " ms, " + failures.size() + " failures" );
+                    return report;
+                }
+            } );
+    }
+
+    private void warmUp(String name, Class<?> cls) throws ClassNotFoundException {
+        if ( cls == null )
+            cls = Class.forName( name, true, cloader );
+        ClassPropertiesManager.preload( cls );
+        if ( cls.isInterface() )
+            ServiceRegistry.getHandles( cls );
+    }
+
+    /**
+     * Returns a factory of virtual threads when the JVM has them, of daemon
+     * threads otherwise.
+     */
+    static ThreadFactory threadFactory() {
+        try {
+            Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            Class<?> builderType = Class.forName( "java.lang.Thread$Builder" );
+            builder = builderType.getMethod( "name", String.class, long.class ).invoke( builder, "warm-up-", 1L );
+            Method factory = builderType.getMethod( "factory" );
+            return (ThreadFactory) factory.invoke( builder );
+        } catch ( Exception e ) {
+            // No virtual threads before JDK 21.
+        }
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread( runnable, "warm-up-" + count.incrementAndGet() );
+                thread.setDaemon( true );
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package com.marabout.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a {@link WarmUp}: how long each class took, which ones were
+ * slow, and which ones failed.
+ *
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public final class WarmUpReport {
+
+    private final long totalNanos;
+    private final Map<String, Long> durations;
+    private final Map<String, Throwable> failures;
+    private final List<String> slowLoads;
+
+    WarmUpReport(long totalNanos, Map<String, Long> durations, Map<String, Throwable> failures, long slowThresholdNanos) {
+        this.totalNanos = totalNanos;
+        this.durations = Collections.unmodifiableMap( new HashMap<String, Long>( durations ) );
+        this.failures = Collections.unmodifiableMap( new HashMap<String, Throwable>( failures ) );
+        List<String> slow = new ArrayList<String>();
+        for ( Map.Entry<String, Long> duration : durations.entrySet() ) {
+            if ( duration.getValue() >= slowThresholdNanos )
+                slow.add( duration.getKey() );
+        }
+        Collections.sort( slow, new Comparator<String>() {
+            public int compare(String name1, String name2) {
+                return Long.compare( WarmUpReport.this.durations.get( name2 ), WarmUpReport.this.durations.get( name1 ) );
+            }
+        } );
+        this.slowLoads = Collections.unmodifiableList( slow );
+    }
+
+    /**
+     * @param unit the unit of the result.
+     * @return the time from the start of the warm-up to its end.
+     */
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert( totalNanos, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * @return the names of the classes warmed up, whether they failed or not.
+     */
+    public Iterable<String> getClassNames() {
+        return durations.keySet();
+    }
+
+    /**
+     * @param className the name of a class.
+     * @param unit      the unit of the result.
+     * @return the time the class took to warm up, or -1 if it was not warmed up.
+     */
+    public long getDuration(String className, TimeUnit unit) {
+        Long duration = durations.get( className );
+        return duration != null ? unit.convert( duration, TimeUnit.NANOSECONDS ) : -1;
+    }
+
+    /**
+     * @return the names of the classes slower than the threshold, slowest first.
+     */
+    public List<String> getSlowLoads() {
+        return slowLoads;
+    }
+
+    /**
+     * @return the errors of the classes that could not be warmed up, by class name.
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return <code>true</code> if all the classes were warmed up.
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpReport[classes=" + durations.size() + ", slow=" + slowLoads.size()
+            + ", failures=" + failures.size() + ", time=" + getTotalTime( TimeUnit.MILLISECONDS ) + "ms]";
+    }
+}
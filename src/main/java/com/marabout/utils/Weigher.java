@@ -0,0 +1,19 @@
+package com.marabout.utils;
+
+/**
+ * Computes the weight of the entries of a {@link ConcurrentCache} bounded by weight.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public interface Weigher<K, V> {
+
+    /**
+     * @param key   the key of an entry.
+     * @param value the value of the entry.
+     * @return the weight of the entry, not negative. It must not change while
+     *         the entry is cached.
+     */
+    int weigh(K key, V value);
+}
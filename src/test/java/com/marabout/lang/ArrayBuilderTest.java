@@ -0,0 +1,48 @@
+package com.marabout.lang;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class ArrayBuilderTest extends TestCase {
+
+    public void testBuild() {
+        ArrayBuilder<CharSequence> builder = new ArrayBuilder<CharSequence>(CharSequence.class, 1);
+        builder.add("a").add(new StringBuilder("b")).addAll(new CharSequence[]{ "c", "d" });
+        for (int i = 0; i < 100; i++)
+            builder.add("x");
+
+        CharSequence[] built = builder.build();
+        assertEquals(CharSequence.class, built.getClass().getComponentType());
+        assertEquals(104, built.length);
+        assertEquals("b", built[1].toString());
+        assertEquals("d", built[3]);
+    }
+
+    public void testReuse() {
+        IntArrayBuilder builder = new IntArrayBuilder(0);
+        builder.add(1).add(2).addAll(new int[]{ 3, 4, 5 }, 1, 2);
+        assertTrue(Arrays.equals(new int[]{ 1, 2, 4, 5 }, builder.build()));
+
+        builder.clear();
+        assertEquals(0, builder.size());
+        assertEquals(0, builder.build().length);
+        builder.add(6);
+        assertTrue(Arrays.equals(new int[]{ 6 }, builder.build()));
+        try {
+            builder.get(1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testAppendSubclass() {
+        Number[] numbers = ArrayUtils.append(new Number[]{ 1L }, 2);
+        assertEquals(Number.class, numbers.getClass().getComponentType());
+        assertEquals(2, numbers[1]);
+    }
+}
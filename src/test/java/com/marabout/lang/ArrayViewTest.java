@@ -0,0 +1,68 @@
+package com.marabout.lang;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class ArrayViewTest extends TestCase {
+
+    public void testFirstRest() {
+        ArrayView<String> view = ArrayView.of(new String[]{ "a", "b", "c" });
+        StringBuilder visited = new StringBuilder();
+        while (!view.isEmpty()) {
+            visited.append(view.first());
+            view = view.rest();
+        }
+        assertEquals("abc", visited.toString());
+        assertNull(view.first());
+        assertSame(view, view.rest());
+    }
+
+    public void testConcatSlice() {
+        String[] left = new String[]{ "a", "b", "c" };
+        String[] right = new String[]{ "d", "e" };
+        ArrayView<String> concat = ArrayView.concat(ArrayView.of(left, 1, 3), ArrayView.of(new String[0]),
+            ArrayView.of(right));
+
+        assertEquals(4, concat.size());
+        assertEquals("b", concat.get(0));
+        assertEquals("d", concat.get(2));
+        assertEquals("[b, c, d, e]", concat.toString());
+
+        ArrayView<String> slice = concat.slice(1, 3);
+        assertTrue(Arrays.equals(new String[]{ "c", "d" }, slice.toArray()));
+        assertEquals(String.class, slice.toArray().getClass().getComponentType());
+
+        ArrayView<String> again = ArrayView.concat(slice, slice);
+        StringBuilder visited = new StringBuilder();
+        for (Iterator<String> it = again.iterator(); it.hasNext(); )
+            visited.append(it.next());
+        assertEquals("cdcd", visited.toString());
+
+        try {
+            concat.get(4);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testPrimitive() {
+        IntArrayView view = IntArrayView.concat(IntArrayView.of(new int[]{ 1, 2 }), IntArrayView.of(new int[]{ 3 }));
+
+        assertEquals(1, view.first());
+        assertTrue(Arrays.equals(new int[]{ 2, 3 }, view.rest().toArray()));
+        int sum = 0;
+        for (PrimitiveIterator.OfInt it = view.iterator(); it.hasNext(); )
+            sum += it.nextInt();
+        assertEquals(6, sum);
+
+        assertEquals(2L, LongArrayView.of(new long[]{ 1L, 2L }).rest().first());
+        assertEquals(-1, ByteArrayView.of(new byte[]{ -1 }).iterator().nextInt());
+    }
+}
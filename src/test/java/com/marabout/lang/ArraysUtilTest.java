@@ -1,6 +1,11 @@
 package com.marabout.lang;
 
 import static com.marabout.lang.ArrayUtils.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 import junit.framework.TestCase;
 
 /**
@@ -99,4 +104,79 @@ public class ArraysUtilTest extends TestCase {
         assertEquals("g", concat[6]);
     }
 
+    public void testPrimitiveInts() {
+        int[] ints = new int[]{ 1, 2, 3 };
+
+        assertEquals(1, first(ints));
+        assertTrue(Arrays.equals(new int[]{ 2, 3 }, rest(ints)));
+        assertEquals(0, rest(new int[]{ }).length);
+        assertTrue(Arrays.equals(new int[]{ 1, 2, 3, 4 }, append(ints, 4)));
+        assertTrue(Arrays.equals(new int[]{ 1, 2, 3, 5, 6 }, concat(ints, new int[]{ }, new int[]{ 5, 6 })));
+        assertTrue(Arrays.equals(new int[]{ 1, 2, 3, 4 }, flattenInts(new int[][]{ { 1 }, { 2, 3 }, { 4 } })));
+        // The Object overload still applies, and boxes the elements.
+        Object[] boxed = flatten(new int[][]{ { 1 }, { 2 } });
+        assertEquals(2, boxed.length);
+        assertEquals(1, boxed[0]);
+
+        try {
+            first(new int[]{ });
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testPrimitiveOthers() {
+        assertTrue(Arrays.equals(new long[]{ 1L, 2L }, append(new long[]{ 1L }, 2L)));
+        assertTrue(Arrays.equals(new double[]{ 2.0 }, rest(new double[]{ 1.0, 2.0 })));
+        assertTrue(Arrays.equals(new byte[]{ 1, 2 }, concat(new byte[]{ 1 }, new byte[]{ 2 })));
+    }
+
+    public void testWiden() {
+        assertTrue(Arrays.equals(new int[]{ -1, 2 }, toIntArray(new byte[]{ -1, 2 })));
+        assertTrue(Arrays.equals(new long[]{ 3L, 4L }, toLongArray(new int[]{ 3, 4 })));
+        assertTrue(Arrays.equals(new double[]{ 5.0 }, toDoubleArray(new long[]{ 5L })));
+    }
+
+    public void testFlattenPrimitiveLeaves() {
+        Object[] flattened = flatten(new Object[]{ new int[]{ 1, 2 }, "a", new double[][]{ { 3.0 } } });
+
+        assertEquals(4, flattened.length);
+        assertEquals(1, flattened[0]);
+        assertEquals(2, flattened[1]);
+        assertEquals("a", flattened[2]);
+        assertEquals(3.0, flattened[3]);
+    }
+
+    public void testFlattenDepth() {
+        String[][][] nested = new String[][][]{ { { "a", "b" } }, { { "c" } } };
+
+        assertEquals(1, flatten(nested, 0).length);
+        assertEquals(2, flatten(nested, 1).length);
+        Object[] flattened = flatten(nested, 2);
+        assertEquals(2, flattened.length);
+        assertTrue(Arrays.equals(new String[]{ "a", "b" }, (String[]) flattened[0]));
+        assertEquals(3, flatten(nested, 3).length);
+        assertEquals(1, flatten("single").length);
+    }
+
+    public void testFlattenDeep() {
+        Object nested = "leaf";
+        for (int i = 0; i < 100000; i++)
+            nested = new Object[]{ nested };
+
+        Object[] flattened = flatten(nested);
+        assertEquals(1, flattened.length);
+        assertEquals("leaf", flattened[0]);
+    }
+
+    public void testFlattenIterator() {
+        Iterator<Object> it = flattenIterator(new String[][]{ { "a" }, { }, { "b", "c" } });
+
+        assertEquals("a", it.next());
+        assertEquals("b", it.next());
+        assertEquals("c", it.next());
+        assertFalse(it.hasNext());
+        assertEquals(5L, flattenStream(new int[][]{ { 1, 2 }, { 3, 4, 5 } }).count());
+    }
 }
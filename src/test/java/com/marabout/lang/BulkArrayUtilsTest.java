@@ -0,0 +1,92 @@
+package com.marabout.lang;
+
+import static com.marabout.lang.BulkArrayUtils.*;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class BulkArrayUtilsTest extends TestCase {
+
+    private int threshold;
+
+    @Override
+    protected void setUp() {
+        threshold = getParallelThreshold();
+    }
+
+    @Override
+    protected void tearDown() {
+        setParallelThreshold(threshold);
+    }
+
+    public void testSequential() {
+        int[] ints = new int[]{ 3, -1, 4, 1, 5 };
+
+        assertEquals(12L, sum(ints));
+        assertEquals(-1, min(ints));
+        assertEquals(5, max(ints));
+        assertEquals(2, indexOf(ints, 4));
+        assertEquals(-1, indexOf(ints, 9));
+        assertEquals(0L, sum(new int[0]));
+
+        map(ints, new IntUnaryOperator() {
+            public int applyAsInt(int operand) {
+                return operand * 2;
+            }
+        });
+        assertTrue(Arrays.equals(new int[]{ 6, -2, 8, 2, 10 }, ints));
+
+        double[] doubles = new double[3];
+        fill(doubles, 1.5);
+        assertEquals(4.5, sum(doubles), 0.0);
+
+        try {
+            min(new long[0]);
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testParallel() {
+        setParallelThreshold(16);
+        long[] longs = new long[100000];
+        for (int i = 0; i < longs.length; i++)
+            longs[i] = i;
+        longs[77777] = -5;
+
+        long expected = 0;
+        for (long value : longs)
+            expected += value;
+        assertEquals(expected, sum(longs));
+        assertEquals(-5L, min(longs));
+        assertEquals(99999L, max(longs));
+        assertEquals(77777, indexOf(longs, -5L));
+        assertEquals(5, indexOf(longs, 5L));
+
+        long[] squares = new long[longs.length];
+        mapTo(longs, squares, new LongUnaryOperator() {
+            public long applyAsLong(long operand) {
+                return operand * operand;
+            }
+        });
+        assertEquals(99999L * 99999L, squares[99999]);
+
+        int[] ints = new int[50000];
+        fill(ints, 7);
+        assertEquals(350000L, sum(ints));
+        // Several matches: the first one wins, whichever range finds one first.
+        ints[40000] = 3;
+        ints[9000] = 3;
+        ints[45000] = 3;
+        assertEquals(9000, indexOf(ints, 3));
+        assertEquals(0, indexOf(ints, 7));
+    }
+}
@@ -0,0 +1,79 @@
+package com.marabout.lang;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class CachedClockTest extends TestCase {
+
+    public void testTicks() throws InterruptedException {
+        CachedClock clock = new CachedClock(1, TimeUnit.MILLISECONDS, ZoneOffset.UTC);
+        try {
+            long first = clock.millis();
+            assertTrue(Math.abs(System.currentTimeMillis() - first) < 1000);
+            Thread.sleep(50);
+            assertTrue(clock.millis() > first);
+
+        } finally {
+            clock.stop();
+        }
+        long stopped = clock.millis();
+        Thread.sleep(20);
+        assertEquals(stopped, clock.millis());
+        assertEquals(Instant.ofEpochMilli(stopped), clock.instant());
+
+        String timestamp = clock.appendTimestamp(new StringBuilder()).toString();
+        assertEquals(DateUtils.appendTimestamp(new StringBuilder(), stopped, ZoneOffset.UTC).toString(), timestamp);
+        assertEquals(timestamp.substring(0, 19), clock.currentSecond());
+    }
+
+    public void testDateUtilsClock() {
+        CachedClock clock = new CachedClock(10, TimeUnit.MILLISECONDS, ZoneId.of("Europe/Paris"));
+        clock.stop();
+        try {
+            DateUtils.setClock(clock);
+            assertSame(clock, DateUtils.getClock());
+            assertEquals(clock.millis(), DateUtils.currentTimeMillis());
+            assertEquals(DateUtils.appendTimestamp(new StringBuilder(), clock.millis(), clock.getZone()).toString(),
+                DateUtils.appendTimestamp(new StringBuilder()).toString());
+        } finally {
+            DateUtils.setClock(null);
+        }
+        assertNotSame(clock, DateUtils.getClock());
+    }
+
+    public void testWithZone() {
+        CachedClock clock = new CachedClock(1, TimeUnit.MILLISECONDS, ZoneOffset.UTC);
+        ZoneId paris = ZoneId.of("Europe/Paris");
+        CachedClock inParis = clock.withZone(paris);
+        clock.stop();
+
+        assertSame(clock, clock.withZone(ZoneOffset.UTC));
+        assertEquals(paris, inParis.getZone());
+        assertEquals(clock.millis(), inParis.millis());
+        assertEquals(inParis, clock.withZone(paris));
+        assertEquals(inParis.hashCode(), clock.withZone(paris).hashCode());
+        assertEquals(clock, inParis.withZone(ZoneOffset.UTC));
+        assertFalse(inParis.equals(clock));
+        CachedClock other = new CachedClock(1, TimeUnit.MILLISECONDS, ZoneOffset.UTC);
+        other.stop();
+        assertFalse(clock.equals(other));
+        assertEquals(DateUtils.appendTimestamp(new StringBuilder(), clock.millis(), paris).toString(),
+            inParis.appendTimestamp(new StringBuilder()).toString());
+    }
+
+    public void testInvalidResolution() {
+        try {
+            new CachedClock(100, TimeUnit.MICROSECONDS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
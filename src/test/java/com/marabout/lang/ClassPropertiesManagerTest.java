@@ -2,6 +2,27 @@ package com.marabout.lang;
 
 import static com.marabout.lang.ClassPropertiesManager.getInt;
 import static com.marabout.lang.ClassPropertiesManager.getString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import com.marabout.lang.metrics.Counter;
+import com.marabout.lang.metrics.MetricsRegistry;
+
 import junit.framework.TestCase;
 
 /**
@@ -26,6 +47,16 @@ public class ClassPropertiesManagerTest extends TestCase {
         assertNull(unkwnon);
     }
 
+    public void testMetrics() {
+        getString("value1", this);
+        Counter hits = MetricsRegistry.getDefault().counter("ClassPropertiesManager.cache.hits");
+        long before = hits.get();
+        getString("value1", this);
+        getString("value2", this);
+        assertEquals(before + 2, hits.get());
+        assertTrue(MetricsRegistry.getDefault().timer("ClassPropertiesManager.load").snapshot().getCount() > 0);
+    }
+
     public void testGetInt() {
         int value1 = getInt("value1", this);
         assertEquals(1, value1);
@@ -43,4 +74,330 @@ public class ClassPropertiesManagerTest extends TestCase {
         int unkwnon = getInt("unknwon", this);
         assertEquals(0, unkwnon);
     }
+
+    public void testHandle() {
+        PropertyHandle<Integer> value1 = ClassPropertiesManager.handle(getClass(), "value1", int.class);
+        assertEquals(1, value1.getInt());
+        assertEquals(Integer.valueOf(1), value1.get());
+
+        PropertyHandle<String> value3 = ClassPropertiesManager.handle(getClass(), "value3", String.class);
+        assertEquals("greg", value3.get());
+
+        assertEquals(0, ClassPropertiesManager.handle(getClass(), "unknwon", int.class).getInt());
+        assertNull(ClassPropertiesManager.handle(getClass(), "unknwon", Integer.class).get());
+        assertEquals(Integer.valueOf(7),
+            ClassPropertiesManager.handle(getClass(), "unknwon", Integer.class, 7).get());
+
+        try {
+            ClassPropertiesManager.handle(getClass(), "value3", int.class);
+            fail();
+        } catch (PropertyFormatException e) {
+            // expected
+        }
+    }
+
+    public void testSharedBetweenThreads() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        Handler handler = new Handler() {
+            public void publish(LogRecord record) {
+                if (record.getMessage().equals("Loading: SharedProbe.properties"))
+                    loads.incrementAndGet();
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(ClassPropertiesManager.class.getName());
+        logger.addHandler(handler);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final String[] values = new String[16];
+            Thread[] threads = new Thread[values.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int index = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        values[index] = getString("value1", SharedProbe.class);
+                    }
+                };
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+
+            assertEquals(1, loads.get());
+            for (String value : values)
+                assertNull(value);
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    private static final class SharedProbe {
+    }
+
+    public void testReload() throws Exception {
+        File file = new File(ReloadProbe.class.getResource("ReloadProbe.properties").toURI());
+        final String[] notified = new String[1];
+        PropertiesChangeListener listener = new PropertiesChangeListener() {
+            public void propertiesChanged(Class<?> cls, Map<String, String> oldValues,
+                                          Map<String, String> newValues) {
+                if (cls == ReloadProbe.class)
+                    notified[0] = oldValues.get("value") + "->" + newValues.get("value");
+            }
+        };
+        ClassPropertiesManager.addChangeListener(listener);
+        PropertyHandle<Long> handle = ClassPropertiesManager.handle(ReloadProbe.class, "value", long.class);
+        try {
+            assertEquals(1, getInt("value", ReloadProbe.class));
+            assertFalse(ClassPropertiesManager.reload(ReloadProbe.class));
+
+            write(file, "value=2\n");
+            assertTrue(ClassPropertiesManager.reload(ReloadProbe.class));
+            assertEquals(2, getInt("value", ReloadProbe.class));
+            assertEquals(2L, handle.getLong());
+            assertEquals("1->2", notified[0]);
+
+            write(file, "value=two\n");
+            assertFalse(ClassPropertiesManager.reload(ReloadProbe.class));
+            assertEquals(2, getInt("value", ReloadProbe.class));
+        } finally {
+            ClassPropertiesManager.removeChangeListener(listener);
+            write(file, "value=1\n");
+            ClassPropertiesManager.reload(ReloadProbe.class);
+        }
+    }
+
+    public void testWatchedReload() throws Exception {
+        File file = new File(ReloadProbe.class.getResource("ReloadProbe.properties").toURI());
+        final CountDownLatch changed = new CountDownLatch(1);
+        PropertiesChangeListener listener = new PropertiesChangeListener() {
+            public void propertiesChanged(Class<?> cls, Map<String, String> oldValues,
+                                          Map<String, String> newValues) {
+                if (cls == ReloadProbe.class && "3".equals(newValues.get("value")))
+                    changed.countDown();
+            }
+        };
+        assertEquals(1, getInt("value", ReloadProbe.class));
+        ClassPropertiesManager.addChangeListener(listener);
+        ClassPropertiesManager.enableReload();
+        try {
+            write(file, "value=3\n");
+            assertTrue(changed.await(30, TimeUnit.SECONDS));
+            assertEquals(3, getInt("value", ReloadProbe.class));
+        } finally {
+            ClassPropertiesManager.disableReload();
+            ClassPropertiesManager.removeChangeListener(listener);
+            write(file, "value=1\n");
+            ClassPropertiesManager.reload(ReloadProbe.class);
+        }
+    }
+
+    public void testHierarchy() {
+        assertEquals("derived", getString("scope", DerivedProbe.class));
+        assertEquals("true", getString("base", DerivedProbe.class));
+        assertEquals("enabled", getString("feature", DerivedProbe.class));
+        assertEquals("com.marabout.lang", getString("package.name", DerivedProbe.class));
+        assertEquals("base", getString("scope", BaseProbe.class));
+        assertEquals("feature", getString("scope", ProbeFeature.class));
+    }
+
+    public void testSystemPropertyOverride() {
+        String name = DerivedProbe.class.getName() + ".timeout";
+        System.setProperty(name, "30");
+        try {
+            ClassPropertiesManager.reload(DerivedProbe.class);
+            assertEquals(30, getInt("timeout", DerivedProbe.class));
+            assertEquals(10, getInt("timeout", BaseProbe.class));
+        } finally {
+            System.clearProperty(name);
+            ClassPropertiesManager.reload(DerivedProbe.class);
+        }
+        assertEquals(10, getInt("timeout", DerivedProbe.class));
+    }
+
+    private interface ProbeFeature {
+    }
+
+    private static class BaseProbe implements ProbeFeature {
+    }
+
+    private static final class DerivedProbe extends BaseProbe {
+    }
+
+    public void testCompiled() throws Exception {
+        File file = new File(CompiledProbe.class.getResource("CompiledProbe.properties").toURI());
+        File compiled = new File(file.getPath() + ".bin");
+        Map<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < 5000; i++)
+            values.put("route." + i, "host-" + i);
+        values.put("source", "compiled");
+        FileOutputStream out = new FileOutputStream(compiled);
+        try {
+            CompiledProperties.write(values, out);
+        } finally {
+            out.close();
+        }
+        try {
+            assertTrue(compiled.setLastModified(file.lastModified() + 1000));
+            assertEquals("compiled", getString("source", CompiledProbe.class));
+            assertEquals("host-4321", getString("route.4321", CompiledProbe.class));
+            assertNull(getString("route.5000", CompiledProbe.class));
+            // Looked up through the compiled file, then package.properties.
+            assertEquals("package", getString("scope", CompiledProbe.class));
+
+            String name = CompiledProbe.class.getName() + ".source";
+            System.setProperty(name, "system");
+            try {
+                assertTrue(ClassPropertiesManager.reload(CompiledProbe.class));
+                assertEquals("system", getString("source", CompiledProbe.class));
+                assertEquals("host-4321", getString("route.4321", CompiledProbe.class));
+            } finally {
+                System.clearProperty(name);
+                ClassPropertiesManager.reload(CompiledProbe.class);
+            }
+            assertEquals("compiled", getString("source", CompiledProbe.class));
+
+            // An older compiled file is ignored.
+            assertTrue(compiled.setLastModified(file.lastModified() - 1000));
+            assertTrue(ClassPropertiesManager.reload(CompiledProbe.class));
+            assertEquals("text", getString("source", CompiledProbe.class));
+        } finally {
+            compiled.delete();
+        }
+    }
+
+    private static final class CompiledProbe {
+    }
+
+    public void testWatchedCompiledReload() throws Exception {
+        File file = new File(WatchedCompiledProbe.class.getResource("WatchedCompiledProbe.properties").toURI());
+        File compiled = new File(file.getPath() + ".bin");
+        final CountDownLatch changed = new CountDownLatch(1);
+        PropertiesChangeListener listener = new PropertiesChangeListener() {
+            public void propertiesChanged(Class<?> cls, Map<String, String> oldValues,
+                                          Map<String, String> newValues) {
+                if (cls == WatchedCompiledProbe.class && "2".equals(newValues.get("value")))
+                    changed.countDown();
+            }
+        };
+        writeCompiled(compiled, "1", file.lastModified() + 1000);
+        try {
+            assertEquals(1, getInt("value", WatchedCompiledProbe.class));
+            ClassPropertiesManager.addChangeListener(listener);
+            ClassPropertiesManager.enableReload();
+            writeCompiled(compiled, "2", file.lastModified() + 2000);
+            assertTrue(changed.await(30, TimeUnit.SECONDS));
+            assertEquals(2, getInt("value", WatchedCompiledProbe.class));
+        } finally {
+            ClassPropertiesManager.disableReload();
+            ClassPropertiesManager.removeChangeListener(listener);
+            compiled.delete();
+            ClassPropertiesManager.reload(WatchedCompiledProbe.class);
+        }
+    }
+
+    /**
+     * Replaces a compiled file the way {@link PropertiesCompiler} does: the
+     * previous one may still be mapped, and must not be rewritten in place.
+     */
+    private static void writeCompiled(File compiled, String value, long lastModified) throws IOException {
+        File temp = new File(compiled.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            CompiledProperties.write(Collections.singletonMap("value", value), out);
+        } finally {
+            out.close();
+        }
+        assertTrue(temp.setLastModified(lastModified));
+        Files.move(temp.toPath(), compiled.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static final class WatchedCompiledProbe {
+    }
+
+    public void testNewClassLoader() throws Exception {
+        File file = new File(LoaderProbe.class.getResource("LoaderProbe.properties").toURI());
+        try {
+            assertEquals("1", getString("value", new ProbeLoader().loadProbe()));
+            write(file, "value=2\n");
+            // As after a redeployment: the same file, read through a new classloader.
+            Class<?> probe = new ProbeLoader().loadProbe();
+            assertNotSame(LoaderProbe.class, probe);
+            assertEquals("2", getString("value", probe));
+        } finally {
+            write(file, "value=1\n");
+        }
+    }
+
+    /**
+     * Defines its own copy of {@link LoaderProbe}, and delegates everything else.
+     * The probe is a top-level class: a copy of a nested class would not match
+     * its enclosing class.
+     */
+    private static final class ProbeLoader extends ClassLoader {
+        ProbeLoader() {
+            super(ClassPropertiesManagerTest.class.getClassLoader());
+        }
+
+        Class<?> loadProbe() throws ClassNotFoundException {
+            return loadClass(LoaderProbe.class.getName());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(LoaderProbe.class.getName()))
+                return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> cls = findLoadedClass(name);
+                if (cls == null) {
+                    byte[] bytes;
+                    try {
+                        bytes = read(getParent().getResourceAsStream(name.replace('.', '/') + ".class"));
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                    cls = defineClass(name, bytes, 0, bytes.length);
+                }
+                return cls;
+            }
+        }
+
+        private static byte[] read(InputStream istream) throws IOException {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int count;
+                while ((count = istream.read(buffer)) >= 0)
+                    bytes.write(buffer, 0, count);
+                return bytes.toByteArray();
+            } finally {
+                istream.close();
+            }
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static final class ReloadProbe {
+    }
+}
+
+final class LoaderProbe {
 }
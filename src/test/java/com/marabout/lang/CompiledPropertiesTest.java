@@ -0,0 +1,104 @@
+package com.marabout.lang;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class CompiledPropertiesTest extends TestCase {
+
+    public void testRoundTrip() throws IOException {
+        Map<String, String> values = new HashMap<String, String>();
+        for (int i = 0; i < 10000; i++)
+            values.put("key." + i, Integer.toString(i * 7));
+        // Same hash codes.
+        values.put("Aa", "first");
+        values.put("BB", "second");
+        values.put("gr\u00e9goire", "\u00e9t\u00e9 \u2603");
+        values.put("empty", "");
+
+        File file = File.createTempFile("compiled", ".properties.bin");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                CompiledProperties.write(values, out);
+            } finally {
+                out.close();
+            }
+            CompiledProperties compiled = CompiledProperties.open(file.toURI().toURL());
+            assertEquals(values.size(), compiled.size());
+            assertEquals("first", compiled.get("Aa"));
+            assertEquals("second", compiled.get("BB"));
+            assertEquals("\u00e9t\u00e9 \u2603", compiled.get("gr\u00e9goire"));
+            assertEquals("", compiled.get("empty"));
+            assertEquals("69993", compiled.get("key.9999"));
+            assertNull(compiled.get("key.10000"));
+            assertNull(compiled.get(42));
+            assertTrue(compiled.containsKey("key.0"));
+            assertEquals(values, compiled);
+            assertEquals(compiled, values);
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testInvalid() throws IOException {
+        File file = File.createTempFile("compiled", ".properties.bin");
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write("value=1\n".getBytes("ISO-8859-1"));
+            } finally {
+                out.close();
+            }
+            CompiledProperties.open(file.toURI().toURL());
+            fail();
+        } catch (IOException e) {
+            // expected
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testCompiler() throws IOException {
+        File file = File.createTempFile("compiler", ".properties");
+        File compiled = new File(file.getPath() + CompiledProperties.SUFFIX);
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write("a=1\nb = two\\\n  lines\n".getBytes("ISO-8859-1"));
+            } finally {
+                out.close();
+            }
+            assertFalse(PropertiesCompiler.compile(file, 3));
+            assertFalse(compiled.exists());
+            assertTrue(PropertiesCompiler.compile(file, 0));
+            Map<String, String> values = CompiledProperties.open(compiled.toURI().toURL());
+            assertEquals("1", values.get("a"));
+            assertEquals("twolines", values.get("b"));
+
+            out = new FileOutputStream(file);
+            try {
+                out.write("a=3\n".getBytes("ISO-8859-1"));
+            } finally {
+                out.close();
+            }
+            assertTrue(PropertiesCompiler.compile(file, 0));
+            // The mapped file is replaced, not overwritten.
+            assertEquals("1", values.get("a"));
+            assertEquals("3", CompiledProperties.open(compiled.toURI().toURL()).get("a"));
+            for (String name : compiled.getParentFile().list())
+                assertFalse(name, name.startsWith(compiled.getName()) && name.endsWith(".tmp"));
+        } finally {
+            file.delete();
+            compiled.delete();
+        }
+    }
+}
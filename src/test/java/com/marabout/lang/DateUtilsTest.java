@@ -0,0 +1,87 @@
+package com.marabout.lang;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class DateUtilsTest extends TestCase {
+
+    private static final ZoneId[] ZONES = new ZoneId[]{
+        ZoneOffset.UTC, ZoneOffset.ofHoursMinutes( -9, -30 ), ZoneId.of( "Europe/Paris" ), ZoneId.of( "Australia/Lord_Howe" )
+    };
+
+    public void testToday() {
+        Calendar today = DateUtils.today();
+        assertEquals( 0, today.get( Calendar.HOUR_OF_DAY ) );
+        assertEquals( 0, today.get( Calendar.MINUTE ) );
+        assertEquals( Calendar.getInstance().get( Calendar.DATE ), today.get( Calendar.DATE ) );
+
+        Calendar yesterday = DateUtils.yesterday();
+        yesterday.add( Calendar.DATE, 1 );
+        assertEquals( today, yesterday );
+
+        ZoneId zone = ZoneId.systemDefault();
+        assertEquals( LocalDate.now( zone ).toEpochDay(), DateUtils.today( zone ) );
+    }
+
+    public void testEpochDay() {
+        Random random = new Random( 42 );
+        for ( int i = 0; i < 10000; i++ ) {
+            long millis = random.nextLong() % ( 200L * 365 * DateUtils.MILLIS_PER_DAY );
+            for ( ZoneId zone : ZONES ) {
+                long epochDay = DateUtils.epochDay( millis, zone );
+                assertEquals( Instant.ofEpochMilli( millis ).atZone( zone ).toLocalDate().toEpochDay(), epochDay );
+                assertEquals( LocalDate.ofEpochDay( epochDay ).atStartOfDay( zone ).toInstant().toEpochMilli(),
+                    DateUtils.startOfDay( epochDay, zone ) );
+            }
+        }
+    }
+
+    public void testTimestamp() {
+        Random random = new Random( 42 );
+        StringBuilder sbuilder = new StringBuilder();
+        char[] chars = new char[DateUtils.TIMESTAMP_LENGTH + 2];
+        for ( int i = 0; i < 10000; i++ ) {
+            long millis = random.nextLong() % ( 1000L * 365 * DateUtils.MILLIS_PER_DAY );
+            for ( ZoneId zone : ZONES ) {
+                String expected = DateUtils.TIMESTAMP_FORMATTER.format( ZonedDateTime.ofInstant( Instant.ofEpochMilli( millis ), zone ) );
+                sbuilder.setLength( 0 );
+                assertEquals( "@" + expected, DateUtils.appendTimestamp( sbuilder.append( '@' ), millis, zone ).toString() );
+                assertEquals( DateUtils.TIMESTAMP_LENGTH + 1, DateUtils.formatTimestamp( millis, zone, chars, 1 ) );
+                assertEquals( expected, new String( chars, 1, DateUtils.TIMESTAMP_LENGTH ) );
+            }
+        }
+        long now = System.currentTimeMillis();
+        ZoneId zone = ZoneId.systemDefault();
+        sbuilder.setLength( 0 );
+        assertEquals( DateUtils.TIMESTAMP_FORMATTER.format( ZonedDateTime.ofInstant( Instant.ofEpochMilli( now ), zone ) ),
+            DateUtils.appendTimestamp( sbuilder, now, zone ).toString() );
+        try {
+            DateUtils.formatTimestamp( 0, ZoneOffset.UTC, chars, 3 );
+            fail();
+        } catch ( IndexOutOfBoundsException e ) {
+            // expected
+        }
+        try {
+            DateUtils.appendTimestamp( sbuilder, -70000L * 365 * DateUtils.MILLIS_PER_DAY, ZoneOffset.UTC );
+            fail();
+        } catch ( DateTimeException e ) {
+            // expected
+        }
+    }
+
+    public void testFormatter() {
+        assertSame( DateUtils.formatter( "yyyy/MM/dd" ), DateUtils.formatter( "yyyy/MM/dd" ) );
+        assertEquals( "2009/02/13", DateUtils.format( LocalDate.of( 2009, 2, 13 ), "yyyy/MM/dd" ) );
+    }
+}
@@ -0,0 +1,38 @@
+package com.marabout.lang;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class LayeredPropertiesTest extends TestCase {
+
+    public void testLayers() {
+        Map<String, String> top = new HashMap<String, String>();
+        top.put("a", "top");
+        top.put("b", "top");
+        Map<String, String> bottom = new HashMap<String, String>();
+        bottom.put("b", "bottom");
+        bottom.put("c", "bottom");
+        @SuppressWarnings("unchecked")
+        Map<String, String> layered = new LayeredProperties(Arrays.asList(top, bottom));
+
+        assertEquals("top", layered.get("a"));
+        assertEquals("top", layered.get("b"));
+        assertEquals("bottom", layered.get("c"));
+        assertNull(layered.get("d"));
+        assertTrue(layered.containsKey("c"));
+        assertFalse(layered.containsKey("d"));
+        assertEquals(3, layered.size());
+
+        Map<String, String> merged = new HashMap<String, String>(bottom);
+        merged.putAll(top);
+        assertEquals(merged, layered);
+        assertEquals(layered, merged);
+        assertEquals(merged.hashCode(), layered.hashCode());
+    }
+}
@@ -0,0 +1,123 @@
+package com.marabout.lang;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class RuntimeSamplerTest extends TestCase {
+
+    public void testRingBuffer() throws InterruptedException {
+        RuntimeSampler sampler = new RuntimeSampler(3);
+        assertNull(sampler.latest());
+        RuntimeSample first = sampler.sample();
+        assertTrue(first.getHeapUsed() > 0);
+        assertTrue(first.getThreadCount() > 0);
+        assertEquals(0, first.getGcCountDelta());
+
+        Thread.sleep(5);
+        byte[][] garbage = new byte[100][];
+        for (int i = 0; i < garbage.length; i++)
+            garbage[i] = new byte[10000];
+        RuntimeSample second = sampler.sample();
+        assertSame(second, sampler.latest());
+        assertTrue(second.getAllocationRate() == -1 || second.getAllocationRate() > 0);
+        sampler.sample();
+        RuntimeSample fourth = sampler.sample();
+
+        List<RuntimeSample> samples = sampler.samples();
+        assertEquals(3, samples.size());
+        assertSame(second, samples.get(0));
+        assertSame(fourth, samples.get(2));
+        assertTrue(sampler.samples(fourth.getTimestamp()).contains(fourth));
+        assertTrue(sampler.samples(fourth.getTimestamp() + 1).isEmpty());
+    }
+
+    public void testNewThreadAllocations() throws InterruptedException {
+        RuntimeSampler sampler = new RuntimeSampler(3);
+        sampler.sample();
+        final CountDownLatch allocated = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                byte[][] garbage = new byte[100][];
+                for (int i = 0; i < garbage.length; i++)
+                    garbage[i] = new byte[10000];
+                allocated.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    // exit
+                }
+            }
+        };
+        thread.start();
+        try {
+            allocated.await();
+            Thread.sleep(5);
+            sampler.sample();
+            // Its allocations before the first sample that saw it are not a rate.
+            assertFalse(sampler.getThreadAllocationRates().containsKey(thread.getId()));
+            Thread.sleep(5);
+            sampler.sample();
+            Long rate = sampler.getThreadAllocationRates().get(thread.getId());
+            assertTrue(rate == null || rate < 1000000L * 1000 / 5);
+        } finally {
+            done.countDown();
+            thread.join();
+        }
+    }
+
+    public void testThreshold() {
+        final AtomicBoolean over = new AtomicBoolean();
+        RuntimeSampler sampler = new RuntimeSampler(10);
+        final int[] notifications = new int[2];
+        sampler.addThreshold(new Predicate<RuntimeSample>() {
+            public boolean test(RuntimeSample sample) {
+                return over.get();
+            }
+        }, new RuntimeThresholdListener() {
+            public void thresholdExceeded(RuntimeSample sample) {
+                notifications[0]++;
+            }
+
+            public void thresholdCleared(RuntimeSample sample) {
+                notifications[1]++;
+            }
+        });
+        sampler.sample();
+        over.set(true);
+        sampler.sample();
+        sampler.sample();
+        over.set(false);
+        sampler.sample();
+        assertEquals(1, notifications[0]);
+        assertEquals(1, notifications[1]);
+
+        RuntimeSample sample = sampler.latest();
+        assertTrue(RuntimeSampler.heapUsageAbove(0).test(sample));
+        assertFalse(RuntimeSampler.oldGenUsageAbove(1).test(sample));
+    }
+
+    public void testPeriodic() throws InterruptedException {
+        RuntimeSampler sampler = new RuntimeSampler(10);
+        sampler.start(10, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(100);
+        } finally {
+            sampler.stop();
+        }
+        int count = sampler.samples().size();
+        assertTrue(count >= 2);
+        Thread.sleep(30);
+        assertEquals(count, sampler.samples().size());
+        assertSame(RuntimeUtils.getSampler(), RuntimeUtils.getSampler());
+    }
+}
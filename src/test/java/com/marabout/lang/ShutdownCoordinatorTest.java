@@ -0,0 +1,123 @@
+package com.marabout.lang;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.marabout.lang.ShutdownCoordinator.Phase;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class ShutdownCoordinatorTest extends TestCase {
+
+    private ShutdownCoordinator coordinator;
+    private AtomicBoolean exited;
+
+    @Override
+    protected void setUp() {
+        coordinator = new ShutdownCoordinator();
+        exited = new AtomicBoolean();
+        coordinator.setExitAction(new Runnable() {
+            public void run() {
+                exited.set(true);
+            }
+        });
+    }
+
+    public void testOrderedPhases() {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        // Both FLUSH tasks wait for each other: they only complete if run in parallel.
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        for (final Phase phase : new Phase[]{ Phase.FLUSH, Phase.DRAIN, Phase.STOP_ACCEPTING }) {
+            coordinator.register(phase, phase.name(), new Runnable() {
+                public void run() {
+                    if (phase == Phase.FLUSH)
+                        await(barrier);
+                    events.add(phase.name());
+                }
+            });
+        }
+        coordinator.register(Phase.FLUSH, "other", new Runnable() {
+            public void run() {
+                await(barrier);
+            }
+        });
+
+        Map<Phase, Long> durations = coordinator.run(10, TimeUnit.SECONDS);
+        assertEquals(3, durations.size());
+        assertEquals(3, events.size());
+        assertEquals("STOP_ACCEPTING", events.get(0));
+        assertEquals("DRAIN", events.get(1));
+        assertEquals("FLUSH", events.get(2));
+        assertTrue(exited.get());
+        assertTrue(coordinator.isShuttingDown());
+        assertNull(coordinator.run(10, TimeUnit.SECONDS));
+    }
+
+    public void testDrainExecutor() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        final AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < 4; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    sleep(50);
+                    completed.incrementAndGet();
+                }
+            });
+        }
+        coordinator.registerExecutor("workers", executor);
+        coordinator.run(10, TimeUnit.SECONDS);
+        assertEquals(4, completed.get());
+        assertTrue(executor.isTerminated());
+    }
+
+    public void testDeadline() {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        coordinator.setPhaseTimeout(Phase.DRAIN, 100, TimeUnit.MILLISECONDS);
+        coordinator.register(Phase.DRAIN, "stuck", new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        long start = System.nanoTime();
+        coordinator.run(10, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        assertTrue(exited.get());
+        try {
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            fail();
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
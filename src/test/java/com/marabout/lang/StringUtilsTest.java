@@ -0,0 +1,104 @@
+package com.marabout.lang;
+
+import static com.marabout.lang.StringUtils.*;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class StringUtilsTest extends TestCase {
+
+    public void testMapToString() {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        map.put("a", 1);
+        map.put("b", 2);
+
+        assertEquals(" [ a : 1, b : 2 ] ", mapToString(map));
+        assertEquals(" [  ] ", mapToString(new LinkedHashMap<String, Integer>()));
+    }
+
+    public void testMapToStringTruncated() {
+        Map<Integer, Integer> map = new LinkedHashMap<Integer, Integer>();
+        for (int i = 0; i < 1000000; i++)
+            map.put(i, i);
+
+        assertEquals(" [ 0 : 0, 1 : 1, ... 999,998 more ] ", mapToString(map, 2, UNLIMITED));
+        assertEquals(" [ 0 : 0, 1 ... 999,999 more ] ", mapToString(map, UNLIMITED, 7));
+    }
+
+    public void testMapToStringStopsAtBudget() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("a long key", new Object() {
+            public String toString() {
+                throw new AssertionError("Rendered past the budget");
+            }
+        });
+
+        assertEquals(" [ a lo... 1 more ] ", mapToString(map, UNLIMITED, 4));
+    }
+
+    public void testCollectionToString() {
+        assertEquals("a\nb\n", collectionToString(Arrays.asList("a", "b")));
+
+        List<String> list = new ArrayList<String>();
+        for (int i = 0; i < 5; i++)
+            list.add("item" + i);
+        assertEquals("item0\n... 4 more\n", collectionToString(list, new ToStringer<String>() {
+            public String toString(String arg) {
+                return arg;
+            }
+        }, 1, UNLIMITED));
+    }
+
+    public void testNullCollection() throws Exception {
+        assertEquals("", collectionToString(null));
+        assertEquals("", collectionToString(null, new ToStringer<Object>() {
+            public String toString(Object arg) {
+                return String.valueOf(arg);
+            }
+        }, 1, 1));
+        StringWriter writer = new StringWriter();
+        appendCollection(writer, null, null, UNLIMITED, UNLIMITED);
+        assertEquals("", writer.toString());
+        assertEquals("", lazyCollectionToString(null).toString());
+    }
+
+    public void testAppendToWriter() throws Exception {
+        StringWriter writer = new StringWriter();
+        appendCollection(writer, Arrays.asList("abc", "def"), new ToStringer<String>() {
+            public String toString(String arg) {
+                return arg.toUpperCase();
+            }
+        }, UNLIMITED, 4);
+
+        assertEquals("ABC\nD... 1 more\n", writer.toString());
+    }
+
+    public void testLazy() {
+        Map<String, Integer> map = new LinkedHashMap<String, Integer>();
+        map.put("a", 1);
+        LazyString lazy = lazyMapToString(map);
+        Logger logger = Logger.getLogger(StringUtilsTest.class.getName());
+        logger.setLevel(Level.INFO);
+        logger.log(Level.FINE, "Map: {0}", lazy);
+        assertFalse(lazy.isRendered());
+
+        map.put("b", 2);
+        assertEquals(" [ a : 1, b : 2 ] ", lazy.toString());
+        assertTrue(lazy.isRendered());
+        map.put("c", 3);
+        assertEquals(" [ a : 1, b : 2 ] ", lazy.toString());
+
+        assertEquals("x\n", lazyCollectionToString(Arrays.asList("x")).toString());
+    }
+}
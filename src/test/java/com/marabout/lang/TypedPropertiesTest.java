@@ -0,0 +1,113 @@
+package com.marabout.lang;
+
+import static com.marabout.lang.ClassPropertiesManager.getTypedProperties;
+
+import java.time.Duration;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class TypedPropertiesTest extends TestCase {
+
+    private static final PropertySchema SCHEMA = new PropertySchema();
+    private static final PropertySchema.IntKey POOL_SIZE = SCHEMA.intKey("pool.size", 1);
+    private static final PropertySchema.LongKey MAX_BYTES = SCHEMA.longKey("max.bytes", 0L);
+    private static final PropertySchema.BooleanKey ENABLED = SCHEMA.booleanKey("enabled", false);
+    private static final PropertySchema.DoubleKey RATIO = SCHEMA.doubleKey("ratio", 1.0);
+    private static final PropertySchema.DurationKey TIMEOUT = SCHEMA.durationKey("timeout", Duration.ZERO);
+    private static final PropertySchema.DurationKey IDLE = SCHEMA.durationKey("idle", Duration.ZERO);
+    private static final PropertySchema.IntKey MISSING = SCHEMA.intKey("missing", 42);
+
+    public void testParsedValues() {
+        TypedProperties props = getTypedProperties(this, SCHEMA);
+
+        assertEquals(12, props.get(POOL_SIZE));
+        assertEquals(10000000000L, props.get(MAX_BYTES));
+        assertTrue(props.get(ENABLED));
+        assertEquals(0.75, props.get(RATIO), 0.0);
+        assertEquals(Duration.ofMillis(250), props.get(TIMEOUT));
+        assertEquals(Duration.ofMinutes(2), props.get(IDLE));
+        assertEquals(42, props.get(MISSING));
+
+        assertSame(props, getTypedProperties(getClass(), SCHEMA));
+    }
+
+    public void testAllErrorsReported() {
+        PropertySchema schema = new PropertySchema();
+        schema.intKey("bad.size", 0);
+        schema.booleanKey("bad.enabled", false);
+        schema.intKey("pool.size", 0);
+        try {
+            getTypedProperties(this, schema);
+            fail();
+        } catch (PropertyFormatException e) {
+            assertEquals("TypedPropertiesTest.properties", e.getSource());
+            assertEquals(2, e.getErrors().size());
+        }
+    }
+
+    public void testFailureReportedAgain() {
+        PropertySchema schema = new PropertySchema();
+        schema.intKey("bad.size", 0);
+        PropertyFormatException first = null;
+        for (int i = 0; i < 2; i++) {
+            try {
+                getTypedProperties(this, schema);
+                fail();
+            } catch (PropertyFormatException e) {
+                if (first == null)
+                    first = e;
+                else
+                    assertEquals(first.getErrors(), e.getErrors());
+            }
+        }
+    }
+
+    public void testKeyOfAnotherSchema() {
+        PropertySchema other = new PropertySchema();
+        PropertySchema.IntKey otherKey = other.intKey("pool.size", 0);
+        TypedProperties props = getTypedProperties(this, SCHEMA);
+        try {
+            props.get(otherKey);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testFrozenSchema() {
+        try {
+            SCHEMA.intKey("late", 0);
+            getTypedProperties(this, SCHEMA);
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testParseDuration() {
+        assertEquals(Duration.ofSeconds(5), PropertySchema.parseDuration("5s"));
+        assertEquals(Duration.ofMillis(30), PropertySchema.parseDuration(" 30 "));
+        assertEquals(Duration.ofHours(1), PropertySchema.parseDuration("PT1H"));
+        try {
+            PropertySchema.parseDuration("5 weeks");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            PropertySchema.parseDuration("9223372036854775807us");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            PropertySchema.parseDuration("9223372036854775807d");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.marabout.lang.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class MetricsRegistryTest extends TestCase {
+
+    public void testBuckets() {
+        for (long value : new long[]{ 0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE }) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(bucket < Histogram.BUCKETS);
+            assertTrue(value <= Histogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value > Histogram.upperBoundOf(bucket - 1));
+            // Relative error under 1/16.
+            assertTrue(Histogram.upperBoundOf(bucket) - value <= value / Histogram.SUB_BUCKETS);
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBoundOf(Histogram.BUCKETS - 1));
+    }
+
+    public void testHistogram() {
+        Histogram histogram = new MetricsRegistry().histogram("latency");
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++)
+            histogram.record(random.nextInt(1000000));
+        histogram.record(5000000);
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(100001, snapshot.getCount());
+        assertEquals(5000000, snapshot.getMax());
+        assertEquals(500000, snapshot.getValueAt(0.5), 500000 / 16 + 5000);
+        assertEquals(990000, snapshot.getValueAt(0.99), 990000 / 16 + 5000);
+        assertEquals(5000000, snapshot.getValueAt(1));
+        assertEquals(0, new Histogram().snapshot().getValueAt(0.5));
+    }
+
+    public void testRegistry() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("hits");
+        assertSame(counter, registry.counter("hits"));
+        counter.increment();
+        counter.add(2);
+        Timer timer = registry.timer("load");
+        timer.record(3, TimeUnit.MILLISECONDS);
+        timer.stop(timer.start());
+
+        SortedMap<String, Object> snapshot = registry.snapshot();
+        assertEquals(3L, snapshot.get("hits"));
+        assertEquals(2, ((HistogramSnapshot) snapshot.get("load")).getCount());
+        try {
+            registry.timer("hits");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testMBean() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        ObjectName name = registry.registerMBean("MetricsRegistryTest");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            registry.counter("requests").add(7);
+            registry.timer("latency").record(2, TimeUnit.MICROSECONDS);
+            assertEquals(7L, server.getAttribute(name, "requests"));
+            assertEquals(1L, server.getAttribute(name, "latency.count"));
+            assertEquals(2000L, server.getAttribute(name, "latency.max"));
+            assertEquals(6, server.getMBeanInfo(name).getAttributes().length);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.marabout.utils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class ConcurrentCacheTest extends TestCase {
+
+    private static final Executor DIRECT = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    public void testLoadOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final ConcurrentCache<String, Integer> cache = ConcurrentCache.<String, Integer>newBuilder().build(
+            new CacheLoader<String, Integer>() {
+                public Integer load(String key) throws Exception {
+                    release.await();
+                    return loads.incrementAndGet();
+                }
+            } );
+        final AtomicInteger sum = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for ( int i = 0; i < threads.length; i++ ) {
+            threads[i] = new Thread() {
+                public void run() {
+                    sum.addAndGet( cache.get( "key" ) );
+                }
+            };
+            threads[i].start();
+        }
+        Thread.sleep( 50 );
+        release.countDown();
+        for ( Thread thread : threads )
+            thread.join( 5000 );
+        assertEquals( 1, loads.get() );
+        assertEquals( threads.length, sum.get() );
+        assertEquals( 1, cache.stats().getLoadSuccessCount() );
+    }
+
+    public void testInvalidateDuringLoad() throws Exception {
+        final CountDownLatch loading = new CountDownLatch( 1 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final ConcurrentCache<String, String> cache = ConcurrentCache.<String, String>newBuilder().maximumSize( 10 ).build();
+        final String[] result = new String[1];
+        Thread thread = new Thread() {
+            public void run() {
+                result[0] = cache.get( "key", new CacheLoader<String, String>() {
+                    public String load(String key) throws Exception {
+                        loading.countDown();
+                        release.await();
+                        return "stale";
+                    }
+                } );
+            }
+        };
+        thread.start();
+        assertTrue( loading.await( 5, TimeUnit.SECONDS ) );
+        cache.invalidate( "key" );
+        // Not joined to the invalidated load.
+        assertEquals( "fresh", cache.get( "key", new CacheLoader<String, String>() {
+            public String load(String key) {
+                return "fresh";
+            }
+        } ) );
+        release.countDown();
+        thread.join( 5000 );
+
+        assertEquals( "stale", result[0] );
+        assertEquals( "fresh", cache.getIfPresent( "key" ) );
+        assertEquals( 1, cache.size() );
+    }
+
+    public void testLruEviction() {
+        ConcurrentCache<String, String> cache = ConcurrentCache.<String, String>newBuilder()
+            .maximumSize( 3 )
+            .concurrencyLevel( 1 )
+            .build();
+        cache.put( "a", "A" );
+        cache.put( "b", "B" );
+        cache.put( "c", "C" );
+        assertEquals( "A", cache.getIfPresent( "a" ) );
+        cache.put( "d", "D" );
+        assertEquals( 3, cache.size() );
+        assertNull( cache.getIfPresent( "b" ) );
+        assertEquals( "A", cache.getIfPresent( "a" ) );
+        assertEquals( 1, cache.stats().getEvictionCount() );
+        assertEquals( 2, cache.stats().getHitCount() );
+        assertEquals( 1, cache.stats().getMissCount() );
+    }
+
+    public void testTinyLfuResistsScans() {
+        ConcurrentCache<Integer, Integer> cache = ConcurrentCache.<Integer, Integer>newBuilder()
+            .maximumSize( 100 )
+            .evictionPolicy( ConcurrentCache.Policy.TINY_LFU )
+            .concurrencyLevel( 1 )
+            .build();
+        for ( int round = 0; round < 5; round++ ) {
+            for ( int key = 0; key < 50; key++ ) {
+                if ( cache.getIfPresent( key ) == null )
+                    cache.put( key, key );
+            }
+        }
+        // A scan of keys used only once.
+        for ( int key = 1000; key < 3000; key++ )
+            cache.put( key, key );
+        int hot = 0;
+        for ( int key = 0; key < 50; key++ ) {
+            if ( cache.getIfPresent( key ) != null )
+                hot++;
+        }
+        assertEquals( 100, cache.size() );
+        assertTrue( "Hot entries left: " + hot, hot >= 45 );
+    }
+
+    public void testWeight() {
+        ConcurrentCache<String, String> cache = ConcurrentCache.<String, String>newBuilder()
+            .maximumWeight( 10, new Weigher<String, String>() {
+                public int weigh(String key, String value) {
+                    return value.length();
+                }
+            } )
+            .concurrencyLevel( 1 )
+            .build();
+        cache.put( "a", "aaaa" );
+        cache.put( "b", "bbbb" );
+        assertEquals( 8, cache.weight() );
+        cache.put( "c", "cccc" );
+        assertEquals( 8, cache.weight() );
+        assertNull( cache.getIfPresent( "a" ) );
+        assertEquals( 4, cache.stats().getEvictionWeight() );
+        cache.put( "d", "dddddddddddd" );
+        assertNull( cache.getIfPresent( "d" ) );
+    }
+
+    public void testExpireAfterWrite() throws Exception {
+        ConcurrentCache<String, String> cache = ConcurrentCache.<String, String>newBuilder()
+            .expireAfterWrite( 20, TimeUnit.MILLISECONDS )
+            .build();
+        cache.put( "a", "A" );
+        assertEquals( "A", cache.getIfPresent( "a" ) );
+        Thread.sleep( 50 );
+        assertNull( cache.getIfPresent( "a" ) );
+        assertEquals( 0, cache.size() );
+        assertEquals( 1, cache.stats().getEvictionCount() );
+    }
+
+    public void testRefreshAfterWrite() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        ConcurrentCache<String, Integer> cache = ConcurrentCache.<String, Integer>newBuilder()
+            .refreshAfterWrite( 10, TimeUnit.MILLISECONDS )
+            .executor( DIRECT )
+            .build( new CacheLoader<String, Integer>() {
+                public Integer load(String key) {
+                    return loads.incrementAndGet();
+                }
+            } );
+        assertEquals( 1, cache.get( "a" ).intValue() );
+        assertEquals( 1, cache.get( "a" ).intValue() );
+        Thread.sleep( 30 );
+        // The stale value is returned while it is refreshed.
+        assertEquals( 1, cache.get( "a" ).intValue() );
+        assertEquals( 2, cache.getIfPresent( "a" ).intValue() );
+        assertEquals( 2, loads.get() );
+    }
+
+    public void testFailedLoad() {
+        ConcurrentCache<String, String> cache = ConcurrentCache.<String, String>newBuilder().build();
+        try {
+            cache.get( "a", new CacheLoader<String, String>() {
+                public String load(String key) throws IOException {
+                    throw new IOException( "Cannot load " + key );
+                }
+            } );
+            fail();
+        } catch ( CompletionException e ) {
+            assertTrue( e.getCause() instanceof IOException );
+        }
+        assertEquals( 1, cache.stats().getLoadFailureCount() );
+        assertNull( cache.get( "a", new CacheLoader<String, String>() {
+            public String load(String key) {
+                return null;
+            }
+        } ) );
+        assertEquals( 0, cache.size() );
+    }
+
+    public void testRefreshRequiresLoader() {
+        try {
+            ConcurrentCache.newBuilder().refreshAfterWrite( 1, TimeUnit.SECONDS ).build();
+            fail();
+        } catch ( IllegalStateException e ) {
+            // expected
+        }
+    }
+}
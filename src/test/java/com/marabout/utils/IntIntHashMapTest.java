@@ -0,0 +1,41 @@
+package com.marabout.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class IntIntHashMapTest extends TestCase {
+
+    public void testAgainstHashMap() {
+        Random random = new Random( 3 );
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        IntIntHashMap map = new IntIntHashMap();
+        for ( int i = 0; i < 100000; i++ ) {
+            int key = random.nextInt( 10000 ) - 5000;
+            if ( random.nextInt( 3 ) == 0 )
+                assertEquals( expected.remove( key ) != null, map.remove( key ) );
+            else
+                assertEquals( expected.put( key, i ) == null, map.put( key, i ) );
+        }
+        assertEquals( expected.size(), map.size() );
+        for ( int key = -5000; key < 5000; key++ ) {
+            Integer value = expected.get( key );
+            assertEquals( value != null ? value : Integer.MIN_VALUE, map.get( key, Integer.MIN_VALUE ) );
+        }
+        final int[] sum = new int[1];
+        map.forEach( new IntIntProcedure() {
+            public void apply(int key, int value) {
+                sum[0] += value;
+            }
+        } );
+        int expectedSum = 0;
+        for ( int value : expected.values() )
+            expectedSum += value;
+        assertEquals( expectedSum, sum[0] );
+    }
+}
@@ -0,0 +1,108 @@
+package com.marabout.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class LongLongHashMapTest extends TestCase {
+
+    public void testBasics() {
+        LongLongHashMap map = new LongLongHashMap();
+        assertTrue( map.isEmpty() );
+        assertTrue( map.put( 1, 10 ) );
+        assertTrue( map.put( 0, 20 ) );
+        assertTrue( map.put( -1, 30 ) );
+        assertFalse( map.put( 1, 11 ) );
+        assertEquals( 3, map.size() );
+        assertEquals( 11, map.get( 1, -1 ) );
+        assertEquals( 20, map.get( 0, -1 ) );
+        assertEquals( 30, map.get( -1, -1 ) );
+        assertEquals( -1, map.get( 2, -1 ) );
+        assertTrue( map.remove( 0 ) );
+        assertFalse( map.containsKey( 0 ) );
+        assertFalse( map.remove( 2 ) );
+        map.clear();
+        assertTrue( map.isEmpty() );
+        assertEquals( -1, map.get( 1, -1 ) );
+    }
+
+    public void testAgainstHashMap() {
+        Random random = new Random( 42 );
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        LongLongHashMap map = new LongLongHashMap( 4 );
+        for ( int i = 0; i < 200000; i++ ) {
+            // A small key range, so that keys collide and get removed.
+            long key = random.nextInt( 20000 ) - 10000;
+            if ( random.nextInt( 3 ) == 0 )
+                assertEquals( expected.remove( key ) != null, map.remove( key ) );
+            else
+                assertEquals( expected.put( key, (long) i ) == null, map.put( key, i ) );
+        }
+        assertEquals( expected.size(), map.size() );
+        for ( long key = -10000; key < 10000; key++ ) {
+            Long value = expected.get( key );
+            assertEquals( value != null ? value : -1, map.get( key, -1 ) );
+        }
+        assertEntries( expected, map );
+    }
+
+    public void testOffHeapAgainstHashMap() {
+        Random random = new Random( 42 );
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        OffHeapLongLongHashMap map = new OffHeapLongLongHashMap( 4 );
+        for ( int i = 0; i < 200000; i++ ) {
+            long key = random.nextInt( 20000 ) - 10000;
+            if ( random.nextInt( 3 ) == 0 )
+                assertEquals( expected.remove( key ) != null, map.remove( key ) );
+            else
+                assertEquals( expected.put( key, (long) i ) == null, map.put( key, i ) );
+        }
+        assertEquals( expected.size(), map.size() );
+        for ( long key = -10000; key < 10000; key++ ) {
+            Long value = expected.get( key );
+            assertEquals( value != null ? value : -1, map.get( key, -1 ) );
+        }
+        final Map<Long, Long> actual = new HashMap<Long, Long>();
+        map.forEach( new LongLongProcedure() {
+            public void apply(long key, long value) {
+                assertNull( actual.put( key, value ) );
+            }
+        } );
+        assertEquals( expected, actual );
+        map.clear();
+        assertEquals( 0, map.size() );
+        assertFalse( map.containsKey( 1 ) );
+    }
+
+    public void testSequentialKeys() {
+        LongLongHashMap map = new LongLongHashMap();
+        for ( long key = 1; key <= 100000; key++ )
+            map.put( key << 32, key );
+        for ( long key = 1; key <= 100000; key++ )
+            assertEquals( key, map.get( key << 32, 0 ) );
+    }
+
+    public void testNegativeSize() {
+        try {
+            new LongLongHashMap( -1 );
+            fail();
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+    private static void assertEntries(Map<Long, Long> expected, LongLongHashMap map) {
+        final Map<Long, Long> actual = new HashMap<Long, Long>();
+        map.forEach( new LongLongProcedure() {
+            public void apply(long key, long value) {
+                assertNull( actual.put( key, value ) );
+            }
+        } );
+        assertEquals( expected, actual );
+    }
+}
@@ -0,0 +1,54 @@
+package com.marabout.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class LongObjectHashMapTest extends TestCase {
+
+    public void testBasics() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        assertNull( map.put( 0, "zero" ) );
+        assertNull( map.put( 7, "seven" ) );
+        assertEquals( "seven", map.put( 7, "SEVEN" ) );
+        assertEquals( 2, map.size() );
+        assertEquals( "zero", map.get( 0 ) );
+        assertEquals( "SEVEN", map.get( 7 ) );
+        assertNull( map.get( 8 ) );
+        assertEquals( "zero", map.remove( 0 ) );
+        assertNull( map.remove( 0 ) );
+        assertEquals( 1, map.size() );
+        try {
+            map.put( 1, null );
+            fail();
+        } catch ( NullPointerException e ) {
+            // expected
+        }
+    }
+
+    public void testAgainstHashMap() {
+        Random random = new Random( 7 );
+        Map<Long, String> expected = new HashMap<Long, String>();
+        LongObjectHashMap<String> map = new LongObjectHashMap<String>( 0 );
+        for ( int i = 0; i < 100000; i++ ) {
+            long key = random.nextInt( 5000 ) * 1000003L;
+            if ( random.nextInt( 3 ) == 0 )
+                assertEquals( expected.remove( key ), map.remove( key ) );
+            else
+                assertEquals( expected.put( key, "v" + i ), map.put( key, "v" + i ) );
+        }
+        assertEquals( expected.size(), map.size() );
+        final Map<Long, String> actual = new HashMap<Long, String>();
+        map.forEach( new LongObjectProcedure<String>() {
+            public void apply(long key, String value) {
+                assertNull( actual.put( key, value ) );
+            }
+        } );
+        assertEquals( expected, actual );
+    }
+}
@@ -0,0 +1,160 @@
+package com.marabout.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class ServiceIndexTest extends TestCase {
+
+    public interface Indexed {
+    }
+
+    public static class IndexedProvider implements Indexed {
+    }
+
+    public static class UnindexedProvider implements Indexed {
+    }
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = File.createTempFile( "index", "" );
+        assertTrue( dir.delete() );
+        assertTrue( dir.mkdir() );
+    }
+
+    @Override
+    protected void tearDown() {
+        delete( dir );
+        ServiceProviderManager.clearCache();
+    }
+
+    public void testScan() throws IOException, URISyntaxException {
+        URL spiFile = getClass().getResource( "/META-INF/services/" + ServiceProviderManagerTest.Service.class.getName() );
+        File classes = new File( spiFile.toURI() ).getParentFile().getParentFile().getParentFile();
+
+        File jar = new File( dir, "providers.jar" );
+        JarOutputStream ostream = new JarOutputStream( new FileOutputStream( jar ) );
+        try {
+            ostream.putNextEntry( new JarEntry( "META-INF/services/" + Indexed.class.getName() ) );
+            ostream.write( ( "# comment\n" + IndexedProvider.class.getName() + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+            ostream.closeEntry();
+        } finally {
+            ostream.close();
+        }
+
+        Map<String, Set<String>> index = ServiceIndex.scan( Arrays.asList( classes, jar, new File( dir, "missing" ) ) );
+        assertEquals( Collections.singleton( IndexedProvider.class.getName() ), index.get( Indexed.class.getName() ) );
+        // Names only: the missing provider class is dropped when resolved.
+        assertEquals( 3, index.get( ServiceProviderManagerTest.Service.class.getName() ).size() );
+        assertEquals( 3, index.get( ServiceRegistryTest.Codec.class.getName() ).size() );
+    }
+
+    public void testLookupThroughIndex() throws IOException {
+        // The index is the only place where this provider is declared.
+        Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+        index.put( Indexed.class.getName(), new LinkedHashSet<String>( Arrays.asList( IndexedProvider.class.getName() ) ) );
+        ServiceIndex.write( index, new File( dir, ServiceIndex.INDEX_RESOURCE ) );
+
+        ClassLoader cloader = new URLClassLoader( new URL[]{ dir.toURI().toURL() }, getClass().getClassLoader() );
+        ServiceProviderManager manager = new ServiceProviderManager();
+        Collection<Class<? extends Indexed>> providers = manager.findServiceProviders( Indexed.class, cloader );
+        assertEquals( Collections.singletonList( IndexedProvider.class ), providers );
+
+        // Services missing from the index are still found by scanning.
+        assertEquals( 2, manager.findServiceProviders( ServiceProviderManagerTest.Service.class, cloader ).size() );
+    }
+
+    public void testEntryWithoutIndex() throws IOException {
+        File indexed = new File( dir, "indexed" );
+        Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+        index.put( Indexed.class.getName(), new LinkedHashSet<String>( Arrays.asList( IndexedProvider.class.getName() ) ) );
+        ServiceIndex.write( index, new File( indexed, ServiceIndex.INDEX_RESOURCE ) );
+        // Not read: the index of this entry stands for its spi files.
+        writeSpiFile( indexed, "com.marabout.utils.MissingProvider" );
+
+        File unindexed = new File( dir, "unindexed" );
+        writeSpiFile( unindexed, UnindexedProvider.class.getName() );
+
+        ClassLoader cloader = new URLClassLoader( new URL[]{ indexed.toURI().toURL(), unindexed.toURI().toURL() },
+            getClass().getClassLoader() );
+        ServiceIndex.Contents contents = ServiceIndex.read( cloader );
+        assertTrue( contents.isIndexed( new File( indexed, "META-INF/services/x" ).toURI().toURL(), "META-INF/services/x" ) );
+        assertFalse( contents.isIndexed( new File( unindexed, "META-INF/services/x" ).toURI().toURL(), "META-INF/services/x" ) );
+
+        Collection<Class<? extends Indexed>> providers = new ServiceProviderManager().findServiceProviders( Indexed.class, cloader );
+        assertEquals( Arrays.asList( IndexedProvider.class, UnindexedProvider.class ), providers );
+    }
+
+    public void testCompleteIndex() throws IOException {
+        File indexed = new File( dir, "indexed" );
+        Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+        index.put( Indexed.class.getName(), new LinkedHashSet<String>( Arrays.asList( IndexedProvider.class.getName() ) ) );
+        ServiceIndex.write( index, new File( indexed, ServiceIndex.INDEX_RESOURCE ), true );
+
+        // Not read: a complete index stands for the spi files of every entry.
+        File unindexed = new File( dir, "unindexed" );
+        writeSpiFile( unindexed, UnindexedProvider.class.getName() );
+
+        ClassLoader cloader = new URLClassLoader( new URL[]{ indexed.toURI().toURL(), unindexed.toURI().toURL() },
+            getClass().getClassLoader() );
+        assertTrue( ServiceIndex.read( cloader ).isComplete() );
+        ServiceProviderManager manager = new ServiceProviderManager();
+        assertEquals( Collections.singletonList( IndexedProvider.class ), manager.findServiceProviders( Indexed.class, cloader ) );
+        assertTrue( manager.findServiceProviders( ServiceProviderManagerTest.Service.class, cloader ).isEmpty() );
+    }
+
+    public void testMainMarksIndexComplete() throws IOException {
+        File unindexed = new File( dir, "unindexed" );
+        writeSpiFile( unindexed, UnindexedProvider.class.getName() );
+        File output = new File( dir, "output" );
+        ServiceIndex.main( new String[]{ "-complete", output.getPath(), unindexed.getPath() } );
+
+        ClassLoader cloader = new URLClassLoader( new URL[]{ output.toURI().toURL() }, getClass().getClassLoader() );
+        ServiceIndex.Contents contents = ServiceIndex.read( cloader );
+        assertTrue( contents.isComplete() );
+        assertEquals( Collections.singletonList( UnindexedProvider.class.getName() ), contents.getProviders( Indexed.class.getName() ) );
+
+        ServiceIndex.main( new String[]{ output.getPath(), unindexed.getPath() } );
+        assertFalse( ServiceIndex.read( cloader ).isComplete() );
+    }
+
+    private static void writeSpiFile(File root, String provider) throws IOException {
+        File file = new File( root, "META-INF/services/" + Indexed.class.getName() );
+        assertTrue( file.getParentFile().mkdirs() );
+        FileOutputStream ostream = new FileOutputStream( file );
+        try {
+            ostream.write( ( provider + "\n" ).getBytes( StandardCharsets.UTF_8 ) );
+        } finally {
+            ostream.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if ( children != null ) {
+            for ( File child : children )
+                delete( child );
+        }
+        file.delete();
+    }
+}
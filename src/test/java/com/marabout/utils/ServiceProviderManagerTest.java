@@ -0,0 +1,97 @@
+package com.marabout.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class ServiceProviderManagerTest extends TestCase {
+
+    public interface Service {
+    }
+
+    public static class FirstProvider implements Service {
+    }
+
+    public static class SecondProvider implements Service {
+    }
+
+    public static class ThirdProvider implements Service {
+    }
+
+    @Override
+    protected void tearDown() {
+        ServiceProviderManager.clearCache();
+    }
+
+    public void testFindServiceProviders() {
+        ServiceProviderManager manager = new ServiceProviderManager();
+        Collection<Class<? extends Service>> providers = manager.findServiceProviders( Service.class );
+
+        List<Class<?>> expected = new ArrayList<Class<?>>();
+        expected.add( FirstProvider.class );
+        expected.add( SecondProvider.class );
+        assertEquals( expected, providers );
+
+        // Each call returns its own collection.
+        providers.clear();
+        assertEquals( expected, manager.findServiceProviders( Service.class ) );
+    }
+
+    public void testParallelResolution() {
+        ServiceProviderManager manager = new ServiceProviderManager();
+        manager.setParallelResolutionThreshold( 1 );
+        Collection<Class<? extends Service>> providers = manager.findServiceProviders( Service.class );
+        assertEquals( 2, providers.size() );
+        assertTrue( providers.contains( FirstProvider.class ) );
+        assertTrue( providers.contains( SecondProvider.class ) );
+    }
+
+    public void testCachedPerClassLoader() throws IOException {
+        File dir = File.createTempFile( "spm", "" );
+        assertTrue( dir.delete() );
+        File spiFile = new File( dir, "META-INF/services/" + Service.class.getName() );
+        assertTrue( spiFile.getParentFile().mkdirs() );
+        try {
+            write( spiFile, FirstProvider.class.getName() + "\n" + ThirdProvider.class.getName() );
+            ClassLoader cloader = new URLClassLoader( new URL[]{ dir.toURI().toURL() }, getClass().getClassLoader() );
+            ServiceProviderManager manager = new ServiceProviderManager();
+
+            Collection<Class<? extends Service>> providers = manager.findServiceProviders( Service.class, cloader );
+            // Both the parent and the child spi files are found, without duplicates.
+            assertEquals( 3, providers.size() );
+
+            // The files are not read again...
+            write( spiFile, "" );
+            assertEquals( providers, manager.findServiceProviders( Service.class, cloader ) );
+            // ...until the cache is cleared.
+            ServiceProviderManager.clearCache();
+            assertEquals( 2, manager.findServiceProviders( Service.class, cloader ).size() );
+        } finally {
+            spiFile.delete();
+            spiFile.getParentFile().delete();
+            spiFile.getParentFile().getParentFile().delete();
+            dir.delete();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream ostream = new FileOutputStream( file );
+        try {
+            ostream.write( content.getBytes( StandardCharsets.UTF_8 ) );
+        } finally {
+            ostream.close();
+        }
+    }
+}
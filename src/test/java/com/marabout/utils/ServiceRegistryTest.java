@@ -0,0 +1,105 @@
+package com.marabout.utils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class ServiceRegistryTest extends TestCase {
+
+    public interface Codec {
+    }
+
+    @ServicePriority(-1)
+    public static class LowCodec implements Codec {
+    }
+
+    public static class DefaultCodec implements Codec {
+    }
+
+    @ServicePriority(10)
+    public static class HighCodec implements Codec {
+        static final AtomicInteger instances = new AtomicInteger();
+
+        public HighCodec() {
+            instances.incrementAndGet();
+        }
+    }
+
+    public static class PooledCodec implements Codec {
+    }
+
+    public void testPriority() {
+        List<ServiceHandle<? extends Codec>> handles = ServiceRegistry.getHandles( Codec.class );
+        assertEquals( 3, handles.size() );
+        assertEquals( HighCodec.class, handles.get( 0 ).getProviderClass() );
+        assertEquals( DefaultCodec.class, handles.get( 1 ).getProviderClass() );
+        assertEquals( LowCodec.class, handles.get( 2 ).getProviderClass() );
+        assertSame( handles, ServiceRegistry.getHandles( Codec.class ) );
+
+        assertTrue( ServiceRegistry.getService( Codec.class ) instanceof HighCodec );
+        assertNull( ServiceRegistry.getService( Runnable.class ) );
+    }
+
+    public void testClearCache() {
+        List<ServiceHandle<? extends Codec>> handles = ServiceRegistry.getHandles( Codec.class );
+        ServiceProviderManager.clearCache();
+
+        List<ServiceHandle<? extends Codec>> found = ServiceRegistry.getHandles( Codec.class );
+        assertNotSame( handles, found );
+        assertEquals( handles, found );
+        assertSame( found, ServiceRegistry.getHandles( Codec.class ) );
+    }
+
+    public void testSingleton() throws InterruptedException {
+        final ServiceHandle<HighCodec> handle = ServiceRegistry.getHandle( HighCodec.class );
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final Codec[] results = new Codec[8];
+        Thread[] threads = new Thread[results.length];
+        for ( int i = 0; i < threads.length; i++ ) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch ( InterruptedException e ) {
+                        return;
+                    }
+                    results[index] = handle.get();
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for ( Thread thread : threads )
+            thread.join();
+
+        assertEquals( 1, HighCodec.instances.get() );
+        for ( Codec result : results )
+            assertSame( results[0], result );
+        assertTrue( handle.isInitialized() );
+        assertTrue( handle.getInitializationTime( TimeUnit.NANOSECONDS ) >= 0 );
+        assertSame( results[0], ServiceRegistry.getServices( Codec.class ).get( 0 ) );
+    }
+
+    public void testPool() {
+        ServiceHandle<PooledCodec> handle = ServiceRegistry.getHandle( PooledCodec.class );
+        handle.setMaxIdle( 1 );
+
+        PooledCodec first = handle.acquire();
+        PooledCodec second = handle.acquire();
+        assertNotSame( first, second );
+        handle.release( first );
+        handle.release( second );
+        assertSame( first, handle.acquire() );
+        assertNotSame( second, handle.acquire() );
+        assertFalse( handle.isInitialized() );
+        assertEquals( -1, handle.getInitializationTime( TimeUnit.MILLISECONDS ) );
+    }
+}
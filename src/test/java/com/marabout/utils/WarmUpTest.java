@@ -0,0 +1,44 @@
+package com.marabout.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * @author <a href="mailto:gmarabout@gmail.com">Grégoire Marabout</a>
+ */
+public class WarmUpTest extends TestCase {
+
+    public void testWarmUp() throws Exception {
+        WarmUpReport report = new WarmUp( getClass().getClassLoader() )
+            .add( WarmUpTest.class )
+            .addFromManifest()
+            .setParallelism( 2 )
+            .start()
+            .get( 10, TimeUnit.SECONDS );
+        assertTrue( report.getDuration( WarmUpTest.class.getName(), TimeUnit.NANOSECONDS ) >= 0 );
+        assertTrue( report.getDuration( ServiceRegistryTest.Codec.class.getName(), TimeUnit.NANOSECONDS ) >= 0 );
+        assertEquals( -1, report.getDuration( "java.lang.String", TimeUnit.NANOSECONDS ) );
+        assertFalse( report.isSuccessful() );
+        assertEquals( 1, report.getFailures().size() );
+        assertTrue( report.getFailures().get( "com.marabout.utils.MissingWarmUpTarget" ) instanceof ClassNotFoundException );
+    }
+
+    public void testSlowLoads() throws Exception {
+        WarmUpReport report = new WarmUp()
+            .add( WarmUpTest.class, ServiceRegistryTest.Codec.class )
+            .setSlowThreshold( 0, TimeUnit.MILLISECONDS )
+            .start()
+            .get( 10, TimeUnit.SECONDS );
+        assertTrue( report.isSuccessful() );
+        assertEquals( 2, report.getSlowLoads().size() );
+        assertTrue( report.getDuration( report.getSlowLoads().get( 0 ), TimeUnit.NANOSECONDS )
+            >= report.getDuration( report.getSlowLoads().get( 1 ), TimeUnit.NANOSECONDS ) );
+    }
+
+    public void testEmpty() throws Exception {
+        WarmUpReport report = new WarmUp().start().get( 10, TimeUnit.SECONDS );
+        assertTrue( report.isSuccessful() );
+        assertFalse( report.getClassNames().iterator().hasNext() );
+    }
+}